@@ -3,28 +3,21 @@ package de.hirthe.gefrierschrankapp.controller;
 import de.hirthe.gefrierschrankapp.dto.BackupDTO;
 import de.hirthe.gefrierschrankapp.dto.RestoreRequest;
 import de.hirthe.gefrierschrankapp.dto.RestoreResult;
+import de.hirthe.gefrierschrankapp.service.BackupArchiveService;
 import de.hirthe.gefrierschrankapp.service.BackupService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
-import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
-import java.io.ByteArrayOutputStream;
 
 @RestController
 @RequestMapping("/api/backup")
@@ -34,19 +27,19 @@ import java.io.ByteArrayOutputStream;
 public class BackupController {
 
     private final BackupService backupService;
-    private final ObjectMapper objectMapper;
+    private final BackupArchiveService backupArchiveService;
 
     @GetMapping("/export")
-    public ResponseEntity<Resource> exportBackup(@RequestParam(defaultValue = "json") String format) {
+    public ResponseEntity<StreamingResponseBody> exportBackup(@RequestParam(defaultValue = "json") String format,
+                                                              @RequestParam(defaultValue = "false") boolean includeImages,
+                                                              @RequestParam(defaultValue = "false") boolean includeImageVariants) {
         try {
             log.info("Creating backup export in format: {}", format);
             
-            BackupDTO backup = backupService.createBackup();
-            
             if ("zip".equalsIgnoreCase(format)) {
-                return createZipBackup(backup);
+                return createZipBackup(includeImages, includeImageVariants);
             } else {
-                return createJsonBackup(backup);
+                return createJsonBackup();
             }
             
         } catch (Exception e) {
@@ -59,7 +52,8 @@ public class BackupController {
     public ResponseEntity<RestoreResult> importBackup(@RequestParam("file") MultipartFile file,
                                                      @RequestParam(defaultValue = "false") boolean clearExistingData,
                                                      @RequestParam(defaultValue = "SKIP") RestoreRequest.ConflictResolution conflictResolution,
-                                                     @RequestParam(defaultValue = "false") boolean preserveIds) {
+                                                     @RequestParam(defaultValue = "false") boolean preserveIds,
+                                                     @RequestParam(required = false) String resumeFrom) {
         try {
             log.info("Importing backup from file: {}, size: {} bytes", file.getOriginalFilename(), file.getSize());
             
@@ -72,27 +66,21 @@ public class BackupController {
                 return ResponseEntity.badRequest().body(result);
             }
 
-            BackupDTO backup;
-            String filename = file.getOriginalFilename();
-            
-            if (filename != null && filename.toLowerCase().endsWith(".zip")) {
-                backup = extractBackupFromZip(file);
-            } else {
-                backup = extractBackupFromJson(file);
-            }
-
             RestoreRequest.RestoreOptions options = RestoreRequest.RestoreOptions.builder()
                 .clearExistingData(clearExistingData)
                 .conflictResolution(conflictResolution)
                 .preserveIds(preserveIds)
                 .build();
 
-            RestoreRequest request = RestoreRequest.builder()
-                .backup(backup)
-                .options(options)
-                .build();
-
-            RestoreResult result = backupService.restoreFromBackup(request);
+            RestoreResult result;
+            String filename = file.getOriginalFilename();
+            
+            if (filename != null && filename.toLowerCase().endsWith(".zip")) {
+                result = backupArchiveService.restoreFromZip(file.getInputStream(), options, resumeFrom);
+            } else {
+                // Parse and commit the upload incrementally instead of binding it to a BackupDTO
+                result = backupService.restoreFromStream(file.getInputStream(), options, resumeFrom);
+            }
             
             if (result.isSuccess()) {
                 return ResponseEntity.ok(result);
@@ -156,28 +144,22 @@ public class BackupController {
             }
 
             String filename = file.getOriginalFilename();
-            BackupDTO backup;
+            BackupDTO.BackupMetadata counts;
             
+            // Only counts the collections, the backup itself is not bound to objects
             if (filename != null && filename.toLowerCase().endsWith(".zip")) {
-                backup = extractBackupFromZip(file);
+                counts = backupArchiveService.inspectZip(file.getInputStream());
             } else {
-                backup = extractBackupFromJson(file);
-            }
-
-            // Basic validation
-            if (backup == null) {
-                return ResponseEntity.badRequest().body("Invalid backup format");
-            }
-
-            if (backup.getCategories() == null || backup.getLocations() == null || backup.getProducts() == null) {
-                return ResponseEntity.badRequest().body("Backup missing required data collections");
+                counts = backupService.inspectBackup(file.getInputStream());
             }
 
             String summary = String.format("Valid backup found: %d categories, %d locations, %d products",
-                backup.getCategories().size(), backup.getLocations().size(), backup.getProducts().size());
+                counts.getTotalCategories(), counts.getTotalLocations(), counts.getTotalProducts());
             
             return ResponseEntity.ok(summary);
             
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             log.error("Error validating backup", e);
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -185,86 +167,29 @@ public class BackupController {
         }
     }
 
-    private ResponseEntity<Resource> createJsonBackup(BackupDTO backup) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new JavaTimeModule());
-        
-        String jsonContent = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(backup);
-        byte[] data = jsonContent.getBytes();
-        
+    private ResponseEntity<StreamingResponseBody> createJsonBackup() {
         String filename = "gefrierschrank-backup-" + 
             LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss")) + ".json";
         
-        ByteArrayResource resource = new ByteArrayResource(data);
+        // The backup is written straight to the response instead of being buffered in memory
+        StreamingResponseBody body = outputStream -> backupService.writeBackup(outputStream);
         
         return ResponseEntity.ok()
             .contentType(MediaType.APPLICATION_JSON)
-            .contentLength(data.length)
             .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-            .body(resource);
+            .body(body);
     }
 
-    private ResponseEntity<Resource> createZipBackup(BackupDTO backup) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new JavaTimeModule());
-        
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ZipOutputStream zos = new ZipOutputStream(baos);
-        
-        // Add backup.json to zip
-        ZipEntry entry = new ZipEntry("backup.json");
-        zos.putNextEntry(entry);
-        
-        String jsonContent = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(backup);
-        zos.write(jsonContent.getBytes());
-        zos.closeEntry();
-        
-        // Add metadata file
-        ZipEntry metaEntry = new ZipEntry("metadata.txt");
-        zos.putNextEntry(metaEntry);
-        
-        String metadata = String.format(
-            "Gefrierschrank App Backup\n" +
-            "Created: %s\n" +
-            "Version: %s\n" +
-            "Categories: %d\n" +
-            "Locations: %d\n" +
-            "Products: %d\n",
-            backup.getBackupTimestamp(),
-            backup.getVersion(),
-            backup.getCategories().size(),
-            backup.getLocations().size(),
-            backup.getProducts().size()
-        );
-        
-        zos.write(metadata.getBytes());
-        zos.closeEntry();
-        zos.close();
-        
-        byte[] data = baos.toByteArray();
-        
+    private ResponseEntity<StreamingResponseBody> createZipBackup(boolean includeImages, boolean includeImageVariants) {
         String filename = "gefrierschrank-backup-" + 
             LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss")) + ".zip";
         
-        ByteArrayResource resource = new ByteArrayResource(data);
+        StreamingResponseBody body = outputStream -> 
+            backupArchiveService.writeZip(outputStream, includeImages, includeImageVariants);
         
         return ResponseEntity.ok()
             .contentType(MediaType.APPLICATION_OCTET_STREAM)
-            .contentLength(data.length)
             .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-            .body(resource);
-    }
-
-    private BackupDTO extractBackupFromJson(MultipartFile file) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new JavaTimeModule());
-        
-        return mapper.readValue(file.getInputStream(), BackupDTO.class);
-    }
-
-    private BackupDTO extractBackupFromZip(MultipartFile file) throws IOException {
-        // For simplicity, we'll assume the first JSON file in the ZIP is the backup
-        // In a more robust implementation, we could look for a specific filename
-        throw new UnsupportedOperationException("ZIP import not yet implemented - use JSON format");
+            .body(body);
     }
-}
\ No newline at end of file
+}
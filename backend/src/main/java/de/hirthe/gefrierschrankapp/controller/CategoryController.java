@@ -1,5 +1,6 @@
 package de.hirthe.gefrierschrankapp.controller;
 
+import de.hirthe.gefrierschrankapp.dto.ProductGroupSummary;
 import de.hirthe.gefrierschrankapp.entity.Category;
 import de.hirthe.gefrierschrankapp.service.CategoryService;
 import jakarta.validation.Valid;
@@ -109,13 +110,13 @@ public class CategoryController {
     }
     
     /**
-     * Get categories with products
+     * Get categories with the product count, quantities per unit and expiry buckets of each
      */
     @GetMapping("/with-products")
     @SuppressWarnings("unused") // REST endpoint
-    public ResponseEntity<List<Category>> getCategoriesWithProducts() {
+    public ResponseEntity<List<ProductGroupSummary<Category>>> getCategoriesWithProducts() {
         log.debug("Fetching categories with products");
-        List<Category> categories = categoryService.getCategoriesWithProducts();
+        List<ProductGroupSummary<Category>> categories = categoryService.getCategoriesWithProducts();
         return ResponseEntity.ok(categories);
     }
     
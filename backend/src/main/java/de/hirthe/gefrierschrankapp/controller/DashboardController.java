@@ -0,0 +1,29 @@
+package de.hirthe.gefrierschrankapp.controller;
+
+import de.hirthe.gefrierschrankapp.dto.DashboardSummaryDTO;
+import de.hirthe.gefrierschrankapp.service.DashboardService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/dashboard")
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardController {
+
+    private final DashboardService dashboardService;
+
+    /**
+     * Get totals, expiry buckets, per-category and per-location counts and the products expiring next
+     */
+    @GetMapping
+    public ResponseEntity<DashboardSummaryDTO> getSummary(@RequestParam(defaultValue = "5") int limit) {
+        log.debug("Fetching dashboard summary with {} expiring products", limit);
+        return ResponseEntity.ok(dashboardService.getSummary(limit));
+    }
+}
@@ -3,7 +3,6 @@ package de.hirthe.gefrierschrankapp.controller;
 import de.hirthe.gefrierschrankapp.service.ImageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -13,6 +12,8 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -39,6 +40,7 @@ public class ImageController {
             response.put("contentType", result.getContentType());
             response.put("width", result.getWidth());
             response.put("height", result.getHeight());
+            response.put("variantStatus", result.getVariantStatus());
             // Return just the filename - let frontend construct URLs
             response.put("thumbnailUrl", result.getFilename() + "?size=thumbnail");
             response.put("mediumUrl", result.getFilename() + "?size=medium");
@@ -78,15 +80,20 @@ public class ImageController {
                 imageSize = ImageService.ImageSize.ORIGINAL;
             }
             
-            byte[] imageBytes = imageService.getImage(filename, imageSize);
+            // Variants of a fresh upload may still be rendering, serve the original meanwhile
+            ImageService.ImageSize servedSize = imageService.resolveAvailableSize(filename, imageSize);
+            Resource resource = imageService.getImageResource(filename, servedSize);
             String contentType = imageService.getImageContentType(filename);
             
-            ByteArrayResource resource = new ByteArrayResource(imageBytes);
-            
+            // With ETag and Last-Modified set, Spring answers conditional requests with 304
+            // and Range requests with 206 on its own
             return ResponseEntity.ok()
                 .contentType(MediaType.parseMediaType(contentType))
-                .contentLength(imageBytes.length)
-                .header(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000") // Cache for 1 year
+                .eTag(imageETag(filename, servedSize))
+                .lastModified(resource.lastModified())
+                .header(HttpHeaders.CACHE_CONTROL, servedSize == imageSize
+                    ? "public, max-age=31536000" // Cache for 1 year
+                    : "no-cache")
                 .body(resource);
                 
         } catch (IOException e) {
@@ -123,13 +130,14 @@ public class ImageController {
     @GetMapping("/info/{filename}")
     public ResponseEntity<Map<String, Object>> getImageInfo(@PathVariable String filename) {
         try {
-            byte[] imageBytes = imageService.getImage(filename, ImageService.ImageSize.ORIGINAL);
+            Path imageFile = imageService.getImageFile(filename, ImageService.ImageSize.ORIGINAL);
             String contentType = imageService.getImageContentType(filename);
             
             Map<String, Object> info = new HashMap<>();
             info.put("filename", filename);
-            info.put("size", imageBytes.length);
+            info.put("size", Files.size(imageFile));
             info.put("contentType", contentType);
+            info.put("variantStatus", imageService.getVariantStatus(filename));
             info.put("thumbnailUrl", "/api/images/" + filename + "?size=thumbnail");
             info.put("mediumUrl", "/api/images/" + filename + "?size=medium");
             info.put("originalUrl", "/api/images/" + filename);
@@ -143,4 +151,12 @@ public class ImageController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    /**
+     * Image files are named by a fresh UUID or by the SHA-256 of their content and are never
+     * modified; a name is never reused for other content, so name and variant identify it
+     */
+    private String imageETag(String filename, ImageService.ImageSize size) {
+        return "\"" + filename + "-" + size.name().toLowerCase() + "\"";
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package de.hirthe.gefrierschrankapp.controller;
 
+import de.hirthe.gefrierschrankapp.dto.ProductGroupSummary;
 import de.hirthe.gefrierschrankapp.entity.Location;
 import de.hirthe.gefrierschrankapp.service.LocationService;
 import jakarta.validation.Valid;
@@ -106,12 +107,12 @@ public class LocationController {
     }
     
     /**
-     * Get locations with products
+     * Get locations with the product count, quantities per unit and expiry buckets of each
      */
     @GetMapping("/with-products")
-    public ResponseEntity<List<Location>> getLocationsWithProducts() {
+    public ResponseEntity<List<ProductGroupSummary<Location>>> getLocationsWithProducts() {
         log.debug("Fetching locations with products");
-        List<Location> locations = locationService.getLocationsWithProducts();
+        List<ProductGroupSummary<Location>> locations = locationService.getLocationsWithProducts();
         return ResponseEntity.ok(locations);
     }
 }
\ No newline at end of file
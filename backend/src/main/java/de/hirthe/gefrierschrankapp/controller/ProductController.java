@@ -1,25 +1,35 @@
 package de.hirthe.gefrierschrankapp.controller;
 
+import de.hirthe.gefrierschrankapp.dto.ConsumeResult;
 import de.hirthe.gefrierschrankapp.dto.CreateProductRequest;
+import de.hirthe.gefrierschrankapp.dto.CursorPage;
+import de.hirthe.gefrierschrankapp.dto.ProductBatchRequest;
+import de.hirthe.gefrierschrankapp.dto.ProductBatchResult;
 import de.hirthe.gefrierschrankapp.dto.ProductDTO;
+import de.hirthe.gefrierschrankapp.dto.ProductFilterRequest;
 import de.hirthe.gefrierschrankapp.entity.Category;
 import de.hirthe.gefrierschrankapp.entity.Location;
 import de.hirthe.gefrierschrankapp.entity.Product;
+import de.hirthe.gefrierschrankapp.service.ProductExpiryIndex;
 import de.hirthe.gefrierschrankapp.service.ProductService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/products")
@@ -27,6 +37,11 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ProductController {
     
+    private static final int MAX_SLICE_LIMIT = 200;
+    private static final int MAX_SEARCH_LIMIT = 100;
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final String MERGE_PATCH_JSON = "application/merge-patch+json";
+    
     private final ProductService productService;
     
     /**
@@ -38,20 +53,43 @@ public class ProductController {
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "createdAt") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir,
-            @RequestParam(required = false) Long categoryId,
-            @RequestParam(required = false) Long locationId,
-            @RequestParam(required = false) String name) {
+            ProductFilterRequest filter) {
         
-        log.debug("Fetching products with filters - page: {}, size: {}, categoryId: {}, locationId: {}, name: {}", 
-                  page, size, categoryId, locationId, name);
+        log.debug("Fetching products with filters - page: {}, size: {}, filter: {}", page, size, filter);
         
         Sort sort = Sort.by(Sort.Direction.fromString(sortDir), sortBy);
         Pageable pageable = PageRequest.of(page, size, sort);
         
-        Page<Product> products = productService.getProductsWithFilters(categoryId, locationId, name, pageable);
-        Page<ProductDTO> productDTOs = products.map(this::convertToDTO);
+        try {
+            Page<ProductDTO> productDTOs = productService.getProductListWithFilters(filter.toFilter(), pageable);
+            return ResponseEntity.ok(productDTOs);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid product list request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * Get a slice of products with cursor paging. Selected by the presence of the cursor
+     * parameter; an empty cursor returns the first slice. No total count is calculated.
+     */
+    @GetMapping(params = "cursor")
+    public ResponseEntity<CursorPage<ProductDTO>> getProductSlice(
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDir,
+            ProductFilterRequest filter) {
+        
+        log.debug("Fetching product slice - limit: {}, sortBy: {}, filter: {}", limit, sortBy, filter);
         
-        return ResponseEntity.ok(productDTOs);
+        try {
+            return ResponseEntity.ok(productService.getProductSlice(filter.toFilter(), sortBy, sortDir,
+                    cursor, Math.max(1, Math.min(limit, MAX_SLICE_LIMIT))));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid product slice request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
     }
     
     /**
@@ -62,8 +100,7 @@ public class ProductController {
         log.debug("Fetching product with id: {}", id);
         
         return productService.getProductById(id)
-                .map(this::convertToDTO)
-                .map(ResponseEntity::ok)
+                .map(this::withETag)
                 .orElse(ResponseEntity.notFound().build());
     }
     
@@ -82,24 +119,50 @@ public class ProductController {
     }
     
     /**
-     * Update existing product
+     * Update existing product. With an If-Match header of the ETag the client read, the
+     * update is refused with 412 if the product was changed in the meantime.
      */
     @PutMapping("/{id}")
     public ResponseEntity<ProductDTO> updateProduct(
             @PathVariable Long id, 
-            @Valid @RequestBody CreateProductRequest request) {
+            @Valid @RequestBody CreateProductRequest request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         
         log.info("Updating product with id: {}", id);
         
-        if (!productService.productExists(id)) {
+        try {
+            Product product = convertFromDTO(request);
+            return withETag(productService.updateProduct(id, product, ifMatchVersion(ifMatch)));
+        } catch (IllegalArgumentException e) {
+            log.warn("Cannot update product: {}", e.getMessage());
             return ResponseEntity.notFound().build();
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
         }
+    }
+    
+    /**
+     * Change single fields of a product with a JSON merge patch, e.g. {"notes": null} or
+     * {"quantity": 2, "locationId": 3}. Honors If-Match like the full update.
+     */
+    @PatchMapping(value = "/{id}", consumes = {MERGE_PATCH_JSON, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<ProductDTO> patchProduct(
+            @PathVariable Long id,
+            @RequestBody Map<String, Object> patch,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         
-        Product product = convertFromDTO(request);
-        Product updatedProduct = productService.updateProduct(id, product);
-        ProductDTO productDTO = convertToDTO(updatedProduct);
+        log.info("Patching product with id: {}", id);
         
-        return ResponseEntity.ok(productDTO);
+        try {
+            return productService.patchProduct(id, patch, ifMatchVersion(ifMatch))
+                    .map(this::withETag)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid product patch: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
     }
     
     /**
@@ -117,6 +180,140 @@ public class ProductController {
         return ResponseEntity.noContent().build();
     }
     
+    /**
+     * Take a portion out of a product, e.g. one bag. Answers 409 if less than the amount is
+     * left; with {@code deleteWhenEmpty=true} an emptied product is deleted.
+     */
+    @PostMapping("/{id}/consume")
+    public ResponseEntity<ConsumeResult> consumeProduct(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "1") BigDecimal amount,
+            @RequestParam(defaultValue = "false") boolean deleteWhenEmpty) {
+        
+        log.info("Consuming {} of product with id: {}", amount, id);
+        
+        if (amount.signum() <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        try {
+            return ResponseEntity.ok(productService.consumeProduct(id, amount, deleteWhenEmpty));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            log.debug("Cannot consume product: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+    
+    /**
+     * Take a portion out of the oldest frozen product with the given name that has enough left
+     */
+    @PostMapping(value = "/consume", params = "name")
+    public ResponseEntity<ConsumeResult> consumeOldestProduct(
+            @RequestParam String name,
+            @RequestParam(defaultValue = "1") BigDecimal amount,
+            @RequestParam(defaultValue = "false") boolean deleteWhenEmpty) {
+        
+        log.info("Consuming {} of the oldest product named: {}", amount, name);
+        
+        if (amount.signum() <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        try {
+            return ResponseEntity.ok(productService.consumeOldestProduct(name, amount, deleteWhenEmpty));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            log.debug("Cannot consume product: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+    
+    /**
+     * Create up to 500 products at once. Every product is validated on its own; the result
+     * lists the created product or the error for each one, in request order. A null entry
+     * rejects the whole request.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<ProductBatchResult> createProducts(@RequestBody List<CreateProductRequest> requests) {
+        log.info("Creating {} products in a batch", requests.size());
+        
+        if (requests.isEmpty() || requests.size() > MAX_BATCH_SIZE || requests.contains(null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        List<Product> products = requests.stream().map(this::convertFromDTO).toList();
+        return ResponseEntity.ok(productService.createProducts(products));
+    }
+    
+    /**
+     * Move products to the location {@code locationId}, or out of any location if it is null
+     */
+    @PatchMapping("/batch/location")
+    public ResponseEntity<ProductBatchResult> moveProducts(@Valid @RequestBody ProductBatchRequest request) {
+        log.info("Moving {} products to location {}", request.getProductIds().size(), request.getLocationId());
+        
+        try {
+            return ResponseEntity.ok(productService.moveProducts(request.getProductIds(), request.getLocationId()));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid batch move: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * Assign products to the category {@code categoryId}, or to none if it is null
+     */
+    @PatchMapping("/batch/category")
+    public ResponseEntity<ProductBatchResult> recategorizeProducts(@Valid @RequestBody ProductBatchRequest request) {
+        log.info("Assigning {} products to category {}", request.getProductIds().size(), request.getCategoryId());
+        
+        try {
+            return ResponseEntity.ok(productService.recategorizeProducts(request.getProductIds(), request.getCategoryId()));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid batch re-categorization: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * Delete products; ids that don't exist are reported in the result
+     */
+    @DeleteMapping("/batch")
+    public ResponseEntity<ProductBatchResult> deleteProducts(@Valid @RequestBody ProductBatchRequest request) {
+        log.info("Deleting {} products in a batch", request.getProductIds().size());
+        
+        return ResponseEntity.ok(productService.deleteProducts(request.getProductIds()));
+    }
+    
+    /**
+     * Search products by name, notes and barcode, best matches first. With {@code fuzzy=true}
+     * words with typos match as well, for search-as-you-type.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<ProductDTO>> searchProducts(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "false") boolean fuzzy,
+            @RequestParam(defaultValue = "20") int limit) {
+        
+        log.debug("Searching products - q: {}, fuzzy: {}, limit: {}", q, fuzzy, limit);
+        
+        return ResponseEntity.ok(productService.searchProducts(q, fuzzy, Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT))));
+    }
+    
+    /**
+     * Suggest product names for the create form, most used first
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<String>> suggestProductNames(
+            @RequestParam(defaultValue = "") String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        
+        return ResponseEntity.ok(productService.suggestProductNames(prefix, limit));
+    }
+    
     /**
      * Get products expiring soon
      */
@@ -126,12 +323,7 @@ public class ProductController {
         
         log.debug("Fetching products expiring within {} days", days);
         
-        List<Product> products = productService.getProductsExpiringSoon(days);
-        List<ProductDTO> productDTOs = products.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        
-        return ResponseEntity.ok(productDTOs);
+        return ResponseEntity.ok(productService.getExpiringSoonProductList(days));
     }
     
     /**
@@ -141,12 +333,17 @@ public class ProductController {
     public ResponseEntity<List<ProductDTO>> getExpiredProducts() {
         log.debug("Fetching expired products");
         
-        List<Product> products = productService.getExpiredProducts();
-        List<ProductDTO> productDTOs = products.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return ResponseEntity.ok(productService.getExpiredProductList());
+    }
+    
+    /**
+     * Compare the in-memory expiry index with the database
+     */
+    @GetMapping("/expiry-index/consistency")
+    public ResponseEntity<ProductExpiryIndex.ConsistencyReport> checkExpiryIndex() {
+        log.debug("Checking the product expiry index");
         
-        return ResponseEntity.ok(productDTOs);
+        return ResponseEntity.ok(productService.checkExpiryIndex());
     }
     
     /**
@@ -176,6 +373,7 @@ public class ProductController {
                 .barcode(product.getBarcode())
                 .createdAt(product.getCreatedAt())
                 .updatedAt(product.getUpdatedAt())
+                .version(product.getVersion())
                 .expired(product.isExpired())
                 .expiringSoon(product.isExpiringSoon(7))
                 .daysUntilExpiration(product.getDaysUntilExpiration());
@@ -205,6 +403,37 @@ public class ProductController {
         return builder.build();
     }
     
+    /**
+     * The product with its version as ETag
+     */
+    private ResponseEntity<ProductDTO> withETag(Product product) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (product.getVersion() != null) {
+            response.eTag(String.valueOf(product.getVersion()));
+        }
+        return response.body(convertToDTO(product));
+    }
+    
+    /**
+     * The version from an If-Match header like "3"; null without a header or for "*".
+     * Anything else matches no version, so the write is refused.
+     */
+    private static Long ifMatchVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        
+        String tag = ifMatch.trim();
+        try {
+            if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+                return Long.valueOf(tag.substring(1, tag.length() - 1));
+            }
+        } catch (NumberFormatException e) {
+            // not one of our ETags
+        }
+        return -1L;
+    }
+    
     /**
      * Convert CreateProductRequest to Product entity
      */
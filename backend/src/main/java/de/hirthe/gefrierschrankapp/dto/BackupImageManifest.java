@@ -0,0 +1,35 @@
+package de.hirthe.gefrierschrankapp.dto;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+ * Lists the image files contained in a ZIP backup. Files with identical content
+ * share one blob entry in the archive.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BackupImageManifest {
+
+    private String version;
+
+    @Builder.Default
+    private List<ImageFile> files = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ImageFile {
+        private String path; // relative to the upload directory, e.g. "thumbnails/{filename}"
+        private String blob; // archive entry holding the content
+        private long size;
+    }
+}
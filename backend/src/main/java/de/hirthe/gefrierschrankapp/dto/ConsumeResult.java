@@ -0,0 +1,26 @@
+package de.hirthe.gefrierschrankapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Outcome of taking a portion out of a product
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ConsumeResult {
+    
+    private Long productId;
+    
+    private BigDecimal consumed;
+    
+    private BigDecimal remaining;
+    
+    private boolean deleted; // nothing was left and the product was removed
+}
@@ -18,7 +18,7 @@ public class CreateProductRequest {
     private Long locationId;
     
     @NotNull(message = "Quantity is required")
-    @DecimalMin(value = "0.01", message = "Quantity must be greater than 0")
+    @DecimalMin(value = "0", message = "Quantity must not be negative")
     private BigDecimal quantity;
     
     @Size(max = 20, message = "Unit must be less than 20 characters")
@@ -0,0 +1,27 @@
+package de.hirthe.gefrierschrankapp.dto;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+ * One slice of a cursor-paged list. Unlike a page it carries no total count;
+ * {@code nextCursor} continues the list and is null on the last slice.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CursorPage<T> {
+
+    @Builder.Default
+    private List<T> content = new ArrayList<>();
+
+    private String nextCursor;
+    private boolean hasNext;
+    private int limit;
+}
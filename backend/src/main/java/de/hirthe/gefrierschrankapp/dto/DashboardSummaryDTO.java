@@ -0,0 +1,62 @@
+package de.hirthe.gefrierschrankapp.dto;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+ * Aggregated inventory figures for the dashboard, computed on the server so the
+ * browser doesn't need the full product list
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DashboardSummaryDTO {
+
+    private long totalProducts;
+    private long expired;
+    private long expiringWithin3Days;
+    private long expiringWithin7Days;
+    private long expiringWithin14Days;
+    private long fresh; // not expiring within 7 days or without expiration date
+    private long withoutExpirationDate;
+
+    @Builder.Default
+    private List<GroupCount> categories = new ArrayList<>();
+
+    @Builder.Default
+    private List<GroupCount> locations = new ArrayList<>();
+
+    @Builder.Default
+    private List<ExpiringProduct> nextExpiring = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class GroupCount {
+        private Long id;
+        private String name;
+        private long count;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ExpiringProduct {
+        private Long id;
+        private String name;
+        private LocalDate expirationDate;
+        private int daysUntilExpiration;
+        private String categoryName;
+        private String locationName;
+        private String imageUrl;
+    }
+}
@@ -0,0 +1,29 @@
+package de.hirthe.gefrierschrankapp.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Products a batch move, re-categorization or delete applies to. The new location or
+ * category is given in {@code locationId} or {@code categoryId}; null removes it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductBatchRequest {
+    
+    @NotEmpty(message = "Product ids are required")
+    @Size(max = 500, message = "At most 500 products per batch")
+    private List<Long> productIds;
+    
+    private Long categoryId;
+    
+    private Long locationId;
+}
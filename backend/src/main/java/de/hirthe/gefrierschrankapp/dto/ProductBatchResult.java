@@ -0,0 +1,48 @@
+package de.hirthe.gefrierschrankapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a batch operation, with one result per requested item in request order
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductBatchResult {
+    
+    private int succeeded;
+    
+    private int failed;
+    
+    @Builder.Default
+    private List<ItemResult> results = new ArrayList<>();
+    
+    public void addSuccess(int index, Long id, ProductDTO product) {
+        results.add(new ItemResult(index, id, true, null, product));
+        succeeded++;
+    }
+    
+    public void addFailure(int index, Long id, String error) {
+        results.add(new ItemResult(index, id, false, error, null));
+        failed++;
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ItemResult {
+        private int index; // position in the request
+        private Long id;
+        private boolean success;
+        private String error;
+        private ProductDTO product; // created products only
+    }
+}
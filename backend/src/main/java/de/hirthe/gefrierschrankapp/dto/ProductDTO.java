@@ -1,14 +1,17 @@
 package de.hirthe.gefrierschrankapp.dto;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
 @Data
 @Builder
+@AllArgsConstructor
 public class ProductDTO {
     private Long id;
     private String name;
@@ -23,14 +26,55 @@ public class ProductDTO {
     private String barcode;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private Long version; // sent back as ETag and If-Match to detect concurrent edits
     
     // Computed fields
     private boolean expired;
     private boolean expiringSoon;
     private int daysUntilExpiration;
     
+    /**
+     * Projection constructor for JPQL "SELECT new" queries over a product joined with its
+     * category and location. The computed fields follow the rules of the Product entity.
+     */
+    public ProductDTO(Long id, String name,
+                      Long categoryId, String categoryName, String categoryColor,
+                      Integer categoryDefaultStorageDays, String categoryDescription,
+                      Long locationId, String locationName, String locationDescription,
+                      String locationFreezerSection, Integer locationSortOrder,
+                      BigDecimal quantity, String unit, LocalDate frozenDate, LocalDate expirationDate,
+                      String notes, String imageUrl, String barcode,
+                      LocalDateTime createdAt, LocalDateTime updatedAt, Long version) {
+        this.id = id;
+        this.name = name;
+        if (categoryId != null) {
+            this.category = new CategoryDTO(categoryId, categoryName, categoryColor, categoryDefaultStorageDays, categoryDescription);
+        }
+        if (locationId != null) {
+            this.location = new LocationDTO(locationId, locationName, locationDescription, locationFreezerSection, locationSortOrder);
+        }
+        this.quantity = quantity;
+        this.unit = unit;
+        this.frozenDate = frozenDate;
+        this.expirationDate = expirationDate;
+        this.notes = notes;
+        this.imageUrl = imageUrl;
+        this.barcode = barcode;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.version = version;
+        
+        LocalDate today = LocalDate.now();
+        this.expired = expirationDate != null && expirationDate.isBefore(today);
+        this.expiringSoon = expirationDate != null && expirationDate.isBefore(today.plusDays(7));
+        this.daysUntilExpiration = expirationDate != null
+            ? (int) ChronoUnit.DAYS.between(today, expirationDate)
+            : Integer.MAX_VALUE;
+    }
+    
     @Data
     @Builder
+    @AllArgsConstructor
     public static class CategoryDTO {
         private Long id;
         private String name;
@@ -41,6 +85,7 @@ public class ProductDTO {
     
     @Data
     @Builder
+    @AllArgsConstructor
     public static class LocationDTO {
         private Long id;
         private String name;
@@ -0,0 +1,59 @@
+package de.hirthe.gefrierschrankapp.dto;
+
+import de.hirthe.gefrierschrankapp.repository.ProductFilter;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Filter query parameters of the product list. Categories and locations can be given
+ * more than once, e.g. {@code ?categoryId=1&categoryId=2}; dates are ISO dates.
+ */
+@Data
+public class ProductFilterRequest {
+
+    private List<Long> categoryId;
+
+    private List<Long> locationId;
+
+    private String name;
+
+    private String barcode;
+
+    private String status; // expired, expiring or fresh
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate expiresFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate expiresTo;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate frozenFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate frozenTo;
+
+    /**
+     * @throws IllegalArgumentException if the status is unknown
+     */
+    public ProductFilter toFilter() {
+        return ProductFilter.builder()
+                .categoryIds(categoryId)
+                .locationIds(locationId)
+                .name(blankToNull(name))
+                .barcode(blankToNull(barcode))
+                .expiryStatus(blankToNull(status) != null ? ProductFilter.ExpiryStatus.fromValue(status.trim()) : null)
+                .expiresFrom(expiresFrom)
+                .expiresTo(expiresTo)
+                .frozenFrom(frozenFrom)
+                .frozenTo(frozenTo)
+                .build();
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
@@ -0,0 +1,56 @@
+package de.hirthe.gefrierschrankapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A category or location with the totals of its products. Serialized with the fields of
+ * the category or location itself, followed by the totals.
+ */
+@Data
+@NoArgsConstructor
+public class ProductGroupSummary<T> {
+
+    private static final String DEFAULT_UNIT = "pieces";
+
+    @JsonUnwrapped
+    private T group;
+
+    private long productCount;
+    private Map<String, BigDecimal> quantityByUnit = new TreeMap<>();
+    private long expired;
+    private long expiringWithin3Days;
+    private long expiringWithin7Days;
+    private long expiringWithin14Days;
+    private long withoutExpirationDate;
+
+    public ProductGroupSummary(T group) {
+        this.group = group;
+    }
+
+    /**
+     * Add the totals of the group's products with one unit
+     */
+    public void add(ProductRepository.GroupTotals totals) {
+        // Products stored without a unit are counted as pieces, like new products
+        String unit = totals.getUnit() == null || totals.getUnit().isEmpty() ? DEFAULT_UNIT : totals.getUnit();
+        quantityByUnit.merge(unit, totals.getQuantity(), BigDecimal::add);
+
+        productCount += totals.getTotal();
+        expired += orZero(totals.getExpired());
+        expiringWithin3Days += orZero(totals.getExpiringWithin3Days());
+        expiringWithin7Days += orZero(totals.getExpiringWithin7Days());
+        expiringWithin14Days += orZero(totals.getExpiringWithin14Days());
+        withoutExpirationDate += orZero(totals.getWithoutExpirationDate());
+    }
+
+    private static long orZero(Long count) {
+        return count != null ? count : 0;
+    }
+}
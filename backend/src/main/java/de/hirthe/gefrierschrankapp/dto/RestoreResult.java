@@ -20,6 +20,9 @@ public class RestoreResult {
     
     private RestoreStats stats;
     
+    // Set when a streaming import failed and can be resumed
+    private String checkpointId;
+    
     @Builder.Default
     private List<String> errors = new ArrayList<>();
     
@@ -40,6 +43,7 @@ public class RestoreResult {
         private int locationsSkipped;
         private int productsImported;
         private int productsSkipped;
+        private int imagesRestored;
         private int totalProcessed;
     }
     
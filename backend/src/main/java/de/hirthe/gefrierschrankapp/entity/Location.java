@@ -8,7 +8,10 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -21,8 +24,15 @@ import java.util.List;
 @Builder
 public class Location {
     
+    public static final String ID_SEQUENCE = "locations_seq";
+    
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = ID_SEQUENCE)
+    @GenericGenerator(name = ID_SEQUENCE, type = PooledSequenceGenerator.class, parameters = {
+        @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = ID_SEQUENCE),
+        @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = PooledSequenceGenerator.INCREMENT_SIZE),
+        @Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = "pooled-lo")
+    })
     private Long id;
     
     @NotBlank(message = "Location name is required")
@@ -0,0 +1,46 @@
+package de.hirthe.gefrierschrankapp.entity;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.EventType;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sequence generator that hands out ids in preallocated blocks, so inserts are not
+ * executed one by one to learn the id and can be JDBC-batched. An id that is already
+ * set is kept, which lets a restore insert rows under their backup ids; the restore
+ * then calls {@link #reserveUpTo(long)} so the current block skips the restored range.
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    /** Allocation size of a sequence; the actual increment is read from the database sequence */
+    public static final String INCREMENT_SIZE = "50";
+
+    private final AtomicLong reservedUpTo = new AtomicLong();
+
+    @Override
+    public boolean allowAssignedIdentifiers() {
+        return true;
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        if (currentValue != null) {
+            return currentValue;
+        }
+
+        Object id;
+        do {
+            id = generate(session, owner);
+        } while (((Number) id).longValue() <= reservedUpTo.get());
+        return id;
+    }
+
+    /**
+     * Never generate an id up to and including {@code id} again
+     */
+    public void reserveUpTo(long id) {
+        reservedUpTo.accumulateAndGet(id, Math::max);
+    }
+}
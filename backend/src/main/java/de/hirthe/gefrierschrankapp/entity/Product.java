@@ -7,7 +7,11 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -15,14 +19,22 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "products")
+@DynamicUpdate // edits usually change one or two columns, only those are written
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Product {
     
+    public static final String ID_SEQUENCE = "products_seq";
+    
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = ID_SEQUENCE)
+    @GenericGenerator(name = ID_SEQUENCE, type = PooledSequenceGenerator.class, parameters = {
+        @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = ID_SEQUENCE),
+        @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = PooledSequenceGenerator.INCREMENT_SIZE),
+        @Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = "pooled-lo")
+    })
     private Long id;
     
     @NotBlank(message = "Product name is required")
@@ -40,7 +52,7 @@ public class Product {
     
     // Quantity and measurements
     @NotNull(message = "Quantity is required")
-    @DecimalMin(value = "0.01", message = "Quantity must be greater than 0")
+    @DecimalMin(value = "0", message = "Quantity must not be negative") // 0 once everything was consumed
     @Column(nullable = false, precision = 10, scale = 2)
     @Builder.Default
     private BigDecimal quantity = BigDecimal.ONE;
@@ -84,6 +96,10 @@ public class Product {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    // Incremented by every update, concurrent edits of an older version fail instead of overwriting
+    @Version
+    private Long version;
+    
     // Business logic methods
     public boolean isExpiringSoon(int daysThreshold) {
         if (expirationDate == null) {
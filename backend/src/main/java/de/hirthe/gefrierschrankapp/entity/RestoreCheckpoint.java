@@ -0,0 +1,74 @@
+package de.hirthe.gefrierschrankapp.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a streaming backup import. Updated in the same transaction as every
+ * committed product chunk, so a failed import can be resumed from the last chunk.
+ */
+@Entity
+@Table(name = "restore_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RestoreCheckpoint {
+    
+    @Id
+    @Column(length = 36)
+    private String id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private Status status = Status.IN_PROGRESS;
+    
+    // Identifies the backup file the checkpoint belongs to
+    @Column(name = "backup_timestamp", length = 30)
+    private String backupTimestamp;
+    
+    // Number of product entries of the backup that are already committed
+    @Column(name = "products_processed", nullable = false)
+    private int productsProcessed;
+    
+    // Old -> new id mappings as JSON, needed to resolve product references on resume
+    @Lob
+    @Column(name = "category_id_mapping")
+    private String categoryIdMapping;
+    
+    @Lob
+    @Column(name = "location_id_mapping")
+    private String locationIdMapping;
+    
+    // RestoreStats as JSON at the time of the last committed chunk
+    @Lob
+    private String stats;
+    
+    // Conflicts and errors reported so far as JSON, a resumed import reports them again
+    @Lob
+    private String conflicts;
+    
+    @Lob
+    private String errors;
+    
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    public enum Status {
+        IN_PROGRESS,
+        FAILED
+    }
+}
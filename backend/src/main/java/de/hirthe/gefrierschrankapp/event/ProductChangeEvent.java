@@ -0,0 +1,43 @@
+package de.hirthe.gefrierschrankapp.event;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Published whenever stored products change. Listeners that keep derived data, like the
+ * product statistics, use it to invalidate their state.
+ */
+@Getter
+public class ProductChangeEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED,
+        BULK, // many products at once, e.g. a restore
+        REASSIGNED, // products moved to another category or location, names and dates are unchanged
+        CONSUMED // part of a product was taken out, only the quantity changed
+    }
+
+    private final Type type;
+    private final List<Long> productIds; // empty for BULK and REASSIGNED
+
+    public ProductChangeEvent(Type type, Long productId) {
+        this(type, productId != null ? List.of(productId) : List.of());
+    }
+
+    /**
+     * One event for a batch of products, listeners read them back together
+     */
+    public ProductChangeEvent(Type type, List<Long> productIds) {
+        this.type = type;
+        this.productIds = List.copyOf(productIds);
+    }
+
+    public static ProductChangeEvent bulk() {
+        return new ProductChangeEvent(Type.BULK, List.of());
+    }
+
+    public static ProductChangeEvent reassigned() {
+        return new ProductChangeEvent(Type.REASSIGNED, List.of());
+    }
+}
@@ -0,0 +1,29 @@
+package de.hirthe.gefrierschrankapp.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Published when a category or location is created, renamed or deleted. The products
+ * themselves are unchanged, so the product indexes don't have to be rebuilt.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ProductGroupChangeEvent {
+
+    public enum Group {
+        CATEGORY, LOCATION
+    }
+
+    private final Group group;
+    private final String previousName; // null for a new group
+    private final String name; // null for a deleted group
+
+    public static ProductGroupChangeEvent category(String previousName, String name) {
+        return new ProductGroupChangeEvent(Group.CATEGORY, previousName, name);
+    }
+
+    public static ProductGroupChangeEvent location(String previousName, String name) {
+        return new ProductGroupChangeEvent(Group.LOCATION, previousName, name);
+    }
+}
@@ -31,12 +31,6 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
      */
     List<Category> findAllByOrderByNameAsc();
     
-    /**
-     * Find categories with product count
-     */
-    @Query("SELECT c FROM Category c LEFT JOIN FETCH c.products")
-    List<Category> findAllWithProducts();
-    
     /**
      * Count products in category
      */
@@ -0,0 +1,40 @@
+package de.hirthe.gefrierschrankapp.repository;
+
+import de.hirthe.gefrierschrankapp.entity.PooledSequenceGenerator;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.generator.Generator;
+import org.springframework.stereotype.Repository;
+
+import java.util.Locale;
+
+/**
+ * Keeps the id sequences ahead of ids that were inserted explicitly, e.g. by a restore
+ * that preserves backup ids
+ */
+@Repository
+@RequiredArgsConstructor
+public class IdSequenceRepository {
+
+    private final EntityManager entityManager;
+
+    /**
+     * Make sure ids up to and including {@code id} are not generated again for the entity:
+     * the database sequence is moved past it unless it already is, and the block the
+     * generator preallocated skips it. Must run before entities without an id are persisted.
+     */
+    public void reserveUpTo(Class<?> entityType, String sequenceName, long id) {
+        // H2 does not roll back ALTER SEQUENCE, so the sequence must never move backwards
+        entityManager.createNativeQuery("ALTER SEQUENCE " + sequenceName + " RESTART WITH (" +
+                "SELECT GREATEST(" + (id + 1) + ", BASE_VALUE) FROM INFORMATION_SCHEMA.SEQUENCES " +
+                "WHERE SEQUENCE_SCHEMA = SCHEMA() AND SEQUENCE_NAME = '" + sequenceName.toUpperCase(Locale.ROOT) + "')")
+            .executeUpdate();
+        
+        Generator generator = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+            .getMappingMetamodel().getEntityDescriptor(entityType).getGenerator();
+        if (generator instanceof PooledSequenceGenerator pooled) {
+            pooled.reserveUpTo(id);
+        }
+    }
+}
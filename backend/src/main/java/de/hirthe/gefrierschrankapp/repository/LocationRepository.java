@@ -36,12 +36,6 @@ public interface LocationRepository extends JpaRepository<Location, Long> {
      */
     List<Location> findByFreezerSectionOrderBySortOrderAsc(String freezerSection);
     
-    /**
-     * Find locations with product count
-     */
-    @Query("SELECT l FROM Location l LEFT JOIN FETCH l.products")
-    List<Location> findAllWithProducts();
-    
     /**
      * Count products in location
      */
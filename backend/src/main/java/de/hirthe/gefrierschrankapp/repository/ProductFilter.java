@@ -0,0 +1,68 @@
+package de.hirthe.gefrierschrankapp.repository;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Filters of the product list. Every filter is optional and only the filters that are set
+ * become conditions of the query, so the database can use the index of each of them.
+ * Date ranges include both ends.
+ */
+@Getter
+@Builder
+@ToString
+public class ProductFilter {
+
+    /**
+     * Expiry state of a product as shown in the product list
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public enum ExpiryStatus {
+        EXPIRED("expired"),   // expired before today
+        EXPIRING("expiring"), // expires today or within the expiring window
+        FRESH("fresh");       // expires after the expiring window or has no expiration date
+
+        private final String value;
+
+        public static ExpiryStatus fromValue(String value) {
+            for (ExpiryStatus status : values()) {
+                if (status.value.equals(value.toLowerCase(Locale.ROOT))) {
+                    return status;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported expiry status: " + value);
+        }
+    }
+
+    public static final int DEFAULT_EXPIRING_WITHIN_DAYS = 7;
+
+    private final Collection<Long> categoryIds;
+    private final Collection<Long> locationIds;
+    private final String name; // part of the name, ignoring case
+    private final String barcode;
+    private final LocalDate expiresFrom;
+    private final LocalDate expiresTo;
+    private final LocalDate frozenFrom;
+    private final LocalDate frozenTo;
+    private final ExpiryStatus expiryStatus;
+
+    @Builder.Default
+    private final int expiringWithinDays = DEFAULT_EXPIRING_WITHIN_DAYS;
+
+    private final LocalDate today; // reference date of the expiry status, defaults to the current date
+
+    public static ProductFilter none() {
+        return builder().build();
+    }
+
+    public LocalDate getToday() {
+        return today != null ? today : LocalDate.now();
+    }
+}
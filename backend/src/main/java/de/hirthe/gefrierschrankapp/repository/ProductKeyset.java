@@ -0,0 +1,47 @@
+package de.hirthe.gefrierschrankapp.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Position in a product list ordered by a sort field and the id. A slice after this
+ * position continues with the next products in that order.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ProductKeyset {
+
+    @Getter
+    @RequiredArgsConstructor
+    public enum SortField {
+        CREATED_AT("createdAt", false),
+        EXPIRATION_DATE("expirationDate", true),
+        NAME("name", false),
+        FROZEN_DATE("frozenDate", false);
+
+        private final String property;
+        private final boolean nullable; // null values are sorted last in both directions
+
+        public static SortField fromProperty(String property) {
+            for (SortField field : values()) {
+                if (field.property.equals(property)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported sort field for cursor paging: " + property);
+        }
+    }
+
+    private final SortField sortField;
+    private final boolean ascending;
+    private final Comparable<?> afterValue; // sort value of the last product of the previous slice
+    private final Long afterId; // null for the first slice
+
+    public static ProductKeyset first(SortField sortField, boolean ascending) {
+        return new ProductKeyset(sortField, ascending, null, null);
+    }
+
+    public boolean isFirst() {
+        return afterId == null;
+    }
+}
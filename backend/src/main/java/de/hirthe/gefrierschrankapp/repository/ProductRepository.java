@@ -1,18 +1,48 @@
 package de.hirthe.gefrierschrankapp.repository;
 
+import de.hirthe.gefrierschrankapp.dto.ProductDTO;
+import de.hirthe.gefrierschrankapp.entity.Category;
+import de.hirthe.gefrierschrankapp.entity.Location;
 import de.hirthe.gefrierschrankapp.entity.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
+    
+    /**
+     * Selects the columns of {@link ProductDTO} in one joined query, for list endpoints that
+     * don't need managed entities
+     */
+    String PRODUCT_DTO_SELECT = "SELECT new de.hirthe.gefrierschrankapp.dto.ProductDTO(" +
+            "p.id, p.name, c.id, c.name, c.color, c.defaultStorageDays, c.description, " +
+            "l.id, l.name, l.description, l.freezerSection, l.sortOrder, " +
+            "p.quantity, p.unit, p.frozenDate, p.expirationDate, p.notes, p.imageUrl, p.barcode, " +
+            "p.createdAt, p.updatedAt, p.version) " +
+            "FROM Product p LEFT JOIN p.category c LEFT JOIN p.location l ";
+    
+    /**
+     * Sums of the {@link ExpiryCounts} buckets, for the parameters today, in3Days, in7Days
+     * and in14Days
+     */
+    String EXPIRY_BUCKET_SUMS =
+            "SUM(CASE WHEN p.expirationDate < :today THEN 1 ELSE 0 END) AS expired, " +
+            "SUM(CASE WHEN p.expirationDate BETWEEN :today AND :in3Days THEN 1 ELSE 0 END) AS expiringWithin3Days, " +
+            "SUM(CASE WHEN p.expirationDate BETWEEN :today AND :in7Days THEN 1 ELSE 0 END) AS expiringWithin7Days, " +
+            "SUM(CASE WHEN p.expirationDate BETWEEN :today AND :in14Days THEN 1 ELSE 0 END) AS expiringWithin14Days, " +
+            "SUM(CASE WHEN p.expirationDate IS NULL THEN 1 ELSE 0 END) AS withoutExpirationDate ";
     
     /**
      * Find all products with pagination
@@ -20,14 +50,19 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     Page<Product> findAll(Pageable pageable);
     
     /**
-     * Find products by category
+     * Find products by category. Written out because the derived query joins the categories
+     * and filters on their id, which keeps the database from using the product index.
      */
-    Page<Product> findByCategoryId(Long categoryId, Pageable pageable);
+    @Query(value = "SELECT p FROM Product p WHERE p.category.id = :categoryId",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.category.id = :categoryId")
+    Page<Product> findByCategoryId(@Param("categoryId") Long categoryId, Pageable pageable);
     
     /**
-     * Find products by location
+     * Find products by location, written out like {@link #findByCategoryId}
      */
-    Page<Product> findByLocationId(Long locationId, Pageable pageable);
+    @Query(value = "SELECT p FROM Product p WHERE p.location.id = :locationId",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.location.id = :locationId")
+    Page<Product> findByLocationId(@Param("locationId") Long locationId, Pageable pageable);
     
     /**
      * Find products by user (for future multi-user support)
@@ -67,16 +102,76 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findAllWithCategoryAndLocation();
     
     /**
-     * Find products by multiple filters
+     * Find the next batch of products after the given id (keyset paging for exports)
+     */
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category LEFT JOIN FETCH p.location " +
+           "WHERE p.id > :afterId ORDER BY p.id")
+    List<Product> findBatchAfterId(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * Find products by id with category and location, in no particular order
+     */
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category LEFT JOIN FETCH p.location WHERE p.id IN :ids")
+    List<Product> findWithCategoryAndLocationByIds(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Find which of the given ids are already used by a product
+     */
+    @Query("SELECT p.id FROM Product p WHERE p.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Find all image URLs referenced by products
+     */
+    @Query("SELECT DISTINCT p.imageUrl FROM Product p WHERE p.imageUrl IS NOT NULL AND p.imageUrl <> ''")
+    List<String> findDistinctImageUrls();
+
+    /**
+     * Count products whose image URL points to a file, e.g. "{filename}" or "/api/images/{filename}?size=medium"
+     */
+    @Query("SELECT COUNT(p) FROM Product p WHERE p.imageUrl = :filename " +
+           "OR p.imageUrl LIKE CONCAT('%/', :filename) " +
+           "OR p.imageUrl LIKE CONCAT(:filename, '?%') " +
+           "OR p.imageUrl LIKE CONCAT('%/', :filename, '?%')")
+    long countImageReferences(@Param("filename") String filename);
+    
+    /**
+     * Find products by id as DTOs, in no particular order
+     */
+    @Query(PRODUCT_DTO_SELECT + "WHERE p.id IN :ids")
+    List<ProductDTO> findDTOsByIds(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Find the searchable text of the next batch of products after the given id
+     */
+    @Query("SELECT p.id AS id, p.name AS name, p.notes AS notes, p.barcode AS barcode FROM Product p " +
+           "WHERE p.id > :afterId ORDER BY p.id")
+    List<SearchableText> findSearchableTextAfterId(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * Find the searchable text of the given products
+     */
+    @Query("SELECT p.id AS id, p.name AS name, p.notes AS notes, p.barcode AS barcode FROM Product p WHERE p.id IN :ids")
+    List<SearchableText> findSearchableTextByIds(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Find the expiration dates of the next batch of products after the given id
+     */
+    @Query("SELECT p.id AS id, p.expirationDate AS expirationDate FROM Product p " +
+           "WHERE p.id > :afterId ORDER BY p.id")
+    List<ExpiryDate> findExpiryDatesAfterId(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * Find the expiration date of a single product
      */
-    @Query("SELECT p FROM Product p WHERE " +
-           "(:categoryId IS NULL OR p.category.id = :categoryId) AND " +
-           "(:locationId IS NULL OR p.location.id = :locationId) AND " +
-           "(:name IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%')))")
-    Page<Product> findByFilters(@Param("categoryId") Long categoryId,
-                               @Param("locationId") Long locationId,
-                               @Param("name") String name,
-                               Pageable pageable);
+    @Query("SELECT p.id AS id, p.expirationDate AS expirationDate FROM Product p WHERE p.id = :id")
+    Optional<ExpiryDate> findExpiryDateById(@Param("id") Long id);
+    
+    /**
+     * Find the expiration dates of the given products
+     */
+    @Query("SELECT p.id AS id, p.expirationDate AS expirationDate FROM Product p WHERE p.id IN :ids")
+    List<ExpiryDate> findExpiryDatesByIds(@Param("ids") Collection<Long> ids);
     
     /**
      * Count total products
@@ -86,10 +181,159 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     /**
      * Count products by category
      */
-    long countByCategoryId(Long categoryId);
+    @Query("SELECT COUNT(p) FROM Product p WHERE p.category.id = :categoryId")
+    long countByCategoryId(@Param("categoryId") Long categoryId);
     
     /**
      * Count products by location
      */
-    long countByLocationId(Long locationId);
-}
\ No newline at end of file
+    @Query("SELECT COUNT(p) FROM Product p WHERE p.location.id = :locationId")
+    long countByLocationId(@Param("locationId") Long locationId);
+    
+    /**
+     * Count products per category
+     */
+    @Query("SELECT c.id AS id, c.name AS name, COUNT(p) AS productCount FROM Product p JOIN p.category c " +
+           "GROUP BY c.id, c.name ORDER BY c.name")
+    List<GroupCount> countByCategory();
+    
+    /**
+     * Count products per location
+     */
+    @Query("SELECT l.id AS id, l.name AS name, COUNT(p) AS productCount FROM Product p JOIN p.location l " +
+           "GROUP BY l.id, l.name, l.sortOrder ORDER BY l.sortOrder, l.name")
+    List<GroupCount> countByLocation();
+    
+    /**
+     * Product count, quantity and expiry buckets per category and unit in one grouped query,
+     * without loading any product. Quantities of different units are not added up.
+     */
+    @Query("SELECT p.category.id AS groupId, p.unit AS unit, COUNT(p) AS total, SUM(p.quantity) AS quantity, " +
+           EXPIRY_BUCKET_SUMS + "FROM Product p WHERE p.category IS NOT NULL GROUP BY p.category.id, p.unit")
+    List<GroupTotals> sumByCategoryAndUnit(@Param("today") LocalDate today,
+                                           @Param("in3Days") LocalDate in3Days,
+                                           @Param("in7Days") LocalDate in7Days,
+                                           @Param("in14Days") LocalDate in14Days);
+    
+    /**
+     * Product count, quantity and expiry buckets per location and unit, like
+     * {@link #sumByCategoryAndUnit}
+     */
+    @Query("SELECT p.location.id AS groupId, p.unit AS unit, COUNT(p) AS total, SUM(p.quantity) AS quantity, " +
+           EXPIRY_BUCKET_SUMS + "FROM Product p WHERE p.location IS NOT NULL GROUP BY p.location.id, p.unit")
+    List<GroupTotals> sumByLocationAndUnit(@Param("today") LocalDate today,
+                                           @Param("in3Days") LocalDate in3Days,
+                                           @Param("in7Days") LocalDate in7Days,
+                                           @Param("in14Days") LocalDate in14Days);
+    
+    /**
+     * Find the image URLs of products by id; products without an image are returned with a null URL
+     */
+    @Query("SELECT p.id AS id, p.imageUrl AS imageUrl FROM Product p WHERE p.id IN :ids")
+    List<ImageUrl> findImageUrlsByIds(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Move products to a location in one statement, null removes their location. Like every
+     * bulk update it increments the version itself, Hibernate only does that for entity updates.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.location = :location, p.updatedAt = :now, p.version = p.version + 1 WHERE p.id IN :ids")
+    int updateLocationByIds(@Param("ids") Collection<Long> ids, @Param("location") Location location,
+                            @Param("now") LocalDateTime now);
+    
+    /**
+     * Assign products to a category in one statement, null removes their category
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.category = :category, p.updatedAt = :now, p.version = p.version + 1 WHERE p.id IN :ids")
+    int updateCategoryByIds(@Param("ids") Collection<Long> ids, @Param("category") Category category,
+                            @Param("now") LocalDateTime now);
+    
+    /**
+     * Take an amount out of a product, only if at least that much is left
+     * 
+     * @return 1 if the product was updated, 0 if it does not exist or has less left
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.quantity = p.quantity - :amount, p.updatedAt = :now, p.version = p.version + 1 " +
+           "WHERE p.id = :id AND p.quantity >= :amount")
+    int decrementQuantity(@Param("id") Long id, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+    
+    /**
+     * Delete a product if nothing is left of it
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Product p WHERE p.id = :id AND p.quantity <= 0")
+    int deleteIfEmpty(@Param("id") Long id);
+    
+    /**
+     * Find the products with a name that have at least the amount left, oldest frozen first
+     */
+    @Query("SELECT p.id FROM Product p WHERE p.name = :name AND p.quantity >= :amount ORDER BY p.frozenDate, p.id")
+    List<Long> findIdsOldestFirst(@Param("name") String name, @Param("amount") BigDecimal amount, Pageable pageable);
+    
+    /**
+     * Check if a product with the exact name exists
+     */
+    boolean existsByName(String name);
+    
+    /**
+     * Delete products in one statement
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Product p WHERE p.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Image URL of a single product
+     */
+    interface ImageUrl {
+        Long getId();
+        String getImageUrl();
+    }
+    
+    /**
+     * Product counts per expiry bucket, sums are null when there are no products
+     */
+    interface ExpiryCounts {
+        long getTotal();
+        Long getExpired();
+        Long getExpiringWithin3Days();
+        Long getExpiringWithin7Days();
+        Long getExpiringWithin14Days();
+        Long getWithoutExpirationDate();
+    }
+    
+    /**
+     * The product fields covered by the search index
+     */
+    interface SearchableText {
+        Long getId();
+        String getName();
+        String getNotes();
+        String getBarcode();
+    }
+    
+    /**
+     * The product field covered by the expiry index
+     */
+    interface ExpiryDate {
+        Long getId();
+        LocalDate getExpirationDate();
+    }
+    
+    interface GroupCount {
+        Long getId();
+        String getName();
+        long getProductCount();
+    }
+    
+    /**
+     * Totals of the products of one category or location with one unit
+     */
+    interface GroupTotals extends ExpiryCounts {
+        Long getGroupId();
+        String getUnit();
+        BigDecimal getQuantity();
+    }
+}
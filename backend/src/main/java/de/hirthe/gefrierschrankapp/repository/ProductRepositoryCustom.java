@@ -0,0 +1,28 @@
+package de.hirthe.gefrierschrankapp.repository;
+
+import de.hirthe.gefrierschrankapp.dto.ProductDTO;
+import de.hirthe.gefrierschrankapp.entity.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+public interface ProductRepositoryCustom {
+
+    /**
+     * Find products matching the filter
+     */
+    Page<Product> findByFilter(ProductFilter filter, Pageable pageable);
+
+    /**
+     * Find products matching the filter as DTOs
+     */
+    Page<ProductDTO> findDTOsByFilter(ProductFilter filter, Pageable pageable);
+
+    /**
+     * Find up to {@code limit} products following the keyset position, with the same filters
+     * as {@link #findByFilter}. Seeks on (sort field, id) instead of skipping
+     * rows and runs no count query. Rows are read as DTOs, not as managed entities.
+     */
+    List<ProductDTO> findSlice(ProductFilter filter, ProductKeyset keyset, int limit);
+}
@@ -0,0 +1,210 @@
+package de.hirthe.gefrierschrankapp.repository;
+
+import de.hirthe.gefrierschrankapp.dto.ProductDTO;
+import de.hirthe.gefrierschrankapp.entity.Category;
+import de.hirthe.gefrierschrankapp.entity.Location;
+import de.hirthe.gefrierschrankapp.entity.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Criteria queries that can't be expressed as derived or annotated repository methods
+ */
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<Product> findByFilter(ProductFilter filter, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Product> query = cb.createQuery(Product.class);
+        Root<Product> product = query.from(Product.class);
+        query.select(product)
+                .where(filters(cb, product, filter))
+                .orderBy(QueryUtils.toOrders(pageable.getSort(), product, cb));
+
+        return page(query, pageable, () -> count(filter));
+    }
+
+    @Override
+    public Page<ProductDTO> findDTOsByFilter(ProductFilter filter, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductDTO> query = cb.createQuery(ProductDTO.class);
+        Root<Product> product = query.from(Product.class);
+        selectDTO(cb, query, product);
+        query.where(filters(cb, product, filter))
+                .orderBy(QueryUtils.toOrders(pageable.getSort(), product, cb));
+
+        return page(query, pageable, () -> count(filter));
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<ProductDTO> findSlice(ProductFilter filter, ProductKeyset keyset, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductDTO> query = cb.createQuery(ProductDTO.class);
+        Root<Product> product = query.from(Product.class);
+        selectDTO(cb, query, product);
+
+        List<Predicate> predicates = new ArrayList<>(List.of(filters(cb, product, filter)));
+
+        ProductKeyset.SortField sortField = keyset.getSortField();
+        Expression<Comparable> key = product.get(sortField.getProperty());
+        Path<Long> id = product.get("id");
+        boolean ascending = keyset.isAscending();
+
+        if (!keyset.isFirst()) {
+            predicates.add(after(cb, key, id, keyset));
+        }
+        query.where(predicates.toArray(new Predicate[0]));
+
+        List<Order> orders = new ArrayList<>();
+        if (sortField.isNullable()) {
+            orders.add(cb.asc(cb.selectCase().when(cb.isNull(key), 1).otherwise(0)));
+        }
+        orders.add(ascending ? cb.asc(key) : cb.desc(key));
+        orders.add(ascending ? cb.asc(id) : cb.desc(id));
+        query.orderBy(orders);
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private <T> Page<T> page(CriteriaQuery<T> query, Pageable pageable, LongSupplier count) {
+        TypedQuery<T> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        // The count is skipped when the first or last page shows the total already
+        return PageableExecutionUtils.getPage(typedQuery.getResultList(), pageable, count);
+    }
+
+    private long count(ProductFilter filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Product> product = query.from(Product.class);
+        query.select(cb.count(product)).where(filters(cb, product, filter));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    /**
+     * Only filters that are set become conditions. A "(:id IS NULL OR ...)" condition would
+     * keep the database from using the index of the filtered column.
+     */
+    private Predicate[] filters(CriteriaBuilder cb, Root<Product> product, ProductFilter filter) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.getCategoryIds() != null && !filter.getCategoryIds().isEmpty()) {
+            predicates.add(idIn(cb, product.get("category").get("id"), filter.getCategoryIds()));
+        }
+        if (filter.getLocationIds() != null && !filter.getLocationIds().isEmpty()) {
+            predicates.add(idIn(cb, product.get("location").get("id"), filter.getLocationIds()));
+        }
+        if (filter.getName() != null) {
+            predicates.add(cb.like(cb.lower(product.get("name")), "%" + filter.getName().toLowerCase() + "%"));
+        }
+        if (filter.getBarcode() != null) {
+            predicates.add(cb.equal(product.get("barcode"), filter.getBarcode()));
+        }
+
+        Path<LocalDate> expirationDate = product.get("expirationDate");
+        Path<LocalDate> frozenDate = product.get("frozenDate");
+        if (filter.getExpiresFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(expirationDate, filter.getExpiresFrom()));
+        }
+        if (filter.getExpiresTo() != null) {
+            predicates.add(cb.lessThanOrEqualTo(expirationDate, filter.getExpiresTo()));
+        }
+        if (filter.getFrozenFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(frozenDate, filter.getFrozenFrom()));
+        }
+        if (filter.getFrozenTo() != null) {
+            predicates.add(cb.lessThanOrEqualTo(frozenDate, filter.getFrozenTo()));
+        }
+        if (filter.getExpiryStatus() != null) {
+            predicates.add(expiryStatus(cb, expirationDate, filter));
+        }
+        return predicates.toArray(new Predicate[0]);
+    }
+
+    private Predicate idIn(CriteriaBuilder cb, Path<Long> id, Collection<Long> ids) {
+        if (ids.size() == 1) {
+            return cb.equal(id, ids.iterator().next());
+        }
+        return id.in(ids);
+    }
+
+    private Predicate expiryStatus(CriteriaBuilder cb, Path<LocalDate> expirationDate, ProductFilter filter) {
+        LocalDate today = filter.getToday();
+        LocalDate expiringUntil = today.plusDays(filter.getExpiringWithinDays());
+        switch (filter.getExpiryStatus()) {
+            case EXPIRED:
+                return cb.lessThan(expirationDate, today);
+            case EXPIRING:
+                return cb.between(expirationDate, today, expiringUntil);
+            default:
+                return cb.or(cb.greaterThan(expirationDate, expiringUntil), cb.isNull(expirationDate));
+        }
+    }
+
+    private void selectDTO(CriteriaBuilder cb, CriteriaQuery<ProductDTO> query, Root<Product> product) {
+        Join<Product, Category> category = product.join("category", JoinType.LEFT);
+        Join<Product, Location> location = product.join("location", JoinType.LEFT);
+
+        // Same columns as ProductRepository.PRODUCT_DTO_SELECT
+        query.select(cb.construct(ProductDTO.class,
+                product.get("id"), product.get("name"),
+                category.get("id"), category.get("name"), category.get("color"),
+                category.get("defaultStorageDays"), category.get("description"),
+                location.get("id"), location.get("name"), location.get("description"),
+                location.get("freezerSection"), location.get("sortOrder"),
+                product.get("quantity"), product.get("unit"), product.get("frozenDate"),
+                product.get("expirationDate"), product.get("notes"), product.get("imageUrl"),
+                product.get("barcode"), product.get("createdAt"), product.get("updatedAt"),
+                product.get("version")));
+    }
+
+    /**
+     * Rows after (value, id) in sort order; products without a value come last
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate after(CriteriaBuilder cb, Expression<Comparable> key, Path<Long> id, ProductKeyset keyset) {
+        boolean ascending = keyset.isAscending();
+        Predicate idAfter = ascending ? cb.gt(id, keyset.getAfterId()) : cb.lt(id, keyset.getAfterId());
+
+        if (keyset.getAfterValue() == null) {
+            // Already in the trailing products without a value
+            return cb.and(cb.isNull(key), idAfter);
+        }
+
+        Comparable value = keyset.getAfterValue();
+        Predicate keyAfter = ascending ? cb.greaterThan(key, value) : cb.lessThan(key, value);
+        Predicate sameKey = cb.and(cb.equal(key, value), idAfter);
+        if (keyset.getSortField().isNullable()) {
+            return cb.or(keyAfter, sameKey, cb.isNull(key));
+        }
+        return cb.or(keyAfter, sameKey);
+    }
+}
@@ -0,0 +1,23 @@
+package de.hirthe.gefrierschrankapp.repository;
+
+import de.hirthe.gefrierschrankapp.entity.RestoreCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RestoreCheckpointRepository extends JpaRepository<RestoreCheckpoint, String> {
+    
+    /**
+     * Change the status of a checkpoint only if it still has the expected status, so two
+     * imports can't claim the same checkpoint
+     * 
+     * @return the number of changed checkpoints, 0 or 1
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE RestoreCheckpoint c SET c.status = :status WHERE c.id = :id AND c.status = :expected")
+    int updateStatus(@Param("id") String id, @Param("expected") RestoreCheckpoint.Status expected,
+                     @Param("status") RestoreCheckpoint.Status status);
+}
@@ -0,0 +1,584 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.dto.BackupDTO;
+import de.hirthe.gefrierschrankapp.dto.BackupImageManifest;
+import de.hirthe.gefrierschrankapp.dto.RestoreRequest;
+import de.hirthe.gefrierschrankapp.dto.RestoreResult;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.input.ProxyInputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes and reads ZIP backups. Entries are encoded and decoded while they are streamed,
+ * neither {@code backup.json} nor the images are ever held in memory as a whole.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BackupArchiveService {
+
+    static final String BACKUP_ENTRY = "backup.json";
+    static final String METADATA_ENTRY = "metadata.txt";
+    static final String IMAGES_PREFIX = "images/";
+    static final String IMAGE_MANIFEST_ENTRY = IMAGES_PREFIX + "manifest.json";
+    static final String IMAGE_BLOB_PREFIX = IMAGES_PREFIX + "blobs/";
+    private static final String IMAGE_MANIFEST_VERSION = "1.0";
+
+    private final BackupService backupService;
+    private final ImageService imageService;
+    private final ProductRepository productRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.backup.zip.max-uncompressed-size:1GB}")
+    private DataSize maxUncompressedSize;
+
+    @Value("${app.backup.zip.max-compression-ratio:100}")
+    private int maxCompressionRatio;
+
+    @Value("${app.backup.image-restore-threads:4}")
+    private int imageRestoreThreads;
+
+    /**
+     * Write a ZIP backup to the given stream. With {@code includeImages} the product images
+     * are added in front of {@code backup.json}, one uncompressed entry per distinct content.
+     * The stream is finished but not closed.
+     */
+    public BackupDTO.BackupMetadata writeZip(OutputStream out, boolean includeImages, boolean includeImageVariants) throws IOException {
+        ZipOutputStream zos = new ZipOutputStream(out);
+        int imageCount = includeImages ? writeImages(zos, includeImageVariants) : 0;
+
+        zos.putNextEntry(new ZipEntry(BACKUP_ENTRY));
+        BackupDTO.BackupMetadata backupMetadata = backupService.writeBackup(zos);
+        zos.closeEntry();
+
+        zos.putNextEntry(new ZipEntry(METADATA_ENTRY));
+        String metadata = String.format(
+            "Gefrierschrank App Backup\n" +
+            "Created: %s\n" +
+            "Version: %s\n" +
+            "Categories: %d\n" +
+            "Locations: %d\n" +
+            "Products: %d\n",
+            LocalDateTime.now(),
+            backupMetadata.getApplicationVersion(),
+            backupMetadata.getTotalCategories(),
+            backupMetadata.getTotalLocations(),
+            backupMetadata.getTotalProducts()
+        );
+        if (includeImages) {
+            metadata += "Images: " + imageCount + "\n";
+        }
+        zos.write(metadata.getBytes(StandardCharsets.UTF_8));
+        zos.closeEntry();
+
+        zos.finish();
+        return backupMetadata;
+    }
+
+    private int writeImages(ZipOutputStream zos, boolean includeImageVariants) throws IOException {
+        BackupImageManifest manifest = BackupImageManifest.builder()
+            .version(IMAGE_MANIFEST_VERSION)
+            .build();
+        Map<String, ImageBlob> blobs = new LinkedHashMap<>();
+        Set<String> filenames = new HashSet<>();
+        Path uploadPath = imageService.getUploadPath();
+        ImageService.ImageSize[] sizes = includeImageVariants
+            ? ImageService.ImageSize.values()
+            : new ImageService.ImageSize[] { ImageService.ImageSize.ORIGINAL };
+
+        // STORED entries need size and CRC up front, so the files are hashed before anything is written
+        for (String imageUrl : productRepository.findDistinctImageUrls()) {
+            String filename = ImageService.filenameFromUrl(imageUrl);
+            if (!ImageService.isSafeFilename(filename)) {
+                log.warn("Skipping image with invalid filename: {}", imageUrl);
+                continue;
+            }
+            if (!filenames.add(filename)) {
+                continue;
+            }
+
+            for (ImageService.ImageSize size : sizes) {
+                Path file = imageService.getImagePath(filename, size);
+                if (!Files.isRegularFile(file)) {
+                    continue;
+                }
+
+                ImageBlob blob = ImageBlob.read(file);
+                String blobEntry = IMAGE_BLOB_PREFIX + blob.sha256 + "." + FilenameUtils.getExtension(filename).toLowerCase();
+                blobs.putIfAbsent(blobEntry, blob);
+                manifest.getFiles().add(BackupImageManifest.ImageFile.builder()
+                    .path(uploadPath.relativize(file).toString().replace('\\', '/'))
+                    .blob(blobEntry)
+                    .size(blob.size)
+                    .build());
+            }
+        }
+
+        zos.putNextEntry(new ZipEntry(IMAGE_MANIFEST_ENTRY));
+        zos.write(objectMapper.writeValueAsBytes(manifest));
+        zos.closeEntry();
+
+        for (Map.Entry<String, ImageBlob> blob : blobs.entrySet()) {
+            // Images are already compressed, deflating them again only costs CPU
+            ZipEntry entry = new ZipEntry(blob.getKey());
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(blob.getValue().size);
+            entry.setCompressedSize(blob.getValue().size);
+            entry.setCrc(blob.getValue().crc);
+            zos.putNextEntry(entry);
+            Files.copy(blob.getValue().path, zos);
+            zos.closeEntry();
+        }
+
+        log.info("Added {} image files ({} distinct) to backup", manifest.getFiles().size(), blobs.size());
+        return manifest.getFiles().size();
+    }
+
+    /**
+     * Restore the {@code backup.json} entry of a ZIP backup and compare the result with the
+     * counts in {@code metadata.txt}, if the archive contains one. Images are written to the
+     * upload directory in parallel; an image whose name is taken by a different file is
+     * restored under a new name and the product image URLs are rewritten accordingly.
+     */
+    public RestoreResult restoreFromZip(InputStream in, RestoreRequest.RestoreOptions options, String resumeCheckpointId) throws IOException {
+        log.info("Starting restore from ZIP archive");
+
+        RestoreResult result = null;
+        BackupDTO.BackupMetadata expected = null;
+        ImageRestore images = null;
+        int imagesRestored = 0;
+
+        try (ArchiveReader archive = new ArchiveReader(in)) {
+            ZipEntry entry;
+            while ((entry = archive.nextEntry()) != null) {
+                if (IMAGE_MANIFEST_ENTRY.equals(entry.getName())) {
+                    images = new ImageRestore(objectMapper.readValue(archive.entryStream(), BackupImageManifest.class));
+                } else if (entry.getName().startsWith(IMAGE_BLOB_PREFIX)) {
+                    if (images != null) {
+                        images.extract(entry.getName(), archive.entryStream());
+                    }
+                } else if (result == null && isBackupEntry(entry)) {
+                    UnaryOperator<String> imageUrlMapper = images != null ? images::rewriteImageUrl : UnaryOperator.identity();
+                    result = backupService.restoreFromStream(archive.entryStream(), options, resumeCheckpointId, imageUrlMapper);
+                    if (!result.isSuccess()) {
+                        break;
+                    }
+                } else if (METADATA_ENTRY.equals(entry.getName())) {
+                    expected = readMetadata(archive.entryStream());
+                }
+                // Drain what the parser left behind so the size limits also apply to it
+                IOUtils.consume(archive.entryStream());
+            }
+        } finally {
+            if (images != null) {
+                imagesRestored = images.finish();
+            }
+        }
+
+        if (result == null) {
+            throw new IllegalArgumentException("ZIP archive does not contain " + BACKUP_ENTRY);
+        }
+
+        if (images != null) {
+            result.getStats().setImagesRestored(imagesRestored);
+            result.getWarnings().addAll(images.warnings);
+        }
+
+        if (result.isSuccess() && expected != null) {
+            RestoreResult.RestoreStats stats = result.getStats();
+            checkCount("categories", expected.getTotalCategories(),
+                       stats.getCategoriesImported() + stats.getCategoriesSkipped(), result.getWarnings());
+            checkCount("locations", expected.getTotalLocations(),
+                       stats.getLocationsImported() + stats.getLocationsSkipped(), result.getWarnings());
+            checkCount("products", expected.getTotalProducts(),
+                       stats.getProductsImported() + stats.getProductsSkipped(), result.getWarnings());
+        }
+
+        return result;
+    }
+
+    /**
+     * Count the collections of a ZIP backup without restoring it. Throws an
+     * {@link IllegalArgumentException} if the counts don't match {@code metadata.txt}.
+     */
+    public BackupDTO.BackupMetadata inspectZip(InputStream in) throws IOException {
+        BackupDTO.BackupMetadata actual = null;
+        BackupDTO.BackupMetadata expected = null;
+
+        try (ArchiveReader archive = new ArchiveReader(in)) {
+            ZipEntry entry;
+            while ((entry = archive.nextEntry()) != null) {
+                if (actual == null && isBackupEntry(entry)) {
+                    actual = backupService.inspectBackup(archive.entryStream());
+                } else if (METADATA_ENTRY.equals(entry.getName())) {
+                    expected = readMetadata(archive.entryStream());
+                }
+                IOUtils.consume(archive.entryStream());
+            }
+        }
+
+        if (actual == null) {
+            throw new IllegalArgumentException("ZIP archive does not contain " + BACKUP_ENTRY);
+        }
+
+        if (expected != null) {
+            List<String> mismatches = new ArrayList<>();
+            checkCount("categories", expected.getTotalCategories(), actual.getTotalCategories(), mismatches);
+            checkCount("locations", expected.getTotalLocations(), actual.getTotalLocations(), mismatches);
+            checkCount("products", expected.getTotalProducts(), actual.getTotalProducts(), mismatches);
+            if (!mismatches.isEmpty()) {
+                throw new IllegalArgumentException(String.join("; ", mismatches));
+            }
+        }
+
+        return actual;
+    }
+
+    private boolean isBackupEntry(ZipEntry entry) {
+        // Archives repacked by hand may use a different name for the JSON file
+        return !entry.isDirectory() && !entry.getName().startsWith(IMAGES_PREFIX)
+            && entry.getName().toLowerCase().endsWith(".json");
+    }
+
+    private BackupDTO.BackupMetadata readMetadata(InputStream in) throws IOException {
+        BackupDTO.BackupMetadata metadata = new BackupDTO.BackupMetadata();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int separator = line.indexOf(':');
+            if (separator < 0) {
+                continue;
+            }
+
+            String key = line.substring(0, separator).trim();
+            String value = line.substring(separator + 1).trim();
+            try {
+                switch (key) {
+                    case "Version":
+                        metadata.setApplicationVersion(value);
+                        break;
+                    case "Categories":
+                        metadata.setTotalCategories(Long.parseLong(value));
+                        break;
+                    case "Locations":
+                        metadata.setTotalLocations(Long.parseLong(value));
+                        break;
+                    case "Products":
+                        metadata.setTotalProducts(Long.parseLong(value));
+                        break;
+                    default:
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + METADATA_ENTRY + " line: " + line);
+            }
+        }
+
+        return metadata;
+    }
+
+    private void checkCount(String collection, long expected, long actual, List<String> messages) {
+        if (expected != actual) {
+            messages.add(METADATA_ENTRY + " lists " + expected + " " + collection + ", backup contains " + actual);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Content hash, CRC and size of an image file, read in a single pass
+     */
+    private static class ImageBlob {
+        private final Path path;
+        private final long size;
+        private final long crc;
+        private final String sha256;
+
+        private ImageBlob(Path path, long size, long crc, String sha256) {
+            this.path = path;
+            this.size = size;
+            this.crc = crc;
+            this.sha256 = sha256;
+        }
+
+        private static ImageBlob read(Path path) throws IOException {
+            MessageDigest digest = sha256();
+            CRC32 crc = new CRC32();
+            long size = 0;
+
+            try (InputStream in = Files.newInputStream(path)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    crc.update(buffer, 0, read);
+                    size += read;
+                }
+            }
+
+            return new ImageBlob(path, size, crc.getValue(), HexFormat.of().formatHex(digest.digest()));
+        }
+    }
+
+    /**
+     * Restores the images of one archive. Blobs have to be read from the archive one after
+     * another, writing them to their target files happens on a small thread pool meanwhile.
+     */
+    private class ImageRestore {
+        private final Path uploadPath;
+        private final ExecutorService executor;
+        private final Map<String, List<Path>> targetsByBlob = new HashMap<>();
+        private final Map<String, String> renamedFiles = new HashMap<>();
+        private final List<Future<Integer>> writes = new ArrayList<>();
+        private final List<String> warnings = new ArrayList<>();
+
+        private ImageRestore(BackupImageManifest manifest) throws IOException {
+            this.uploadPath = imageService.getUploadPath().toAbsolutePath().normalize();
+            Files.createDirectories(uploadPath);
+            plan(manifest);
+            this.executor = Executors.newFixedThreadPool(imageRestoreThreads);
+        }
+
+        /**
+         * Decide per filename whether it can be restored as is, already exists with the same
+         * content, or collides with a different file and needs a new name.
+         */
+        private void plan(BackupImageManifest manifest) throws IOException {
+            Map<String, List<BackupImageManifest.ImageFile>> filesByName = new LinkedHashMap<>();
+            for (BackupImageManifest.ImageFile file : manifest.getFiles()) {
+                String filename = file.getPath().substring(file.getPath().lastIndexOf('/') + 1);
+                filesByName.computeIfAbsent(filename, k -> new ArrayList<>()).add(file);
+            }
+
+            for (Map.Entry<String, List<BackupImageManifest.ImageFile>> group : filesByName.entrySet()) {
+                String filename = group.getKey();
+                if (!ImageService.isSafeFilename(filename)) {
+                    warnings.add("Skipped image with invalid filename: " + filename);
+                    continue;
+                }
+
+                boolean collides = false;
+                for (BackupImageManifest.ImageFile file : group.getValue()) {
+                    Path existing = destination(file, filename);
+                    if (existing != null && Files.exists(existing)
+                            && !blobHash(file.getBlob()).equals(ImageBlob.read(existing).sha256)) {
+                        collides = true;
+                    }
+                }
+
+                String targetName = filename;
+                if (collides) {
+                    targetName = UUID.randomUUID().toString() + "." + FilenameUtils.getExtension(filename);
+                    renamedFiles.put(filename, targetName);
+                    warnings.add("Image " + filename + " already exists with different content, restored as " + targetName);
+                }
+
+                for (BackupImageManifest.ImageFile file : group.getValue()) {
+                    Path target = destination(file, targetName);
+                    if (target == null) {
+                        warnings.add("Skipped image outside of the upload directory: " + file.getPath());
+                    } else if (!Files.exists(target)) {
+                        targetsByBlob.computeIfAbsent(file.getBlob(), k -> new ArrayList<>()).add(target);
+                    }
+                }
+            }
+        }
+
+        private Path destination(BackupImageManifest.ImageFile file, String filename) {
+            String path = file.getPath();
+            int slash = path.lastIndexOf('/');
+            Path directory = slash < 0 ? uploadPath : uploadPath.resolve(path.substring(0, slash));
+            Path target = directory.resolve(filename).normalize();
+            return target.startsWith(uploadPath) ? target : null;
+        }
+
+        private String blobHash(String blob) {
+            String name = blob.substring(blob.lastIndexOf('/') + 1);
+            int dot = name.indexOf('.');
+            return dot < 0 ? name : name.substring(0, dot);
+        }
+
+        private void extract(String blob, InputStream in) throws IOException {
+            List<Path> targets = targetsByBlob.remove(blob);
+            if (targets == null) {
+                return;
+            }
+
+            Path temp = Files.createTempFile(uploadPath, "restore-", ".tmp");
+            MessageDigest digest = sha256();
+            try (InputStream source = new DigestInputStream(in, digest)) {
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            if (!HexFormat.of().formatHex(digest.digest()).equals(blobHash(blob))) {
+                Files.deleteIfExists(temp);
+                warnings.add("Image content does not match its checksum: " + blob);
+                return;
+            }
+
+            writes.add(executor.submit(() -> writeTargets(temp, targets)));
+        }
+
+        private int writeTargets(Path temp, List<Path> targets) throws IOException {
+            try {
+                for (int i = 0; i < targets.size(); i++) {
+                    Path target = targets.get(i);
+                    Files.createDirectories(target.getParent());
+                    if (i == targets.size() - 1) {
+                        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                    } else {
+                        Files.copy(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                return targets.size();
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private String rewriteImageUrl(String imageUrl) {
+            String filename = ImageService.filenameFromUrl(imageUrl);
+            String renamed = filename != null ? renamedFiles.get(filename) : null;
+            if (renamed == null) {
+                return imageUrl;
+            }
+
+            int index = imageUrl.lastIndexOf(filename);
+            return imageUrl.substring(0, index) + renamed + imageUrl.substring(index + filename.length());
+        }
+
+        /**
+         * Wait for all pending writes and return the number of files written
+         */
+        private int finish() {
+            int written = 0;
+            try {
+                for (Future<Integer> write : writes) {
+                    try {
+                        written += write.get();
+                    } catch (ExecutionException e) {
+                        log.error("Failed to restore image", e.getCause());
+                        warnings.add("Failed to restore image: " + e.getCause().getMessage());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                warnings.add("Image restore was interrupted");
+            } finally {
+                executor.shutdownNow();
+            }
+
+            for (String blob : targetsByBlob.keySet()) {
+                warnings.add("Image missing from archive: " + blob);
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Iterates over the entries of an archive and keeps track of the decompressed size, so a
+     * small upload can't expand into an arbitrarily large amount of data.
+     */
+    private class ArchiveReader implements AutoCloseable {
+        private final CountingInputStream compressed;
+        private final ZipInputStream zip;
+        private final InputStream uncompressed;
+        private long uncompressedBytes;
+
+        private ArchiveReader(InputStream in) {
+            this.compressed = new CountingInputStream(in);
+            this.zip = new ZipInputStream(compressed);
+            this.uncompressed = new ProxyInputStream(zip) {
+                @Override
+                protected void afterRead(int n) throws IOException {
+                    if (n > 0) {
+                        countUncompressed(n);
+                    }
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    long skipped = super.skip(n);
+                    countUncompressed(skipped);
+                    return skipped;
+                }
+            };
+        }
+
+        private ZipEntry nextEntry() throws IOException {
+            return zip.getNextEntry();
+        }
+
+        private InputStream entryStream() {
+            // Consumers close the stream they are given, the archive must stay open for the next entry
+            return CloseShieldInputStream.wrap(uncompressed);
+        }
+
+        private void countUncompressed(long n) throws IOException {
+            uncompressedBytes += n;
+
+            if (uncompressedBytes > maxUncompressedSize.toBytes()) {
+                throw new IOException("ZIP archive exceeds the maximum uncompressed size of " + maxUncompressedSize);
+            }
+
+            // Small entries compress extremely well, only judge the ratio once there is some volume
+            if (uncompressedBytes > DataSize.ofMegabytes(1).toBytes()
+                    && uncompressedBytes > compressed.getByteCount() * maxCompressionRatio) {
+                throw new IOException("ZIP archive exceeds the maximum compression ratio of " + maxCompressionRatio);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+}
@@ -4,20 +4,52 @@ import de.hirthe.gefrierschrankapp.dto.*;
 import de.hirthe.gefrierschrankapp.entity.Category;
 import de.hirthe.gefrierschrankapp.entity.Location;
 import de.hirthe.gefrierschrankapp.entity.Product;
+import de.hirthe.gefrierschrankapp.entity.RestoreCheckpoint;
+import de.hirthe.gefrierschrankapp.event.ProductChangeEvent;
 import de.hirthe.gefrierschrankapp.repository.CategoryRepository;
+import de.hirthe.gefrierschrankapp.repository.IdSequenceRepository;
 import de.hirthe.gefrierschrankapp.repository.LocationRepository;
 import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import de.hirthe.gefrierschrankapp.repository.RestoreCheckpointRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.Optional;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
 
 @Service
 @RequiredArgsConstructor
@@ -27,8 +59,22 @@ public class BackupService {
     private final CategoryRepository categoryRepository;
     private final LocationRepository locationRepository;
     private final ProductRepository productRepository;
+    private final RestoreCheckpointRepository checkpointRepository;
+    private final IdSequenceRepository idSequenceRepository;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
+    
+    @Value("${app.backup.export-batch-size:500}")
+    private int exportBatchSize;
+    
+    @Value("${app.backup.restore-chunk-size:500}")
+    private int restoreChunkSize;
     
     private static final String BACKUP_VERSION = "1.0";
+    private static final DateTimeFormatter BACKUP_TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
 
     @Transactional(readOnly = true)
     public BackupDTO createBackup() {
@@ -73,6 +119,77 @@ public class BackupService {
         return backup;
     }
 
+    /**
+     * Write a complete backup as JSON directly to the given stream.
+     * Produces the same document as {@link #createBackup()}, but products are read in
+     * id-ordered batches and detached after each batch, so heap usage stays bounded
+     * regardless of the number of products. The stream is flushed but not closed.
+     */
+    @Transactional(readOnly = true)
+    public BackupDTO.BackupMetadata writeBackup(OutputStream out) throws IOException {
+        log.info("Streaming backup of all data");
+        
+        BackupDTO.BackupMetadata metadata = BackupDTO.BackupMetadata.builder()
+            .totalCategories(categoryRepository.count())
+            .totalLocations(locationRepository.count())
+            .totalProducts(productRepository.count())
+            .applicationVersion(BACKUP_VERSION)
+            .description("Complete data backup")
+            .build();
+        
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.useDefaultPrettyPrinter();
+            
+            generator.writeStartObject();
+            generator.writeStringField("backupTimestamp", LocalDateTime.now().format(BACKUP_TIMESTAMP_FORMAT));
+            generator.writeStringField("version", BACKUP_VERSION);
+            generator.writeFieldName("metadata");
+            writer.writeValue(generator, metadata);
+            
+            // Categories and locations are small reference tables
+            generator.writeArrayFieldStart("categories");
+            for (Category category : categoryRepository.findAll(Sort.by("id"))) {
+                writer.writeValue(generator, convertCategoryToBackupDTO(category));
+            }
+            generator.writeEndArray();
+            
+            generator.writeArrayFieldStart("locations");
+            for (Location location : locationRepository.findAll(Sort.by("id"))) {
+                writer.writeValue(generator, convertLocationToBackupDTO(location));
+            }
+            generator.writeEndArray();
+            
+            long written = 0;
+            generator.writeArrayFieldStart("products");
+            List<Product> batch = productRepository.findBatchAfterId(0L, PageRequest.of(0, exportBatchSize));
+            while (!batch.isEmpty()) {
+                for (Product product : batch) {
+                    writer.writeValue(generator, convertProductToBackupDTO(product));
+                }
+                written += batch.size();
+                Long lastId = batch.get(batch.size() - 1).getId();
+                
+                // Detach the batch so the persistence context does not grow with the export
+                entityManager.clear();
+                generator.flush();
+                
+                batch = productRepository.findBatchAfterId(lastId, PageRequest.of(0, exportBatchSize));
+            }
+            generator.writeEndArray();
+            
+            generator.writeEndObject();
+            generator.flush();
+            
+            log.info("Backup streamed successfully with {} categories, {} locations, {} products",
+                    metadata.getTotalCategories(), metadata.getTotalLocations(), written);
+        }
+        
+        return metadata;
+    }
+
     @Transactional
     public RestoreResult restoreFromBackup(RestoreRequest request) {
         log.info("Starting restore from backup");
@@ -119,21 +236,396 @@ public class BackupService {
             result.setSuccess(false);
             result.setMessage("Restore failed: " + e.getMessage());
             result.getErrors().add(e.getMessage());
+        } finally {
+            eventPublisher.publishEvent(ProductChangeEvent.bulk());
+        }
+        
+        return result;
+    }
+
+    /**
+     * Restore a backup by parsing the JSON incrementally instead of binding it to a
+     * {@link BackupDTO}. Categories and locations are restored in one transaction, products
+     * are committed in chunks of {@code app.backup.restore-chunk-size} rows. Every chunk
+     * advances a {@link RestoreCheckpoint} in the same transaction; if the import fails,
+     * the checkpoint id is returned and can be passed as {@code resumeCheckpointId} to
+     * continue with the same file after the last committed chunk.
+     */
+    public RestoreResult restoreFromStream(InputStream in, RestoreRequest.RestoreOptions options, String resumeCheckpointId) {
+        return restoreFromStream(in, options, resumeCheckpointId, UnaryOperator.identity());
+    }
+
+    /**
+     * Streaming restore that passes every product image URL through {@code imageUrlMapper},
+     * used when restored image files had to be renamed.
+     */
+    public RestoreResult restoreFromStream(InputStream in, RestoreRequest.RestoreOptions options, String resumeCheckpointId,
+                                           UnaryOperator<String> imageUrlMapper) {
+        log.info("Starting streaming restore{}", resumeCheckpointId != null ? " from checkpoint " + resumeCheckpointId : "");
+        
+        RestoreResult result = RestoreResult.builder()
+            .stats(RestoreResult.RestoreStats.builder().build())
+            .build();
+        StreamingRestore restore = new StreamingRestore(options, result, new TransactionTemplate(transactionManager), imageUrlMapper);
+        
+        try {
+            if (resumeCheckpointId != null) {
+                restore.checkpoint = claimCheckpoint(resumeCheckpointId, restore.transactionTemplate);
+            }
+            
+            try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IOException("Backup must be a JSON object");
+                }
+                
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    parser.nextToken();
+                    
+                    switch (field) {
+                        case "backupTimestamp":
+                            restore.backupTimestamp = parser.getValueAsString();
+                            break;
+                        case "version":
+                            restore.version = parser.getValueAsString();
+                            break;
+                        case "metadata":
+                            restore.metadata = objectMapper.readValue(parser, BackupDTO.BackupMetadata.class);
+                            break;
+                        case "categories":
+                            restore.categories = objectMapper.readValue(parser, new TypeReference<List<CategoryBackupDTO>>() {});
+                            break;
+                        case "locations":
+                            restore.locations = objectMapper.readValue(parser, new TypeReference<List<LocationBackupDTO>>() {});
+                            break;
+                        case "products":
+                            restoreProductStream(parser, restore);
+                            break;
+                        default:
+                            parser.skipChildren();
+                    }
+                }
+            }
+            
+            if (!restore.productsSeen) {
+                // Nothing has been written yet, report like the non-streaming validation
+                checkBackupVersion(restore.version, result);
+                result.getErrors().add("Backup contains null data collections");
+                restore.validationFailed = true;
+            }
+            
+            if (restore.validationFailed) {
+                result.setSuccess(false);
+                result.setMessage("Backup validation failed");
+                return result;
+            }
+            
+            commitProductChunk(restore);
+            checkpointRepository.deleteById(restore.checkpoint.getId());
+            
+            result.setSuccess(true);
+            result.setMessage("Restore completed successfully");
+            
+            log.info("Streaming restore completed: {} categories, {} locations, {} products imported",
+                    result.getStats().getCategoriesImported(), result.getStats().getLocationsImported(),
+                    result.getStats().getProductsImported());
+            
+        } catch (Exception e) {
+            log.error("Error during streaming restore", e);
+            result.setSuccess(false);
+            result.setMessage("Restore failed: " + e.getMessage());
+            result.getErrors().add(e.getMessage());
+            markCheckpointFailed(restore);
+        } finally {
+            // Chunks committed before a failure are visible as well
+            eventPublisher.publishEvent(ProductChangeEvent.bulk());
         }
         
         return result;
     }
 
+    /**
+     * Count the collections of a serialized backup without binding them.
+     * Throws an {@link IllegalArgumentException} if a required collection is missing.
+     */
+    public BackupDTO.BackupMetadata inspectBackup(InputStream in) throws IOException {
+        Long categories = null;
+        Long locations = null;
+        Long products = null;
+        
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Backup must be a JSON object");
+            }
+            
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                
+                switch (field) {
+                    case "categories":
+                        categories = countArrayElements(parser);
+                        break;
+                    case "locations":
+                        locations = countArrayElements(parser);
+                        break;
+                    case "products":
+                        products = countArrayElements(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+        
+        if (categories == null || locations == null || products == null) {
+            throw new IllegalArgumentException("Backup missing required data collections");
+        }
+        
+        return BackupDTO.BackupMetadata.builder()
+            .totalCategories(categories)
+            .totalLocations(locations)
+            .totalProducts(products)
+            .build();
+    }
+
+    private Long countArrayElements(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        
+        long count = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            parser.skipChildren();
+            count++;
+        }
+        return count;
+    }
+
+    private void restoreProductStream(JsonParser parser, StreamingRestore restore) throws IOException {
+        restore.productsSeen = true;
+        checkBackupVersion(restore.version, restore.result);
+        
+        // Categories and locations must be known before the first product can be mapped
+        if (restore.categories == null || restore.locations == null || parser.currentToken() != JsonToken.START_ARRAY) {
+            restore.result.getErrors().add("Backup contains null data collections");
+            restore.validationFailed = true;
+            parser.skipChildren();
+            return;
+        }
+        
+        restoreReferenceData(restore);
+        
+        int index = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            ProductBackupDTO productBackup = objectMapper.readValue(parser, ProductBackupDTO.class);
+            index++;
+            
+            // Already committed by the run this checkpoint belongs to
+            if (index <= restore.checkpoint.getProductsProcessed()) {
+                continue;
+            }
+            
+            restore.chunk.add(productBackup);
+            if (restore.chunk.size() >= restoreChunkSize) {
+                commitProductChunk(restore);
+            }
+        }
+    }
+
+    /**
+     * Restore categories and locations and create the checkpoint, or pick up the id
+     * mappings of the checkpoint that is being resumed.
+     */
+    private void restoreReferenceData(StreamingRestore restore) throws IOException {
+        RestoreResult result = restore.result;
+        RestoreCheckpoint checkpoint = restore.checkpoint;
+        
+        if (checkpoint != null) {
+            if (checkpoint.getBackupTimestamp() != null && !checkpoint.getBackupTimestamp().equals(restore.backupTimestamp)) {
+                throw new IllegalArgumentException("Backup file does not match restore checkpoint " + checkpoint.getId());
+            }
+            
+            restore.categoryIdMapping = objectMapper.readValue(checkpoint.getCategoryIdMapping(), new TypeReference<Map<Long, Long>>() {});
+            restore.locationIdMapping = objectMapper.readValue(checkpoint.getLocationIdMapping(), new TypeReference<Map<Long, Long>>() {});
+            result.setStats(objectMapper.readValue(checkpoint.getStats(), RestoreResult.RestoreStats.class));
+            if (checkpoint.getConflicts() != null) {
+                result.getConflicts().addAll(objectMapper.readValue(checkpoint.getConflicts(), 
+                                                                    new TypeReference<List<RestoreResult.ConflictInfo>>() {}));
+            }
+            if (checkpoint.getErrors() != null) {
+                result.getErrors().addAll(objectMapper.readValue(checkpoint.getErrors(), new TypeReference<List<String>>() {}));
+            }
+            result.getWarnings().add("Resumed from checkpoint " + checkpoint.getId() + " after " + 
+                                   checkpoint.getProductsProcessed() + " products");
+            return;
+        }
+        
+        restore.checkpoint = restore.transactionTemplate.execute(status -> {
+            if (restore.options.isClearExistingData()) {
+                clearAllData();
+                log.info("Cleared existing data");
+            }
+            
+            restore.categoryIdMapping = restoreCategories(restore.categories, restore.options, result);
+            restore.locationIdMapping = restoreLocations(restore.locations, restore.options, result);
+            
+            return checkpointRepository.save(RestoreCheckpoint.builder()
+                .id(UUID.randomUUID().toString())
+                .backupTimestamp(restore.backupTimestamp)
+                .categoryIdMapping(toJson(restore.categoryIdMapping))
+                .locationIdMapping(toJson(restore.locationIdMapping))
+                .stats(toJson(result.getStats()))
+                .conflicts(toJson(result.getConflicts()))
+                .errors(toJson(result.getErrors()))
+                .build());
+        });
+        
+        // Reference data is no longer needed once the id mappings exist
+        restore.categories = null;
+        restore.locations = null;
+    }
+
+    private void commitProductChunk(StreamingRestore restore) {
+        if (restore.chunk.isEmpty()) {
+            return;
+        }
+        
+        RestoreResult.RestoreStats current = restore.result.getStats();
+        RestoreResult.RestoreStats updated = RestoreResult.RestoreStats.builder()
+            .categoriesImported(current.getCategoriesImported())
+            .categoriesSkipped(current.getCategoriesSkipped())
+            .locationsImported(current.getLocationsImported())
+            .locationsSkipped(current.getLocationsSkipped())
+            .productsImported(current.getProductsImported())
+            .productsSkipped(current.getProductsSkipped())
+            .totalProcessed(current.getTotalProcessed())
+            .build();
+        List<String> chunkErrors = new ArrayList<>();
+        
+        RestoreCheckpoint checkpoint = restore.transactionTemplate.execute(status -> {
+            List<Product> products = new ArrayList<>(restore.chunk.size());
+            Set<Long> usedIds = reserveProductIds(restore.chunk, restore.options);
+            for (ProductBackupDTO productBackup : restore.chunk) {
+                try {
+                    boolean preserveId = canPreserveId(productBackup.getId(), "product", productBackup.getName(), 
+                                                       usedIds, restore.options, restore.result);
+                    Product product = convertBackupDTOToProduct(productBackup, restore.categoryIdMapping, 
+                                                                restore.locationIdMapping, preserveId);
+                    if (product.getImageUrl() != null) {
+                        product.setImageUrl(restore.imageUrlMapper.apply(product.getImageUrl()));
+                    }
+                    validate(product);
+                    products.add(product);
+                } catch (Exception e) {
+                    log.error("Error restoring product: " + productBackup.getName(), e);
+                    chunkErrors.add("Failed to restore product '" + productBackup.getName() + "': " + e.getMessage());
+                    updated.setProductsSkipped(updated.getProductsSkipped() + 1);
+                }
+            }
+            
+            products.forEach(entityManager::persist);
+            updated.setProductsImported(updated.getProductsImported() + products.size());
+            
+            restore.checkpoint.setProductsProcessed(restore.checkpoint.getProductsProcessed() + restore.chunk.size());
+            restore.checkpoint.setStats(toJson(updated));
+            List<String> errors = new ArrayList<>(restore.result.getErrors());
+            errors.addAll(chunkErrors);
+            restore.checkpoint.setErrors(toJson(errors));
+            RestoreCheckpoint saved = checkpointRepository.save(restore.checkpoint);
+            
+            // Keep the persistence context from growing across chunks
+            entityManager.flush();
+            entityManager.clear();
+            return saved;
+        });
+        
+        restore.checkpoint = checkpoint;
+        restore.result.setStats(updated);
+        restore.result.getErrors().addAll(chunkErrors);
+        restore.chunk.clear();
+        log.debug("Committed restore chunk, {} products processed", checkpoint.getProductsProcessed());
+    }
+
+    /**
+     * Take over a failed import. A checkpoint that is still in progress belongs to a running
+     * import, resuming it as well would restore the same products twice.
+     */
+    private RestoreCheckpoint claimCheckpoint(String checkpointId, TransactionTemplate transactionTemplate) {
+        return transactionTemplate.execute(status -> {
+            if (checkpointRepository.updateStatus(checkpointId, RestoreCheckpoint.Status.FAILED, 
+                                                  RestoreCheckpoint.Status.IN_PROGRESS) == 0) {
+                if (!checkpointRepository.existsById(checkpointId)) {
+                    throw new IllegalArgumentException("Restore checkpoint not found: " + checkpointId);
+                }
+                throw new IllegalStateException("Restore checkpoint " + checkpointId + " is still in progress");
+            }
+            return checkpointRepository.findById(checkpointId).orElseThrow();
+        });
+    }
+
+    private void markCheckpointFailed(StreamingRestore restore) {
+        if (restore.checkpoint == null || restore.checkpoint.getCreatedAt() == null) {
+            return;
+        }
+        
+        try {
+            restore.checkpoint.setStatus(RestoreCheckpoint.Status.FAILED);
+            RestoreCheckpoint failed = restore.transactionTemplate.execute(status -> checkpointRepository.save(restore.checkpoint));
+            restore.result.setCheckpointId(failed.getId());
+            restore.result.getWarnings().add("Import can be resumed from checkpoint " + failed.getId() + 
+                                           " after " + failed.getProductsProcessed() + " products");
+        } catch (Exception e) {
+            log.error("Failed to record restore checkpoint", e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize restore checkpoint", e);
+        }
+    }
+
+    /**
+     * State of a single streaming restore run
+     */
+    private static class StreamingRestore {
+        private final RestoreRequest.RestoreOptions options;
+        private final RestoreResult result;
+        private final TransactionTemplate transactionTemplate;
+        private final UnaryOperator<String> imageUrlMapper;
+        private final List<ProductBackupDTO> chunk = new ArrayList<>();
+        
+        private String backupTimestamp;
+        private String version;
+        private BackupDTO.BackupMetadata metadata;
+        private List<CategoryBackupDTO> categories;
+        private List<LocationBackupDTO> locations;
+        private Map<Long, Long> categoryIdMapping;
+        private Map<Long, Long> locationIdMapping;
+        private RestoreCheckpoint checkpoint;
+        private boolean productsSeen;
+        private boolean validationFailed;
+        
+        private StreamingRestore(RestoreRequest.RestoreOptions options, RestoreResult result, TransactionTemplate transactionTemplate,
+                                 UnaryOperator<String> imageUrlMapper) {
+            this.options = options;
+            this.result = result;
+            this.transactionTemplate = transactionTemplate;
+            this.imageUrlMapper = imageUrlMapper;
+        }
+    }
+
     private boolean validateBackup(BackupDTO backup, RestoreResult result) {
         if (backup == null) {
             result.getErrors().add("Backup data is null");
             return false;
         }
         
-        if (backup.getVersion() == null || !backup.getVersion().equals(BACKUP_VERSION)) {
-            result.getWarnings().add("Backup version mismatch. Expected: " + BACKUP_VERSION + 
-                                   ", Found: " + backup.getVersion());
-        }
+        checkBackupVersion(backup.getVersion(), result);
         
         if (backup.getCategories() == null || backup.getLocations() == null || backup.getProducts() == null) {
             result.getErrors().add("Backup contains null data collections");
@@ -143,29 +635,51 @@ public class BackupService {
         return true;
     }
 
+    private void checkBackupVersion(String version, RestoreResult result) {
+        if (version == null || !version.equals(BACKUP_VERSION)) {
+            result.getWarnings().add("Backup version mismatch. Expected: " + BACKUP_VERSION + 
+                                   ", Found: " + version);
+        }
+    }
+
     @Transactional
     public void clearAllData() {
         log.info("Clearing all existing data");
         productRepository.deleteAll();
         categoryRepository.deleteAll();
         locationRepository.deleteAll();
+        eventPublisher.publishEvent(ProductChangeEvent.bulk());
     }
 
     private Map<Long, Long> restoreCategories(List<CategoryBackupDTO> categoryBackups, 
                                             RestoreRequest.RestoreOptions options, 
                                             RestoreResult result) {
-        Map<Long, Long> idMapping = new HashMap<>();
+        // Existing names are loaded once; categories created by this restore are added as we go
+        Map<String, Category> categoriesByName = new HashMap<>();
+        for (Category category : categoryRepository.findAll()) {
+            categoriesByName.put(category.getName(), category);
+        }
+        
+        Set<Long> usedIds = new HashSet<>();
+        for (Category category : categoriesByName.values()) {
+            usedIds.add(category.getId());
+        }
+        
+        Map<Long, Category> backupIdToCategory = new LinkedHashMap<>();
+        PendingSaves<Category> pendingSaves = new PendingSaves<>();
         
         for (CategoryBackupDTO categoryBackup : categoryBackups) {
             try {
-                Optional<Category> existing = categoryRepository.findByName(categoryBackup.getName());
+                Category existing = categoriesByName.get(categoryBackup.getName());
                 
-                if (existing.isPresent()) {
-                    handleCategoryConflict(existing.get(), categoryBackup, options, result, idMapping);
+                if (existing != null) {
+                    handleCategoryConflict(existing, categoryBackup, options, result, categoriesByName, usedIds, backupIdToCategory, pendingSaves);
                 } else {
-                    Category category = convertBackupDTOToCategory(categoryBackup, options.isPreserveIds());
-                    category = categoryRepository.save(category);
-                    idMapping.put(categoryBackup.getId(), category.getId());
+                    Category category = convertBackupDTOToCategory(categoryBackup,
+                        canPreserveId(categoryBackup.getId(), "category", categoryBackup.getName(), usedIds, options, result));
+                    categoriesByName.put(category.getName(), category);
+                    pendingSaves.add(category);
+                    backupIdToCategory.put(categoryBackup.getId(), category);
                     result.getStats().setCategoriesImported(result.getStats().getCategoriesImported() + 1);
                 }
             } catch (Exception e) {
@@ -175,24 +689,46 @@ public class BackupService {
             }
         }
         
+        if (options.isPreserveIds() && !usedIds.isEmpty()) {
+            idSequenceRepository.reserveUpTo(Category.class, Category.ID_SEQUENCE, Collections.max(usedIds));
+        }
+        
+        // Inserts and updates are flushed together, ids are resolved afterwards
+        pendingSaves.saveAll(entityManager);
+        Map<Long, Long> idMapping = new HashMap<>();
+        backupIdToCategory.forEach((backupId, category) -> idMapping.put(backupId, category.getId()));
         return idMapping;
     }
 
     private Map<Long, Long> restoreLocations(List<LocationBackupDTO> locationBackups, 
                                            RestoreRequest.RestoreOptions options, 
                                            RestoreResult result) {
-        Map<Long, Long> idMapping = new HashMap<>();
+        // Existing names are loaded once; locations created by this restore are added as we go
+        Map<String, Location> locationsByName = new HashMap<>();
+        for (Location location : locationRepository.findAll()) {
+            locationsByName.put(location.getName(), location);
+        }
+        
+        Set<Long> usedIds = new HashSet<>();
+        for (Location location : locationsByName.values()) {
+            usedIds.add(location.getId());
+        }
+        
+        Map<Long, Location> backupIdToLocation = new LinkedHashMap<>();
+        PendingSaves<Location> pendingSaves = new PendingSaves<>();
         
         for (LocationBackupDTO locationBackup : locationBackups) {
             try {
-                Optional<Location> existing = locationRepository.findByName(locationBackup.getName());
+                Location existing = locationsByName.get(locationBackup.getName());
                 
-                if (existing.isPresent()) {
-                    handleLocationConflict(existing.get(), locationBackup, options, result, idMapping);
+                if (existing != null) {
+                    handleLocationConflict(existing, locationBackup, options, result, locationsByName, usedIds, backupIdToLocation, pendingSaves);
                 } else {
-                    Location location = convertBackupDTOToLocation(locationBackup, options.isPreserveIds());
-                    location = locationRepository.save(location);
-                    idMapping.put(locationBackup.getId(), location.getId());
+                    Location location = convertBackupDTOToLocation(locationBackup,
+                        canPreserveId(locationBackup.getId(), "location", locationBackup.getName(), usedIds, options, result));
+                    locationsByName.put(location.getName(), location);
+                    pendingSaves.add(location);
+                    backupIdToLocation.put(locationBackup.getId(), location);
                     result.getStats().setLocationsImported(result.getStats().getLocationsImported() + 1);
                 }
             } catch (Exception e) {
@@ -202,6 +738,14 @@ public class BackupService {
             }
         }
         
+        if (options.isPreserveIds() && !usedIds.isEmpty()) {
+            idSequenceRepository.reserveUpTo(Location.class, Location.ID_SEQUENCE, Collections.max(usedIds));
+        }
+        
+        // Inserts and updates are flushed together, ids are resolved afterwards
+        pendingSaves.saveAll(entityManager);
+        Map<Long, Long> idMapping = new HashMap<>();
+        backupIdToLocation.forEach((backupId, location) -> idMapping.put(backupId, location.getId()));
         return idMapping;
     }
 
@@ -210,10 +754,15 @@ public class BackupService {
                                Map<Long, Long> locationIdMapping, 
                                RestoreRequest.RestoreOptions options, 
                                RestoreResult result) {
+        List<Product> products = new ArrayList<>(productBackups.size());
+        Set<Long> usedIds = reserveProductIds(productBackups, options);
+        
         for (ProductBackupDTO productBackup : productBackups) {
             try {
-                Product product = convertBackupDTOToProduct(productBackup, categoryIdMapping, locationIdMapping, options.isPreserveIds());
-                product = productRepository.save(product);
+                boolean preserveId = canPreserveId(productBackup.getId(), "product", productBackup.getName(), usedIds, options, result);
+                Product product = convertBackupDTOToProduct(productBackup, categoryIdMapping, locationIdMapping, preserveId);
+                validate(product);
+                products.add(product);
                 result.getStats().setProductsImported(result.getStats().getProductsImported() + 1);
             } catch (Exception e) {
                 log.error("Error restoring product: " + productBackup.getName(), e);
@@ -221,12 +770,29 @@ public class BackupService {
                 result.getStats().setProductsSkipped(result.getStats().getProductsSkipped() + 1);
             }
         }
+        
+        products.forEach(entityManager::persist);
+    }
+
+    /**
+     * Check a product before it is queued for the deferred persist, a constraint violation
+     * found at flush time would roll back every product restored with it
+     */
+    private void validate(Product product) {
+        Set<ConstraintViolation<Product>> violations = validator.validate(product);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                .map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(", ")));
+        }
     }
 
     private void handleCategoryConflict(Category existing, CategoryBackupDTO backup, 
                                       RestoreRequest.RestoreOptions options, 
                                       RestoreResult result, 
-                                      Map<Long, Long> idMapping) {
+                                      Map<String, Category> categoriesByName,
+                                      Set<Long> usedIds,
+                                      Map<Long, Category> backupIdToCategory,
+                                      PendingSaves<Category> pendingSaves) {
         RestoreResult.ConflictInfo conflict = RestoreResult.ConflictInfo.builder()
             .type("category")
             .name(backup.getName())
@@ -234,23 +800,25 @@ public class BackupService {
         
         switch (options.getConflictResolution()) {
             case SKIP:
-                idMapping.put(backup.getId(), existing.getId());
+                backupIdToCategory.put(backup.getId(), existing);
                 conflict.setResolution("skipped");
                 result.getStats().setCategoriesSkipped(result.getStats().getCategoriesSkipped() + 1);
                 break;
             case OVERWRITE:
                 updateCategoryFromBackup(existing, backup);
-                categoryRepository.save(existing);
-                idMapping.put(backup.getId(), existing.getId());
+                pendingSaves.add(existing);
+                backupIdToCategory.put(backup.getId(), existing);
                 conflict.setResolution("overwritten");
                 result.getStats().setCategoriesImported(result.getStats().getCategoriesImported() + 1);
                 break;
             case RENAME:
-                String newName = findAvailableName(backup.getName(), name -> categoryRepository.findByName(name).isPresent());
-                Category newCategory = convertBackupDTOToCategory(backup, options.isPreserveIds());
+                String newName = findAvailableName(backup.getName(), categoriesByName::containsKey);
+                Category newCategory = convertBackupDTOToCategory(backup,
+                    canPreserveId(backup.getId(), "category", newName, usedIds, options, result));
                 newCategory.setName(newName);
-                newCategory = categoryRepository.save(newCategory);
-                idMapping.put(backup.getId(), newCategory.getId());
+                categoriesByName.put(newName, newCategory);
+                pendingSaves.add(newCategory);
+                backupIdToCategory.put(backup.getId(), newCategory);
                 conflict.setResolution("renamed to " + newName);
                 result.getStats().setCategoriesImported(result.getStats().getCategoriesImported() + 1);
                 break;
@@ -262,7 +830,10 @@ public class BackupService {
     private void handleLocationConflict(Location existing, LocationBackupDTO backup, 
                                       RestoreRequest.RestoreOptions options, 
                                       RestoreResult result, 
-                                      Map<Long, Long> idMapping) {
+                                      Map<String, Location> locationsByName,
+                                      Set<Long> usedIds,
+                                      Map<Long, Location> backupIdToLocation,
+                                      PendingSaves<Location> pendingSaves) {
         RestoreResult.ConflictInfo conflict = RestoreResult.ConflictInfo.builder()
             .type("location")
             .name(backup.getName())
@@ -270,23 +841,25 @@ public class BackupService {
         
         switch (options.getConflictResolution()) {
             case SKIP:
-                idMapping.put(backup.getId(), existing.getId());
+                backupIdToLocation.put(backup.getId(), existing);
                 conflict.setResolution("skipped");
                 result.getStats().setLocationsSkipped(result.getStats().getLocationsSkipped() + 1);
                 break;
             case OVERWRITE:
                 updateLocationFromBackup(existing, backup);
-                locationRepository.save(existing);
-                idMapping.put(backup.getId(), existing.getId());
+                pendingSaves.add(existing);
+                backupIdToLocation.put(backup.getId(), existing);
                 conflict.setResolution("overwritten");
                 result.getStats().setLocationsImported(result.getStats().getLocationsImported() + 1);
                 break;
             case RENAME:
-                String newName = findAvailableName(backup.getName(), name -> locationRepository.findByName(name).isPresent());
-                Location newLocation = convertBackupDTOToLocation(backup, options.isPreserveIds());
+                String newName = findAvailableName(backup.getName(), locationsByName::containsKey);
+                Location newLocation = convertBackupDTOToLocation(backup,
+                    canPreserveId(backup.getId(), "location", newName, usedIds, options, result));
                 newLocation.setName(newName);
-                newLocation = locationRepository.save(newLocation);
-                idMapping.put(backup.getId(), newLocation.getId());
+                locationsByName.put(newName, newLocation);
+                pendingSaves.add(newLocation);
+                backupIdToLocation.put(backup.getId(), newLocation);
                 conflict.setResolution("renamed to " + newName);
                 result.getStats().setLocationsImported(result.getStats().getLocationsImported() + 1);
                 break;
@@ -295,11 +868,82 @@ public class BackupService {
         result.getConflicts().add(conflict);
     }
 
-    private String findAvailableName(String baseName, java.util.function.Function<String, Boolean> exists) {
+    /**
+     * Entities to be saved in one batch, kept in insertion order and deduplicated by
+     * identity (the Lombok equals/hashCode of an entity changes once its id is assigned)
+     */
+    private static class PendingSaves<T> {
+        private final List<T> entities = new ArrayList<>();
+        private final Set<T> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        
+        void add(T entity) {
+            if (seen.add(entity)) {
+                entities.add(entity);
+            }
+        }
+        
+        /**
+         * Persist the new entities; existing ones are managed and flushed with them. New
+         * entities are never merged, so a preserved backup id is inserted as it is.
+         */
+        void saveAll(EntityManager entityManager) {
+            for (T entity : entities) {
+                if (!entityManager.contains(entity)) {
+                    entityManager.persist(entity);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ids of the backup products that are already taken in the database. When ids are
+     * preserved, the sequence is moved past the highest backup id first, so products that
+     * get a new id cannot take one that is restored later in the same run.
+     */
+    private Set<Long> reserveProductIds(List<ProductBackupDTO> productBackups, RestoreRequest.RestoreOptions options) {
+        Set<Long> usedIds = new HashSet<>();
+        if (!options.isPreserveIds()) {
+            return usedIds;
+        }
+        
+        List<Long> backupIds = productBackups.stream()
+            .map(ProductBackupDTO::getId)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+        if (backupIds.isEmpty()) {
+            return usedIds;
+        }
+        
+        for (int from = 0; from < backupIds.size(); from += restoreChunkSize) {
+            List<Long> ids = backupIds.subList(from, Math.min(from + restoreChunkSize, backupIds.size()));
+            usedIds.addAll(productRepository.findExistingIds(ids));
+        }
+        idSequenceRepository.reserveUpTo(Product.class, Product.ID_SEQUENCE, Collections.max(backupIds));
+        return usedIds;
+    }
+
+    /**
+     * Whether an entity keeps its backup id: preserving ids was requested and no other
+     * row uses the id. Otherwise the entity gets a new id and a warning is recorded.
+     */
+    private boolean canPreserveId(Long backupId, String type, String name, Set<Long> usedIds, 
+                                  RestoreRequest.RestoreOptions options, RestoreResult result) {
+        if (!options.isPreserveIds() || backupId == null) {
+            return false;
+        }
+        if (usedIds.add(backupId)) {
+            return true;
+        }
+        
+        result.getWarnings().add("Id " + backupId + " of " + type + " '" + name + "' is already in use, a new id was assigned");
+        return false;
+    }
+
+    private String findAvailableName(String baseName, java.util.function.Predicate<String> exists) {
         String newName = baseName;
         int counter = 1;
         
-        while (exists.apply(newName)) {
+        while (exists.test(newName)) {
             newName = baseName + " (" + counter + ")";
             counter++;
         }
@@ -399,20 +1043,18 @@ public class BackupService {
             .userId(dto.getUserId())
             .build();
         
-        // Map category and location IDs
+        // Map category and location IDs; the targets were just restored, so a reference avoids a lookup per product
         if (dto.getCategoryId() != null) {
             Long newCategoryId = categoryIdMapping.get(dto.getCategoryId());
             if (newCategoryId != null) {
-                Category category = categoryRepository.findById(newCategoryId).orElse(null);
-                product.setCategory(category);
+                product.setCategory(categoryRepository.getReferenceById(newCategoryId));
             }
         }
         
         if (dto.getLocationId() != null) {
             Long newLocationId = locationIdMapping.get(dto.getLocationId());
             if (newLocationId != null) {
-                Location location = locationRepository.findById(newLocationId).orElse(null);
-                product.setLocation(location);
+                product.setLocation(locationRepository.getReferenceById(newLocationId));
             }
         }
         
@@ -1,13 +1,21 @@
 package de.hirthe.gefrierschrankapp.service;
 
+import de.hirthe.gefrierschrankapp.dto.ProductGroupSummary;
 import de.hirthe.gefrierschrankapp.entity.Category;
+import de.hirthe.gefrierschrankapp.event.ProductGroupChangeEvent;
 import de.hirthe.gefrierschrankapp.repository.CategoryRepository;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -17,6 +25,8 @@ import java.util.Optional;
 public class CategoryService {
     
     private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
     
     /**
      * Get all categories ordered by name
@@ -62,6 +72,7 @@ public class CategoryService {
         }
         
         Category savedCategory = categoryRepository.save(category);
+        eventPublisher.publishEvent(ProductGroupChangeEvent.category(null, savedCategory.getName()));
         log.info("Successfully created category with id: {}", savedCategory.getId());
         return savedCategory;
     }
@@ -74,6 +85,7 @@ public class CategoryService {
         
         Category existingCategory = categoryRepository.findById(id)
             .orElseThrow(() -> new IllegalArgumentException("Category not found with id: " + id));
+        String previousName = existingCategory.getName();
         
         // Check if new name conflicts with existing category (excluding current)
         if (!existingCategory.getName().equalsIgnoreCase(categoryUpdate.getName()) &&
@@ -89,6 +101,8 @@ public class CategoryService {
         existingCategory.setIcon(categoryUpdate.getIcon());
         
         Category updatedCategory = categoryRepository.save(existingCategory);
+        // The statistics show the category name, the products are unchanged
+        eventPublisher.publishEvent(ProductGroupChangeEvent.category(previousName, updatedCategory.getName()));
         log.info("Successfully updated category with id: {}", updatedCategory.getId());
         return updatedCategory;
     }
@@ -109,16 +123,32 @@ public class CategoryService {
         }
         
         categoryRepository.delete(category);
+        eventPublisher.publishEvent(ProductGroupChangeEvent.category(category.getName(), null));
         log.info("Successfully deleted category with id: {}", id);
     }
     
     /**
-     * Get categories with product counts
+     * Get categories with the count, quantities per unit and expiry buckets of their products.
+     * The products are summed up by one grouped query instead of being loaded.
      */
     @Transactional(readOnly = true)
-    public List<Category> getCategoriesWithProducts() {
-        log.debug("Fetching categories with products");
-        return categoryRepository.findAllWithProducts();
+    public List<ProductGroupSummary<Category>> getCategoriesWithProducts() {
+        log.debug("Fetching categories with product totals");
+        
+        Map<Long, ProductGroupSummary<Category>> summaries = new LinkedHashMap<>();
+        for (Category category : categoryRepository.findAllByOrderByNameAsc()) {
+            summaries.put(category.getId(), new ProductGroupSummary<>(category));
+        }
+        
+        LocalDate today = LocalDate.now();
+        for (ProductRepository.GroupTotals totals : productRepository.sumByCategoryAndUnit(
+                today, today.plusDays(3), today.plusDays(7), today.plusDays(14))) {
+            ProductGroupSummary<Category> summary = summaries.get(totals.getGroupId());
+            if (summary != null) {
+                summary.add(totals);
+            }
+        }
+        return new ArrayList<>(summaries.values());
     }
     
     
@@ -184,6 +214,7 @@ public class CategoryService {
             // Check if category with this name already exists
             if (!categoryRepository.existsByNameIgnoreCase(defaultCategory.getName())) {
                 categoryRepository.save(defaultCategory);
+                eventPublisher.publishEvent(ProductGroupChangeEvent.category(null, defaultCategory.getName()));
                 createdCount++;
                 log.debug("Created default category: {}", defaultCategory.getName());
             } else {
@@ -0,0 +1,75 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.dto.DashboardSummaryDTO;
+import de.hirthe.gefrierschrankapp.entity.Product;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional(readOnly = true)
+public class DashboardService {
+
+    static final int MAX_NEXT_EXPIRING = 50;
+
+    private final ProductRepository productRepository;
+    private final ProductStatisticsService productStatisticsService;
+    private final ProductExpiryIndex productExpiryIndex;
+
+    /**
+     * Build the dashboard summary from the statistics snapshot. Only the {@code limit}
+     * products expiring next are loaded as entities, found in the expiry index.
+     */
+    public DashboardSummaryDTO getSummary(int limit) {
+        log.debug("Building dashboard summary");
+
+        ProductService.ProductStatistics statistics = productStatisticsService.getStatistics();
+        List<Long> nextExpiringIds = productExpiryIndex.findNextExpiring(LocalDate.now(),
+                Math.max(1, Math.min(limit, MAX_NEXT_EXPIRING)));
+        Map<Long, Product> products = nextExpiringIds.isEmpty() ? Map.of()
+                : productRepository.findWithCategoryAndLocationByIds(nextExpiringIds).stream()
+                        .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<Product> nextExpiring = nextExpiringIds.stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        return DashboardSummaryDTO.builder()
+                .totalProducts(statistics.getTotalProducts())
+                .expired(statistics.getExpiredProducts())
+                .expiringWithin3Days(statistics.getExpiringWithin3Days())
+                .expiringWithin7Days(statistics.getExpiringSoon())
+                .expiringWithin14Days(statistics.getExpiringWithin14Days())
+                .fresh(statistics.getFreshProducts())
+                .withoutExpirationDate(statistics.getWithoutExpirationDate())
+                .categories(statistics.getProductsByCategory())
+                .locations(statistics.getProductsByLocation())
+                .nextExpiring(nextExpiring.stream()
+                        .map(this::toExpiringProduct)
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
+    private DashboardSummaryDTO.ExpiringProduct toExpiringProduct(Product product) {
+        return DashboardSummaryDTO.ExpiringProduct.builder()
+                .id(product.getId())
+                .name(product.getName())
+                .expirationDate(product.getExpirationDate())
+                .daysUntilExpiration(product.getDaysUntilExpiration())
+                .categoryName(product.getCategory() != null ? product.getCategory().getName() : null)
+                .locationName(product.getLocation() != null ? product.getLocation().getName() : null)
+                .imageUrl(product.getImageUrl())
+                .build();
+    }
+}
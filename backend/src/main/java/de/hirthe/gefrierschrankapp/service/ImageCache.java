@@ -0,0 +1,153 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache for resized image variants, bounded by the total number of
+ * bytes held. Thumbnails are requested dozens of times per product list, so keeping them
+ * in memory saves a file read per request.
+ */
+@Component
+@Slf4j
+public class ImageCache {
+
+    private final long maxBytes;
+
+    // Access order, the eldest entry is the least recently used one
+    private final LinkedHashMap<String, CachedImage> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long currentBytes;
+    private long invalidations;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ImageCache(@Value("${app.image-cache.max-size:64MB}") DataSize maxSize, MeterRegistry meterRegistry) {
+        this.maxBytes = maxSize.toBytes();
+
+        FunctionCounter.builder("image.cache.gets", this, cache -> cache.hits)
+            .tag("result", "hit")
+            .description("Image variant requests served from memory")
+            .register(meterRegistry);
+        FunctionCounter.builder("image.cache.gets", this, cache -> cache.misses)
+            .tag("result", "miss")
+            .description("Image variant requests read from disk")
+            .register(meterRegistry);
+        FunctionCounter.builder("image.cache.evictions", this, cache -> cache.evictions)
+            .description("Image variants evicted to stay within the size limit")
+            .register(meterRegistry);
+        Gauge.builder("image.cache.size", this, cache -> cache.currentBytes)
+            .baseUnit("bytes")
+            .description("Bytes held by the image cache")
+            .register(meterRegistry);
+        Gauge.builder("image.cache.entries", this, cache -> cache.entryCount())
+            .description("Image variants held by the image cache")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Return the cached image or load and cache it. Images larger than the whole cache are
+     * returned without being cached.
+     */
+    public CachedImage get(String filename, ImageService.ImageSize size, Loader loader) throws IOException {
+        String key = key(filename, size);
+        long generation;
+
+        synchronized (this) {
+            CachedImage cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+            generation = invalidations;
+        }
+
+        // Read outside the lock so a slow disk doesn't block hits on other images
+        CachedImage loaded = loader.load();
+
+        synchronized (this) {
+            // Don't resurrect an image that was deleted while it was being read
+            if (generation == invalidations && loaded.contentLength() <= maxBytes && !entries.containsKey(key)) {
+                entries.put(key, loaded);
+                currentBytes += loaded.contentLength();
+                evict();
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Remove all cached variants of an image
+     */
+    public synchronized void invalidate(String filename) {
+        invalidations++;
+        for (ImageService.ImageSize size : ImageService.ImageSize.values()) {
+            CachedImage removed = entries.remove(key(filename, size));
+            if (removed != null) {
+                currentBytes -= removed.contentLength();
+            }
+        }
+    }
+
+    public synchronized boolean contains(String filename, ImageService.ImageSize size) {
+        return entries.containsKey(key(filename, size));
+    }
+
+    synchronized int entryCount() {
+        return entries.size();
+    }
+
+    synchronized long currentBytes() {
+        return currentBytes;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, CachedImage>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, CachedImage> eldest = iterator.next();
+            iterator.remove();
+            currentBytes -= eldest.getValue().contentLength();
+            evictions++;
+            log.debug("Evicted image {} from cache", eldest.getKey());
+        }
+    }
+
+    private String key(String filename, ImageService.ImageSize size) {
+        return size.name() + "/" + filename;
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        CachedImage load() throws IOException;
+    }
+
+    /**
+     * Image bytes together with the modification time of the file they were read from
+     */
+    public static class CachedImage extends ByteArrayResource {
+        private final long lastModified;
+
+        public CachedImage(byte[] data, long lastModified) {
+            super(data);
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public long lastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -1,36 +1,61 @@
 package de.hirthe.gefrierschrankapp.service;
 
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FilenameUtils;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Dimension;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class ImageService {
 
+    private final ImageCache imageCache;
+    private final ImageVariantGenerator variantGenerator;
+    private final ProductRepository productRepository;
+
     @Value("${app.upload.dir:uploads}")
     private String uploadDir;
 
     @Value("${app.upload.max-size:5242880}") // 5MB default
     private long maxFileSize;
 
+    @Value("${app.image.variant-wait:2s}")
+    private Duration variantWait;
+
+    // Name originals by the SHA-256 of their content, so identical uploads share one file
+    @Value("${app.upload.content-addressed:false}")
+    private boolean contentAddressed;
+
     private static final List<String> ALLOWED_IMAGE_TYPES = Arrays.asList(
         "image/jpeg", "image/jpg", "image/png", "image/gif", "image/webp"
     );
@@ -39,12 +64,6 @@ public class ImageService {
         "jpg", "jpeg", "png", "gif", "webp"
     );
 
-    // Thumbnail dimensions
-    private static final int THUMBNAIL_WIDTH = 200;
-    private static final int THUMBNAIL_HEIGHT = 200;
-    private static final int MEDIUM_WIDTH = 600;
-    private static final int MEDIUM_HEIGHT = 600;
-
     public ImageUploadResult uploadImage(MultipartFile file) throws IOException {
         validateImage(file);
         
@@ -57,55 +76,57 @@ public class ImageService {
         Files.createDirectories(thumbnailPath);
         Files.createDirectories(mediumPath);
 
-        // Generate unique filename
         String originalFilename = file.getOriginalFilename();
-        String extension = FilenameUtils.getExtension(originalFilename);
-        String uniqueFilename = UUID.randomUUID().toString() + "." + extension;
+        String extension = FilenameUtils.getExtension(originalFilename).toLowerCase();
 
-        // Save original file first
-        Path originalFilePath = uploadPath.resolve(uniqueFilename);
-        Files.copy(file.getInputStream(), originalFilePath, StandardCopyOption.REPLACE_EXISTING);
+        // Save original file first; it only appears under its final name once it is on disk
+        String uniqueFilename;
+        Path originalFilePath;
+        boolean reused = false;
+        Path tempFilePath = Files.createTempFile(uploadPath, ".upload-", ".tmp");
+        try {
+            String contentHash = writeToDisk(file, tempFilePath);
+            uniqueFilename = (contentAddressed ? contentHash : UUID.randomUUID().toString()) + "." + extension;
+            originalFilePath = uploadPath.resolve(uniqueFilename);
+
+            if (contentAddressed && Files.exists(originalFilePath)) {
+                reused = true;
+                log.info("Image content already stored as {}, reusing it", uniqueFilename);
+            } else {
+                Files.move(tempFilePath, originalFilePath, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            Files.deleteIfExists(tempFilePath);
+        }
 
-        // Read and validate the image from saved file
-        BufferedImage originalImage;
+        // Only the header is read here, decoding the pixels is left to the variant workers
+        Dimension dimension;
         try {
-            originalImage = ImageIO.read(originalFilePath.toFile());
-            if (originalImage == null) {
-                Files.deleteIfExists(originalFilePath);
+            dimension = readDimension(originalFilePath);
+            if (dimension == null) {
+                discardUpload(originalFilePath, reused);
                 throw new IOException("Cannot read image file - file may be corrupted or not a valid image");
             }
-            log.info("Image successfully validated: {}x{} pixels", originalImage.getWidth(), originalImage.getHeight());
+            log.info("Image successfully validated: {}x{} pixels", dimension.width, dimension.height);
         } catch (javax.imageio.IIOException e) {
-            // Try alternative approach for problematic PNG files
-            log.warn("Standard ImageIO failed for {}, trying alternative validation", originalFilename);
-            try {
-                // Create a simple test image if validation fails but file format is correct
-                originalImage = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
-                Graphics2D g = originalImage.createGraphics();
-                g.setColor(Color.GRAY);
-                g.fillRect(0, 0, 100, 100);
-                g.dispose();
-                log.info("Created fallback image for testing: {}", originalFilename);
-            } catch (Exception fallbackException) {
-                Files.deleteIfExists(originalFilePath);
-                log.error("All image validation methods failed for: {}", originalFilename, e);
-                throw new IOException("Invalid or corrupted image file: " + e.getMessage());
-            }
+            // Problematic PNG files are accepted, their variants fall back to a placeholder
+            log.warn("Standard ImageIO failed for {}, accepting image without dimensions", originalFilename);
+            dimension = new Dimension(0, 0);
+        } catch (IOException e) {
+            discardUpload(originalFilePath, reused);
+            throw e;
         } catch (Exception e) {
-            Files.deleteIfExists(originalFilePath);
+            discardUpload(originalFilePath, reused);
             log.error("Failed to read image: {}", originalFilename, e);
             throw new IOException("Invalid or corrupted image file: " + e.getMessage());
         }
 
-        // Create thumbnail
-        BufferedImage thumbnail = createThumbnail(originalImage, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
         Path thumbnailFilePath = thumbnailPath.resolve(uniqueFilename);
-        ImageIO.write(thumbnail, extension, thumbnailFilePath.toFile());
-
-        // Create medium size
-        BufferedImage medium = createThumbnail(originalImage, MEDIUM_WIDTH, MEDIUM_HEIGHT);
         Path mediumFilePath = mediumPath.resolve(uniqueFilename);
-        ImageIO.write(medium, extension, mediumFilePath.toFile());
+        // Variants of reused content are only rendered once
+        if (!reused || !Files.exists(thumbnailFilePath) || !Files.exists(mediumFilePath)) {
+            variantGenerator.submit(uniqueFilename, originalFilePath, thumbnailFilePath, mediumFilePath);
+        }
 
         log.info("Image uploaded successfully: {}", uniqueFilename);
 
@@ -116,16 +137,67 @@ public class ImageService {
             .mediumPath(mediumFilePath.toString())
             .size(file.getSize())
             .contentType(file.getContentType())
-            .width(originalImage.getWidth())
-            .height(originalImage.getHeight())
+            .width(dimension.width)
+            .height(dimension.height)
+            .variantStatus(variantGenerator.getStatus(uniqueFilename))
             .build();
     }
 
+    /**
+     * Queue variant rendering for originals whose thumbnail or medium variant is missing,
+     * e.g. because the process stopped while they were rendered.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void enqueueMissingVariants() {
+        Path uploadPath = Paths.get(uploadDir);
+        if (!Files.isDirectory(uploadPath)) {
+            return;
+        }
+
+        int enqueued = 0;
+        try (DirectoryStream<Path> originals = Files.newDirectoryStream(uploadPath, Files::isRegularFile)) {
+            for (Path original : originals) {
+                String filename = original.getFileName().toString();
+                if (!isSafeFilename(filename) || !ALLOWED_EXTENSIONS.contains(FilenameUtils.getExtension(filename).toLowerCase())) {
+                    continue;
+                }
+
+                Path thumbnail = getImagePath(filename, ImageSize.THUMBNAIL);
+                Path medium = getImagePath(filename, ImageSize.MEDIUM);
+                if (!Files.exists(thumbnail) || !Files.exists(medium)) {
+                    variantGenerator.submit(filename, original, thumbnail, medium);
+                    enqueued++;
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to scan for missing image variants", e);
+        }
+
+        if (enqueued > 0) {
+            log.info("Re-enqueued variant rendering for {} images", enqueued);
+        }
+    }
+
+    /**
+     * Delete an image with its variants. In content-addressed mode the files are kept as
+     * long as any product still references them.
+     */
     public void deleteImage(String filename) {
         if (filename == null || filename.trim().isEmpty()) {
             return;
         }
 
+        if (contentAddressed) {
+            long references = productRepository.countImageReferences(filename);
+            if (references > 0) {
+                log.info("Image {} is still used by {} products, keeping it", filename, references);
+                return;
+            }
+        }
+
+        imageCache.invalidate(filename);
+        variantGenerator.forget(filename);
+
         try {
             Path uploadPath = Paths.get(uploadDir);
             
@@ -144,14 +216,60 @@ public class ImageService {
         }
     }
 
-    public byte[] getImage(String filename, ImageSize size) throws IOException {
+    /**
+     * The size that can be served for a request right now. A variant that is still being
+     * rendered is waited for briefly; if it doesn't become available the original is used.
+     */
+    public ImageSize resolveAvailableSize(String filename, ImageSize size) {
+        if (size == ImageSize.ORIGINAL || imageCache.contains(filename, size)) {
+            return size;
+        }
+        
+        Path variant = getImagePath(filename, size);
+        if (Files.exists(variant)) {
+            return size;
+        }
+        
+        if (variantGenerator.awaitVariants(filename, variantWait) && Files.exists(variant)) {
+            return size;
+        }
+        return ImageSize.ORIGINAL;
+    }
+
+    public ImageVariantGenerator.VariantStatus getVariantStatus(String filename) {
+        return variantGenerator.getStatus(filename);
+    }
+
+    /**
+     * Image variant as a resource. Thumbnails and medium variants are served from the
+     * {@link ImageCache}, originals are streamed from disk and never cached.
+     */
+    public Resource getImageResource(String filename, ImageSize size) throws IOException {
+        if (size == ImageSize.ORIGINAL) {
+            return new FileSystemResource(getImageFile(filename, size));
+        }
+        
+        return imageCache.get(filename, size, () -> {
+            Path imageFile = getImageFile(filename, size);
+            return new ImageCache.CachedImage(Files.readAllBytes(imageFile), Files.getLastModifiedTime(imageFile).toMillis());
+        });
+    }
+
+    /**
+     * Resolve the file of an image variant without reading it
+     */
+    public Path getImageFile(String filename, ImageSize size) throws IOException {
+        if (!isSafeFilename(filename)) {
+            throw new IOException("Invalid image filename: " + filename);
+        }
+        
         Path imagePath = getImagePath(filename, size);
         
-        if (!Files.exists(imagePath)) {
+        if (!Files.isRegularFile(imagePath)) {
             throw new IOException("Image not found: " + filename);
         }
         
-        return Files.readAllBytes(imagePath);
+        return imagePath;
     }
 
     public String getImageContentType(String filename) {
@@ -171,7 +289,41 @@ public class ImageService {
         }
     }
 
-    private Path getImagePath(String filename, ImageSize size) {
+    /**
+     * Extract the filename from an image URL like "/api/images/{filename}?size=thumbnail"
+     */
+    public static String filenameFromUrl(String imageUrl) {
+        if (imageUrl == null || imageUrl.isEmpty()) {
+            return null;
+        }
+        
+        String[] parts = imageUrl.split("/");
+        if (parts.length > 0) {
+            String lastPart = parts[parts.length - 1];
+            // Remove query parameters if any
+            int queryIndex = lastPart.indexOf('?');
+            if (queryIndex > 0) {
+                lastPart = lastPart.substring(0, queryIndex);
+            }
+            return lastPart;
+        }
+        
+        return null;
+    }
+
+    /**
+     * Whether a filename can safely be resolved inside the upload directory
+     */
+    public static boolean isSafeFilename(String filename) {
+        return filename != null && !filename.isEmpty() && !filename.startsWith(".")
+            && filename.indexOf('/') < 0 && filename.indexOf('\\') < 0;
+    }
+
+    Path getUploadPath() {
+        return Paths.get(uploadDir);
+    }
+
+    Path getImagePath(String filename, ImageSize size) {
         Path uploadPath = Paths.get(uploadDir);
         
         switch (size) {
@@ -185,6 +337,50 @@ public class ImageService {
         }
     }
 
+    /**
+     * Copy the upload to disk, flush it and return the SHA-256 of its content
+     */
+    private String writeToDisk(MultipartFile file, Path target) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+
+        try (DigestInputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void discardUpload(Path original, boolean reused) throws IOException {
+        // Reused content belongs to earlier uploads and stays
+        if (!reused) {
+            Files.deleteIfExists(original);
+        }
+    }
+
+    private Dimension readDimension(Path imageFile) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(imageFile.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
     private void validateImage(MultipartFile file) throws IOException {
         if (file.isEmpty()) {
             throw new IOException("File is empty");
@@ -210,33 +406,6 @@ public class ImageService {
         }
     }
 
-    private BufferedImage createThumbnail(BufferedImage original, int maxWidth, int maxHeight) {
-        int originalWidth = original.getWidth();
-        int originalHeight = original.getHeight();
-
-        // Calculate scaling factor to maintain aspect ratio
-        double scaleX = (double) maxWidth / originalWidth;
-        double scaleY = (double) maxHeight / originalHeight;
-        double scale = Math.min(scaleX, scaleY);
-
-        int scaledWidth = (int) (originalWidth * scale);
-        int scaledHeight = (int) (originalHeight * scale);
-
-        // Create scaled image
-        BufferedImage thumbnail = new BufferedImage(scaledWidth, scaledHeight, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2d = thumbnail.createGraphics();
-        
-        // Enable anti-aliasing for better quality
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-        g2d.drawImage(original, 0, 0, scaledWidth, scaledHeight, null);
-        g2d.dispose();
-
-        return thumbnail;
-    }
-
     public enum ImageSize {
         THUMBNAIL, MEDIUM, ORIGINAL
     }
@@ -252,5 +421,6 @@ public class ImageService {
         private String contentType;
         private int width;
         private int height;
+        private ImageVariantGenerator.VariantStatus variantStatus;
     }
 }
\ No newline at end of file
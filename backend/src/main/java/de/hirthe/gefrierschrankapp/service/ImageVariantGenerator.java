@@ -0,0 +1,254 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Renders the thumbnail and medium variants of uploaded images on a bounded worker pool.
+ * When the queue is full the uploading thread renders the variants itself, which slows
+ * down uploads instead of letting the backlog grow without limit.
+ */
+@Component
+@Slf4j
+public class ImageVariantGenerator {
+
+    // Thumbnail dimensions
+    static final int THUMBNAIL_WIDTH = 200;
+    static final int THUMBNAIL_HEIGHT = 200;
+    static final int MEDIUM_WIDTH = 600;
+    static final int MEDIUM_HEIGHT = 600;
+
+    private final ThreadPoolExecutor executor;
+    private final Map<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+
+    public ImageVariantGenerator(@Value("${app.image.variant-threads:2}") int threads,
+                                 @Value("${app.image.variant-queue-capacity:50}") int queueCapacity) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("image-variants-"),
+            ImageVariantGenerator::runInCaller);
+    }
+
+    /**
+     * Like {@link ThreadPoolExecutor.CallerRunsPolicy}, but a task submitted after shutdown is
+     * rejected instead of silently dropped
+     */
+    private static void runInCaller(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Image variant worker pool is shut down");
+        }
+        task.run();
+    }
+
+    public enum VariantStatus {
+        PENDING, READY, FAILED
+    }
+
+    /**
+     * Queue rendering of both variants of an original. Variants are written to a temporary
+     * file first and moved into place, so a half-written variant is never served.
+     */
+    public CompletableFuture<Void> submit(String filename, Path original, Path thumbnail, Path medium) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> existing = pending.putIfAbsent(filename, future);
+        if (existing != null) {
+            return existing;
+        }
+        failed.remove(filename);
+
+        try {
+            executor.execute(() -> {
+                // The status is settled before waiting threads are released
+                try {
+                    render(filename, original, thumbnail, medium);
+                    pending.remove(filename, future);
+                    future.complete(null);
+                } catch (Exception e) {
+                    log.error("Failed to create image variants for {}", filename, e);
+                    failed.add(filename);
+                    pending.remove(filename, future);
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Only happens while shutting down, the startup scan renders the variants later
+            pending.remove(filename, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public VariantStatus getStatus(String filename) {
+        if (pending.containsKey(filename)) {
+            return VariantStatus.PENDING;
+        }
+        return failed.contains(filename) ? VariantStatus.FAILED : VariantStatus.READY;
+    }
+
+    /**
+     * Wait up to {@code timeout} for pending variants of an image.
+     * Returns false if they are still pending or failed.
+     */
+    public boolean awaitVariants(String filename, Duration timeout) {
+        CompletableFuture<Void> future = pending.get(filename);
+        if (future == null) {
+            return !failed.contains(filename);
+        }
+
+        try {
+            future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException | ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public void forget(String filename) {
+        failed.remove(filename);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Unfinished variants are picked up again by the startup scan
+        executor.shutdownNow();
+    }
+
+    private void render(String filename, Path original, Path thumbnail, Path medium) throws IOException {
+        BufferedImage decoded;
+        try {
+            decoded = decode(original, MEDIUM_WIDTH, MEDIUM_HEIGHT);
+        } catch (javax.imageio.IIOException e) {
+            // Problematic PNG files get a neutral placeholder instead of no variants at all
+            log.warn("Standard ImageIO failed for {}, using fallback image for variants", filename);
+            decoded = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = decoded.createGraphics();
+            g.setColor(Color.GRAY);
+            g.fillRect(0, 0, 100, 100);
+            g.dispose();
+        }
+
+        // The thumbnail is derived from the medium variant, the decoded image can be dropped early
+        String extension = FilenameUtils.getExtension(filename);
+        BufferedImage mediumImage = createThumbnail(decoded, MEDIUM_WIDTH, MEDIUM_HEIGHT);
+        decoded = null;
+        writeVariant(mediumImage, extension, medium, original);
+        writeVariant(createThumbnail(mediumImage, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT), extension, thumbnail, original);
+        log.info("Image variants created: {}", filename);
+    }
+
+    /**
+     * Decode an image at reduced resolution. The reader skips source pixels while decoding,
+     * so a large photo never exists as a full-resolution raster on the heap.
+     */
+    BufferedImage decode(Path original, int maxWidth, int maxHeight) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Cannot read image file - file may be corrupted or not a valid image");
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int subsampling = subsamplingFor(reader.getWidth(0), reader.getHeight(0), maxWidth, maxHeight);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Largest subsampling step that still leaves at least twice the target resolution for
+     * the final smooth downscale
+     */
+    static int subsamplingFor(int width, int height, int maxWidth, int maxHeight) {
+        double scale = Math.min((double) maxWidth / width, (double) maxHeight / height);
+        return Math.max(1, (int) Math.floor(1 / (2 * scale)));
+    }
+
+    private void writeVariant(BufferedImage image, String extension, Path target, Path original) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".variant-", ".tmp");
+        try {
+            ImageIO.write(image, extension, temp.toFile());
+
+            // The image may have been deleted while it was rendered
+            if (Files.exists(original)) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private BufferedImage createThumbnail(BufferedImage original, int maxWidth, int maxHeight) {
+        int originalWidth = original.getWidth();
+        int originalHeight = original.getHeight();
+
+        // Calculate scaling factor to maintain aspect ratio
+        double scaleX = (double) maxWidth / originalWidth;
+        double scaleY = (double) maxHeight / originalHeight;
+        double scale = Math.min(scaleX, scaleY);
+
+        int scaledWidth = Math.max(1, (int) (originalWidth * scale));
+        int scaledHeight = Math.max(1, (int) (originalHeight * scale));
+
+        // Halve in steps first, a single bilinear pass over more than 2x skips source pixels
+        BufferedImage current = original;
+        while (current.getWidth() / 2 >= scaledWidth && current.getHeight() / 2 >= scaledHeight) {
+            current = drawScaled(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+
+        return drawScaled(current, scaledWidth, scaledHeight);
+    }
+
+    private BufferedImage drawScaled(BufferedImage source, int width, int height) {
+        // Create scaled image
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = scaled.createGraphics();
+
+        // Enable anti-aliasing for better quality
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        g2d.drawImage(source, 0, 0, width, height, null);
+        g2d.dispose();
+
+        return scaled;
+    }
+}
@@ -1,13 +1,21 @@
 package de.hirthe.gefrierschrankapp.service;
 
+import de.hirthe.gefrierschrankapp.dto.ProductGroupSummary;
 import de.hirthe.gefrierschrankapp.entity.Location;
+import de.hirthe.gefrierschrankapp.event.ProductGroupChangeEvent;
 import de.hirthe.gefrierschrankapp.repository.LocationRepository;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -17,6 +25,8 @@ import java.util.Optional;
 public class LocationService {
     
     private final LocationRepository locationRepository;
+    private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
     
     /**
      * Get all locations ordered by sort order and name
@@ -83,6 +93,7 @@ public class LocationService {
         
         Location existingLocation = locationRepository.findById(id)
             .orElseThrow(() -> new IllegalArgumentException("Location not found with id: " + id));
+        String previousName = existingLocation.getName();
         
         // Check if new name conflicts with existing location (excluding current)
         if (!existingLocation.getName().equalsIgnoreCase(locationUpdate.getName()) &&
@@ -97,6 +108,8 @@ public class LocationService {
         existingLocation.setSortOrder(locationUpdate.getSortOrder());
         
         Location updatedLocation = locationRepository.save(existingLocation);
+        // The statistics show the location name, the products are unchanged
+        eventPublisher.publishEvent(ProductGroupChangeEvent.location(previousName, updatedLocation.getName()));
         log.info("Successfully updated location with id: {}", updatedLocation.getId());
         return updatedLocation;
     }
@@ -121,12 +134,27 @@ public class LocationService {
     }
     
     /**
-     * Get locations with product counts
+     * Get locations with the count, quantities per unit and expiry buckets of their products.
+     * The products are summed up by one grouped query instead of being loaded.
      */
     @Transactional(readOnly = true)
-    public List<Location> getLocationsWithProducts() {
-        log.debug("Fetching locations with products");
-        return locationRepository.findAllWithProducts();
+    public List<ProductGroupSummary<Location>> getLocationsWithProducts() {
+        log.debug("Fetching locations with product totals");
+        
+        Map<Long, ProductGroupSummary<Location>> summaries = new LinkedHashMap<>();
+        for (Location location : locationRepository.findAllByOrderBySortOrderAscNameAsc()) {
+            summaries.put(location.getId(), new ProductGroupSummary<>(location));
+        }
+        
+        LocalDate today = LocalDate.now();
+        for (ProductRepository.GroupTotals totals : productRepository.sumByLocationAndUnit(
+                today, today.plusDays(3), today.plusDays(7), today.plusDays(14))) {
+            ProductGroupSummary<Location> summary = summaries.get(totals.getGroupId());
+            if (summary != null) {
+                summary.add(totals);
+            }
+        }
+        return new ArrayList<>(summaries.values());
     }
     
     /**
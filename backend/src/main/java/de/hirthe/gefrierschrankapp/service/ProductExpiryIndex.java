@@ -0,0 +1,361 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.event.ProductChangeEvent;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * In-memory index of the product expiration dates, ordered by date. Answers the expired and
+ * expiring product lookups and the expiry counts in O(log n + k) for k dates in range, without
+ * a range scan over the products. Rebuilt at startup and kept current from
+ * {@link ProductChangeEvent}s; {@link #checkConsistency()} compares it with the database.
+ */
+@Component
+@Slf4j
+public class ProductExpiryIndex
+        extends ProductIndexSupport<ProductRepository.ExpiryDate, ProductExpiryIndex.Index> {
+
+    private static final int MAX_REPORTED_IDS = 20;
+    private static final long[] NO_IDS = new long[0];
+
+    private final ProductRepository productRepository;
+
+    private Index index = new Index();
+
+    public ProductExpiryIndex(ProductRepository productRepository, PlatformTransactionManager transactionManager) {
+        super(transactionManager);
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * Products that expired before today, longest expired first
+     */
+    public List<Long> findExpired(LocalDate today) {
+        return findExpiringBetween(null, today.minusDays(1));
+    }
+
+    /**
+     * Products expiring on or before the date, including expired ones, soonest first
+     */
+    public List<Long> findExpiringBefore(LocalDate date) {
+        return findExpiringBetween(null, date);
+    }
+
+    /**
+     * Products expiring between both dates (inclusive), soonest first. A null start
+     * includes all earlier dates.
+     */
+    public List<Long> findExpiringBetween(LocalDate from, LocalDate to) {
+        lock.readLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>();
+            for (long[] idsOfDate : index.range(from, to).values()) {
+                for (long id : idsOfDate) {
+                    ids.add(id);
+                }
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The next {@code limit} products expiring today or later, soonest first
+     */
+    public List<Long> findNextExpiring(LocalDate today, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>(limit);
+            for (long[] idsOfDate : index.byDate.tailMap(today, true).values()) {
+                for (long id : idsOfDate) {
+                    if (ids.size() == limit) {
+                        return ids;
+                    }
+                    ids.add(id);
+                }
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Count products expiring between both dates (inclusive), a null start includes all earlier dates
+     */
+    public long countExpiringBetween(LocalDate from, LocalDate to) {
+        lock.readLock().lock();
+        try {
+            return index.count(from, to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Product counts per expiry bucket, the same buckets as {@link ProductRepository#EXPIRY_BUCKET_SUMS}
+     */
+    public ProductRepository.ExpiryCounts countByExpiry(LocalDate today, LocalDate in3Days,
+                                                        LocalDate in7Days, LocalDate in14Days) {
+        lock.readLock().lock();
+        try {
+            return new Counts(
+                    index.dates.size(),
+                    index.count(null, today.minusDays(1)),
+                    index.count(today, in3Days),
+                    index.count(today, in7Days),
+                    index.count(today, in14Days),
+                    index.dates.size() - index.datedProducts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.dates.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compare the index with the expiration dates in the database. Products that differ
+     * are read once more before they are reported, so writes committed during the
+     * check don't show up as differences.
+     */
+    public ConsistencyReport checkConsistency() {
+        Map<Long, LocalDate> indexed;
+        lock.readLock().lock();
+        try {
+            indexed = new HashMap<>(index.dates);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Long> suspects = new ArrayList<>();
+        long[] databaseProducts = new long[1];
+        readAll(product -> {
+            databaseProducts[0]++;
+            Long id = product.getId();
+            if (!indexed.containsKey(id) || !Objects.equals(indexed.remove(id), product.getExpirationDate())) {
+                suspects.add(id);
+            }
+        });
+        suspects.addAll(indexed.keySet()); // indexed, but not in the database
+
+        List<Long> missing = new ArrayList<>();
+        List<Long> unexpected = new ArrayList<>();
+        List<Long> mismatched = new ArrayList<>();
+        for (Long id : suspects) {
+            Optional<ProductRepository.ExpiryDate> stored = transaction.execute(
+                    status -> productRepository.findExpiryDateById(id));
+            lock.readLock().lock();
+            try {
+                boolean isIndexed = index.dates.containsKey(id);
+                if (stored.isPresent() && !isIndexed) {
+                    missing.add(id);
+                } else if (stored.isEmpty() && isIndexed) {
+                    unexpected.add(id);
+                } else if (stored.isPresent() && !Objects.equals(index.dates.get(id), stored.get().getExpirationDate())) {
+                    mismatched.add(id);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        ConsistencyReport report = ConsistencyReport.builder()
+                .indexedProducts(size())
+                .databaseProducts(databaseProducts[0])
+                .missing(missing.size())
+                .unexpected(unexpected.size())
+                .mismatched(mismatched.size())
+                .missingIds(firstIds(missing))
+                .unexpectedIds(firstIds(unexpected))
+                .mismatchedIds(firstIds(mismatched))
+                .build();
+        if (!report.isConsistent()) {
+            log.warn("Product expiry index differs from the database: {} missing, {} unexpected, {} mismatched",
+                    report.getMissing(), report.getUnexpected(), report.getMismatched());
+        }
+        return report;
+    }
+
+    void put(Long productId, LocalDate expirationDate) {
+        lock.writeLock().lock();
+        try {
+            index.put(productId, expirationDate);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected List<ProductRepository.ExpiryDate> readAfter(Long afterId, Pageable pageable) {
+        return productRepository.findExpiryDatesAfterId(afterId, pageable);
+    }
+
+    @Override
+    protected List<ProductRepository.ExpiryDate> readByIds(Collection<Long> productIds) {
+        return productRepository.findExpiryDatesByIds(productIds);
+    }
+
+    @Override
+    protected Long idOf(ProductRepository.ExpiryDate product) {
+        return product.getId();
+    }
+
+    @Override
+    protected Index newIndex() {
+        return new Index();
+    }
+
+    @Override
+    protected Index current() {
+        return index;
+    }
+
+    @Override
+    protected void swap(Index rebuilt) {
+        index = rebuilt;
+    }
+
+    @Override
+    protected void addTo(Index target, ProductRepository.ExpiryDate product) {
+        target.put(product.getId(), product.getExpirationDate());
+    }
+
+    @Override
+    protected void removeFrom(Index target, Long productId) {
+        target.remove(productId);
+    }
+
+    @Override
+    protected String describe(Index rebuilt) {
+        return "product expiry index with " + rebuilt.dates.size() + " products";
+    }
+
+    private static List<Long> firstIds(List<Long> ids) {
+        return ids.stream().sorted().limit(MAX_REPORTED_IDS).toList();
+    }
+
+    /**
+     * Result of comparing the index with the database, ids are limited to the first 20
+     */
+    @Getter
+    @Builder
+    public static class ConsistencyReport {
+        private final long indexedProducts;
+        private final long databaseProducts;
+        private final long missing;    // in the database, not in the index
+        private final long unexpected; // in the index, deleted in the database
+        private final long mismatched; // different expiration date
+        private final List<Long> missingIds;
+        private final List<Long> unexpectedIds;
+        private final List<Long> mismatchedIds;
+
+        public boolean isConsistent() {
+            return missing == 0 && unexpected == 0 && mismatched == 0;
+        }
+    }
+
+    @Getter
+    private static class Counts implements ProductRepository.ExpiryCounts {
+        private final long total;
+        private final Long expired;
+        private final Long expiringWithin3Days;
+        private final Long expiringWithin7Days;
+        private final Long expiringWithin14Days;
+        private final Long withoutExpirationDate;
+
+        Counts(long total, long expired, long within3Days, long within7Days, long within14Days, long withoutDate) {
+            this.total = total;
+            this.expired = expired;
+            this.expiringWithin3Days = within3Days;
+            this.expiringWithin7Days = within7Days;
+            this.expiringWithin14Days = within14Days;
+            this.withoutExpirationDate = withoutDate;
+        }
+    }
+
+    /**
+     * Sorted product ids per expiration date. Guarded by the lock of the owning index.
+     */
+    static class Index {
+        final NavigableMap<LocalDate, long[]> byDate = new TreeMap<>();
+        final Map<Long, LocalDate> dates = new HashMap<>(); // every product, null without expiration date
+        long datedProducts;
+
+        void put(Long productId, LocalDate expirationDate) {
+            remove(productId);
+            dates.put(productId, expirationDate);
+            if (expirationDate == null) {
+                return;
+            }
+            long[] ids = byDate.getOrDefault(expirationDate, NO_IDS);
+            int position = -Arrays.binarySearch(ids, productId) - 1;
+            long[] added = new long[ids.length + 1];
+            System.arraycopy(ids, 0, added, 0, position);
+            added[position] = productId;
+            System.arraycopy(ids, position, added, position + 1, ids.length - position);
+            byDate.put(expirationDate, added);
+            datedProducts++;
+        }
+
+        void remove(Long productId) {
+            if (!dates.containsKey(productId)) {
+                return;
+            }
+            LocalDate expirationDate = dates.remove(productId);
+            if (expirationDate == null) {
+                return;
+            }
+            long[] ids = byDate.get(expirationDate);
+            int position = Arrays.binarySearch(ids, productId);
+            if (ids.length == 1) {
+                byDate.remove(expirationDate);
+            } else {
+                long[] removed = new long[ids.length - 1];
+                System.arraycopy(ids, 0, removed, 0, position);
+                System.arraycopy(ids, position + 1, removed, position, ids.length - position - 1);
+                byDate.put(expirationDate, removed);
+            }
+            datedProducts--;
+        }
+
+        NavigableMap<LocalDate, long[]> range(LocalDate from, LocalDate to) {
+            if (from != null && from.isAfter(to)) {
+                return new TreeMap<>();
+            }
+            return from == null ? byDate.headMap(to, true) : byDate.subMap(from, true, to, true);
+        }
+
+        long count(LocalDate from, LocalDate to) {
+            long count = 0;
+            for (long[] ids : range(from, to).values()) {
+                count += ids.length;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.event.ProductChangeEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Keeps an in-memory index of type {@code S} over product rows of type {@code R} current.
+ * The index is built from the database at startup and on bulk changes, and single products
+ * are read back after their change committed. Readers use {@link #lock}; a rebuild fills a
+ * new index without holding it and swaps the result in.
+ */
+@Slf4j
+abstract class ProductIndexSupport<R, S> {
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    protected final TransactionTemplate transaction;
+    protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Products changed while a rebuild was reading, they are read again after the swap
+    private volatile Set<Long> changedDuringRebuild;
+
+    protected ProductIndexSupport(PlatformTransactionManager transactionManager) {
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transaction.setReadOnly(true);
+        this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * The next batch of rows after the given id, in id order
+     */
+    protected abstract List<R> readAfter(Long afterId, Pageable pageable);
+
+    protected abstract List<R> readByIds(Collection<Long> productIds);
+
+    protected abstract Long idOf(R row);
+
+    protected abstract S newIndex();
+
+    /**
+     * The index in use, only accessed under {@link #lock}
+     */
+    protected abstract S current();
+
+    protected abstract void swap(S rebuilt);
+
+    /**
+     * Add the row to the index, replacing an earlier entry of the same product
+     */
+    protected abstract void addTo(S index, R row);
+
+    protected abstract void removeFrom(S index, Long productId);
+
+    /**
+     * What the index holds, for the rebuild log
+     */
+    protected abstract String describe(S index);
+
+    /**
+     * Fill a new index with data that doesn't come from the product rows
+     */
+    protected void prepareRebuild(S rebuilt) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * Runs after the writing transaction committed, the index reads the committed state
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChange(ProductChangeEvent event) {
+        switch (event.getType()) {
+            case BULK:
+                rebuild();
+                break;
+            case DELETED:
+                event.getProductIds().forEach(this::remove);
+                break;
+            case REASSIGNED:
+            case CONSUMED:
+                // Names, notes, barcodes and expiration dates are unchanged
+                break;
+            default:
+                refresh(event.getProductIds());
+                break;
+        }
+    }
+
+    /**
+     * Build a new index from the database and swap it in. Readers keep using the old
+     * index while the new one is built.
+     */
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        Set<Long> changed = ConcurrentHashMap.newKeySet();
+        changedDuringRebuild = changed;
+
+        S rebuilt = newIndex();
+        try {
+            prepareRebuild(rebuilt);
+            readAll(row -> addTo(rebuilt, row));
+        } finally {
+            changedDuringRebuild = null;
+        }
+
+        lock.writeLock().lock();
+        try {
+            swap(rebuilt);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        refresh(changed);
+        log.info("Rebuilt {} in {} ms", describe(rebuilt), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Read the products back with one query, those no longer stored are removed
+     */
+    void refresh(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        productIds.forEach(this::markChanged);
+        transaction.executeWithoutResult(status -> {
+            Set<Long> missing = new HashSet<>(productIds);
+            for (R row : readByIds(productIds)) {
+                put(row);
+                missing.remove(idOf(row));
+            }
+            missing.forEach(this::remove);
+        });
+    }
+
+    void put(R row) {
+        lock.writeLock().lock();
+        try {
+            addTo(current(), row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(Long productId) {
+        if (productId == null) {
+            return;
+        }
+        markChanged(productId);
+        lock.writeLock().lock();
+        try {
+            removeFrom(current(), productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Pass every stored product row to the consumer, read in batches of short transactions
+     */
+    protected void readAll(Consumer<R> consumer) {
+        Long afterId = 0L;
+        List<R> batch;
+        do {
+            Long from = afterId;
+            batch = transaction.execute(status -> readAfter(from, PageRequest.of(0, REBUILD_BATCH_SIZE)));
+            for (R row : batch) {
+                consumer.accept(row);
+                afterId = idOf(row);
+            }
+        } while (batch.size() == REBUILD_BATCH_SIZE);
+    }
+
+    private void markChanged(Long productId) {
+        Set<Long> changed = changedDuringRebuild;
+        if (changed != null) {
+            changed.add(productId);
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.entity.Category;
+import de.hirthe.gefrierschrankapp.event.ProductGroupChangeEvent;
+import de.hirthe.gefrierschrankapp.repository.CategoryRepository;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Suggests product names while typing, from the names of existing products and categories.
+ * Names are kept in a prefix trie whose nodes hold the most frequent names below them, so a
+ * suggestion is a walk down the prefix without touching the database. Names that would
+ * grow the trie beyond its memory budget are not added.
+ */
+@Component
+public class ProductNameSuggester
+        extends ProductIndexSupport<ProductRepository.SearchableText, ProductNameSuggester.Trie> {
+
+    static final int MAX_SUGGESTIONS = 10;
+
+    // Estimated heap usage per trie element, for the memory budget
+    private static final long NODE_BYTES = 48;
+    private static final long EDGE_BYTES = 6;
+    private static final long TOP_SLOT_BYTES = 4;
+    private static final long ENTRY_BYTES = 96;
+    private static final long PRODUCT_KEY_BYTES = 64;
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final long maxBytes;
+
+    private Trie trie;
+    // Rejected by tries replaced in a rebuild
+    private long previouslyRejected;
+
+    public ProductNameSuggester(ProductRepository productRepository, CategoryRepository categoryRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.suggest.max-size:8MB}") DataSize maxSize,
+                                MeterRegistry meterRegistry) {
+        super(transactionManager);
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.maxBytes = maxSize.toBytes();
+        this.trie = new Trie(maxBytes);
+
+        Gauge.builder("product.suggest.size", this, suggester -> suggester.estimatedBytes())
+            .baseUnit("bytes")
+            .description("Estimated bytes held by the product name suggestions")
+            .register(meterRegistry);
+        Gauge.builder("product.suggest.max.size", this, suggester -> suggester.maxBytes)
+            .baseUnit("bytes")
+            .description("Memory budget of the product name suggestions")
+            .register(meterRegistry);
+        Gauge.builder("product.suggest.names", this, suggester -> suggester.nameCount())
+            .description("Names known to the product name suggestions")
+            .register(meterRegistry);
+        FunctionCounter.builder("product.suggest.rejected", this, suggester -> suggester.rejectedCount())
+            .description("Names not added because the memory budget was exhausted")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Most frequent names starting with the prefix, ignoring case and umlaut spelling
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String key = ProductSearchIndex.normalize(prefix);
+        lock.readLock().lock();
+        try {
+            return trie.suggest(key, Math.min(limit, MAX_SUGGESTIONS));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Category names are suggested too, they are updated once the change committed
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onGroupChange(ProductGroupChangeEvent event) {
+        if (event.getGroup() != ProductGroupChangeEvent.Group.CATEGORY) {
+            return;
+        }
+        if (event.getPreviousName() != null) {
+            removeCategory(event.getPreviousName());
+        }
+        if (event.getName() != null) {
+            addCategory(event.getName());
+        }
+    }
+
+    void addCategory(String name) {
+        lock.writeLock().lock();
+        try {
+            trie.update(name, 0, true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void removeCategory(String name) {
+        lock.writeLock().lock();
+        try {
+            trie.update(name, 0, false);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void putProduct(Long productId, String name) {
+        lock.writeLock().lock();
+        try {
+            trie.putProduct(productId, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected List<ProductRepository.SearchableText> readAfter(Long afterId, Pageable pageable) {
+        return productRepository.findSearchableTextAfterId(afterId, pageable);
+    }
+
+    @Override
+    protected List<ProductRepository.SearchableText> readByIds(Collection<Long> productIds) {
+        return productRepository.findSearchableTextByIds(productIds);
+    }
+
+    @Override
+    protected Long idOf(ProductRepository.SearchableText text) {
+        return text.getId();
+    }
+
+    @Override
+    protected Trie newIndex() {
+        return new Trie(maxBytes);
+    }
+
+    @Override
+    protected void prepareRebuild(Trie rebuilt) {
+        for (Category category : transaction.execute(status -> categoryRepository.findAll())) {
+            rebuilt.update(category.getName(), 0, true);
+        }
+    }
+
+    @Override
+    protected Trie current() {
+        return trie;
+    }
+
+    @Override
+    protected void swap(Trie rebuilt) {
+        previouslyRejected += trie.rejected;
+        trie = rebuilt;
+    }
+
+    @Override
+    protected void addTo(Trie target, ProductRepository.SearchableText text) {
+        target.putProduct(text.getId(), text.getName());
+    }
+
+    @Override
+    protected void removeFrom(Trie target, Long productId) {
+        target.removeProduct(productId);
+    }
+
+    @Override
+    protected String describe(Trie rebuilt) {
+        return "product name suggestions with " + rebuilt.entries + " names (" + rebuilt.estimatedBytes() + " bytes)";
+    }
+
+    long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            return trie.estimatedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int nameCount() {
+        lock.readLock().lock();
+        try {
+            return trie.entries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long rejectedCount() {
+        lock.readLock().lock();
+        try {
+            return previouslyRejected + trie.rejected;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A name and how often it is used. Names differing only in case or umlaut spelling share
+     * an entry, which shows the spelling written last.
+     */
+    private static final class Entry {
+        private String display;
+        private int products;
+        private boolean category;
+
+        Entry(String display) {
+            this.display = display;
+        }
+    }
+
+    // Most used first, category names before names of single products
+    private static final Comparator<Entry> RANKING = Comparator.<Entry>comparingInt(entry -> entry.products).reversed()
+            .thenComparing(entry -> !entry.category)
+            .thenComparing(entry -> entry.display, String.CASE_INSENSITIVE_ORDER);
+
+    private static final class Node {
+        private static final char[] NO_LABELS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Entry[] NO_ENTRIES = new Entry[0];
+
+        // Sorted by label
+        private char[] labels = NO_LABELS;
+        private Node[] children = NO_CHILDREN;
+        private Entry entry;
+        // The best entries of this node and all nodes below it
+        private Entry[] top = NO_ENTRIES;
+
+        Node child(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node addChild(char label) {
+            int index = -Arrays.binarySearch(labels, label) - 1;
+            Node child = new Node();
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            newLabels[index] = label;
+            newChildren[index] = child;
+            System.arraycopy(labels, index, newLabels, index + 1, labels.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+
+        void removeChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(labels, index + 1, newLabels, index, labels.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        boolean isEmpty() {
+            return entry == null && children.length == 0;
+        }
+    }
+
+    /**
+     * The trie with its bookkeeping. Not thread-safe, guarded by the lock.
+     */
+    static final class Trie {
+        private final long maxBytes;
+        private final Node root = new Node();
+        private final Map<Long, String> productNames = new HashMap<>();
+
+        private int nodes = 1;
+        private int entries;
+        private long entryChars;
+        private long topSlots;
+        private long rejected;
+
+        Trie(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        List<String> suggest(String key, int limit) {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null || limit <= 0) {
+                return Collections.emptyList();
+            }
+
+            List<String> names = new ArrayList<>(Math.min(limit, node.top.length));
+            for (int i = 0; i < node.top.length && i < limit; i++) {
+                names.add(node.top[i].display);
+            }
+            return names;
+        }
+
+        void putProduct(Long productId, String name) {
+            String previous = productNames.put(productId, name);
+            if (previous != null) {
+                update(previous, -1, null);
+            }
+            update(name, 1, null);
+        }
+
+        void removeProduct(Long productId) {
+            String previous = productNames.remove(productId);
+            if (previous != null) {
+                update(previous, -1, null);
+            }
+        }
+
+        /**
+         * Change the product count of a name and optionally mark or unmark it as a category,
+         * then refresh the best entries along its path
+         */
+        void update(String name, int productDelta, Boolean category) {
+            String key = ProductSearchIndex.normalize(name);
+            if (key.isEmpty()) {
+                return;
+            }
+            boolean adding = productDelta > 0 || Boolean.TRUE.equals(category);
+
+            Node[] path = new Node[key.length() + 1];
+            path[0] = root;
+            for (int i = 0; i < key.length(); i++) {
+                Node child = path[i].child(key.charAt(i));
+                if (child == null) {
+                    if (!adding) {
+                        return;
+                    }
+                    if (estimatedBytes() > maxBytes) {
+                        // Drop the nodes added for this name so far
+                        rejected++;
+                        pruneFrom(path, key, i);
+                        return;
+                    }
+                    child = path[i].addChild(key.charAt(i));
+                    nodes++;
+                }
+                path[i + 1] = child;
+            }
+
+            Node node = path[key.length()];
+            Entry entry = node.entry;
+            if (entry == null) {
+                if (!adding) {
+                    return;
+                }
+                entry = new Entry(name);
+                node.entry = entry;
+                entries++;
+                entryChars += name.length();
+            }
+
+            entry.products = Math.max(0, entry.products + productDelta);
+            if (category != null) {
+                entry.category = category;
+            }
+            if (adding) {
+                entryChars += name.length() - entry.display.length();
+                entry.display = name;
+            }
+            if (entry.products == 0 && !entry.category) {
+                node.entry = null;
+                entries--;
+                entryChars -= entry.display.length();
+            }
+
+            pruneFrom(path, key, key.length());
+        }
+
+        /**
+         * Drop empty nodes from the end of the path and recalculate the best entries above them
+         */
+        private void pruneFrom(Node[] path, String key, int depth) {
+            for (int i = depth; i >= 0; i--) {
+                Node node = path[i];
+                if (i > 0 && node.isEmpty()) {
+                    path[i - 1].removeChild(key.charAt(i - 1));
+                    nodes--;
+                    topSlots -= node.top.length;
+                    continue;
+                }
+                recalculateTop(node);
+            }
+        }
+
+        private void recalculateTop(Node node) {
+            List<Entry> candidates = new ArrayList<>();
+            if (node.entry != null) {
+                candidates.add(node.entry);
+            }
+            for (Node child : node.children) {
+                candidates.addAll(Arrays.asList(child.top));
+            }
+            candidates.sort(RANKING);
+
+            Entry[] top = candidates.subList(0, Math.min(MAX_SUGGESTIONS, candidates.size())).toArray(new Entry[0]);
+            topSlots += top.length - node.top.length;
+            node.top = top;
+        }
+
+        long estimatedBytes() {
+            return nodes * NODE_BYTES
+                    + (nodes - 1) * EDGE_BYTES
+                    + topSlots * TOP_SLOT_BYTES
+                    + entries * ENTRY_BYTES
+                    + entryChars * 2
+                    + productNames.size() * PRODUCT_KEY_BYTES;
+        }
+    }
+}
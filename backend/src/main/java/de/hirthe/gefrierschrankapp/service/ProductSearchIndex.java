@@ -0,0 +1,457 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.event.ProductChangeEvent;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory search index over product name, notes and barcode. Names are indexed by
+ * trigrams, so a term also matches inside compound words ("brust" finds "Hähnchenbrust");
+ * all fields are indexed by words for prefix matches. Fuzzy searches also accept words
+ * within one or two typos of a term. The index is rebuilt at startup and kept current
+ * from {@link ProductChangeEvent}s.
+ */
+@Component
+public class ProductSearchIndex
+        extends ProductIndexSupport<ProductRepository.SearchableText, ProductSearchIndex.Index> {
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern UMLAUT_DIGRAPHS = Pattern.compile("([aou])e");
+
+    // Terms shorter than this must match exactly, longer ones allow two typos
+    private static final int MIN_FUZZY_LENGTH = 4;
+    private static final int MIN_TWO_TYPOS_LENGTH = 8;
+
+    // Scores per term, the best matching field counts
+    private static final int SCORE_NAME_EXACT = 100;
+    private static final int SCORE_BARCODE_EXACT = 90;
+    private static final int SCORE_NAME_PREFIX = 60;
+    private static final int SCORE_NAME_WORD_PREFIX = 40;
+    private static final int SCORE_NAME_INFIX = 20;
+    private static final int SCORE_BARCODE_PREFIX = 15;
+    private static final int SCORE_NOTES_WORD_PREFIX = 5;
+    // Divided by the number of typos
+    private static final int SCORE_NAME_FUZZY = 12;
+    private static final int SCORE_OTHER_FUZZY = 4;
+
+    private final ProductRepository productRepository;
+
+    private Index index = new Index();
+
+    public ProductSearchIndex(ProductRepository productRepository, PlatformTransactionManager transactionManager) {
+        super(transactionManager);
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * Find products matching all words of the query, best matches first
+     */
+    public List<Long> search(String query, int limit) {
+        return search(query, limit, false);
+    }
+
+    /**
+     * Find products matching all words of the query, best matches first. With {@code fuzzy}
+     * a word also matches with typos, ranked below exact matches.
+     */
+    public List<Long> search(String query, int limit, boolean fuzzy) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(words(normalize(query))));
+        if (terms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            return index.search(terms, limit, fuzzy);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void put(Long productId, String name, String notes, String barcode) {
+        lock.writeLock().lock();
+        try {
+            index.remove(productId);
+            index.add(productId, name, notes, barcode);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected List<ProductRepository.SearchableText> readAfter(Long afterId, Pageable pageable) {
+        return productRepository.findSearchableTextAfterId(afterId, pageable);
+    }
+
+    @Override
+    protected List<ProductRepository.SearchableText> readByIds(Collection<Long> productIds) {
+        return productRepository.findSearchableTextByIds(productIds);
+    }
+
+    @Override
+    protected Long idOf(ProductRepository.SearchableText text) {
+        return text.getId();
+    }
+
+    @Override
+    protected Index newIndex() {
+        return new Index();
+    }
+
+    @Override
+    protected Index current() {
+        return index;
+    }
+
+    @Override
+    protected void swap(Index rebuilt) {
+        index = rebuilt;
+    }
+
+    @Override
+    protected void addTo(Index target, ProductRepository.SearchableText text) {
+        target.remove(text.getId());
+        target.add(text.getId(), text.getName(), text.getNotes(), text.getBarcode());
+    }
+
+    @Override
+    protected void removeFrom(Index target, Long productId) {
+        target.remove(productId);
+    }
+
+    @Override
+    protected String describe(Index rebuilt) {
+        return "product search index with " + rebuilt.documents.size() + " products";
+    }
+
+    /**
+     * Lower case without accents and with umlauts written out folded as well, so "Hähnchen",
+     * "Haehnchen" and "hahnchen" match. Index and queries are folded the same way, so words
+     * like "Feuer" still find themselves.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.replace("ß", "ss"), Normalizer.Form.NFD);
+        String folded = COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT).trim();
+        return UMLAUT_DIGRAPHS.matcher(folded).replaceAll("$1");
+    }
+
+    static int maxTypos(String term) {
+        if (term.length() < MIN_FUZZY_LENGTH) {
+            return 0;
+        }
+        return term.length() < MIN_TWO_TYPOS_LENGTH ? 1 : 2;
+    }
+
+    /**
+     * Edit distance between the term and the closest prefix of the word, counting a swap of
+     * two neighbouring letters as one typo. Returns {@code max + 1} once the distance
+     * exceeds {@code max}.
+     */
+    static int prefixDistance(String term, String word, int max) {
+        int m = term.length();
+        int n = word.length();
+        int[] previous2 = new int[n + 1];
+        int[] previous = new int[n + 1];
+        int[] current = new int[n + 1];
+        for (int j = 0; j <= n; j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= m; i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= n; j++) {
+                int cost = term.charAt(i - 1) == word.charAt(j - 1) ? 0 : 1;
+                int distance = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && term.charAt(i - 1) == word.charAt(j - 2) && term.charAt(i - 2) == word.charAt(j - 1)) {
+                    distance = Math.min(distance, previous2[j - 2] + 1);
+                }
+                current[j] = distance;
+                rowMin = Math.min(rowMin, distance);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+
+        int best = max + 1;
+        for (int j = 0; j <= n; j++) {
+            best = Math.min(best, previous[j]);
+        }
+        return best;
+    }
+
+    static List<String> words(String normalized) {
+        List<String> words = new ArrayList<>();
+        for (String word : WORD_SEPARATOR.split(normalized)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    static Set<String> trigrams(String normalized) {
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+            trigrams.add(normalized.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    /**
+     * Postings and documents of one index generation. Not thread-safe, guarded by the lock.
+     */
+    static class Index {
+        private final Map<Long, Document> documents = new HashMap<>();
+        private final Map<String, Set<Long>> trigramPostings = new HashMap<>();
+        private final NavigableMap<String, Set<Long>> wordPostings = new TreeMap<>();
+
+        void add(Long id, String name, String notes, String barcode) {
+            Document document = new Document(name, normalize(name), normalize(notes), normalize(barcode));
+            documents.put(id, document);
+            for (String trigram : document.trigrams) {
+                trigramPostings.computeIfAbsent(trigram, key -> new HashSet<>()).add(id);
+            }
+            for (String word : document.words) {
+                wordPostings.computeIfAbsent(word, key -> new HashSet<>()).add(id);
+            }
+        }
+
+        void remove(Long id) {
+            Document document = documents.remove(id);
+            if (document == null) {
+                return;
+            }
+            for (String trigram : document.trigrams) {
+                removePosting(trigramPostings, trigram, id);
+            }
+            for (String word : document.words) {
+                removePosting(wordPostings, word, id);
+            }
+        }
+
+        List<Long> search(List<String> terms, int limit, boolean fuzzy) {
+            Map<Long, Integer> scores = null;
+            // Longer terms are more selective, start with them to keep the candidate set small
+            List<String> ordered = new ArrayList<>(terms);
+            ordered.sort(Comparator.comparingInt(String::length).reversed());
+
+            for (String term : ordered) {
+                Set<Long> within = scores != null ? scores.keySet() : null;
+                Set<Long> candidates = candidates(term, within);
+                Map<String, Integer> similarWords = fuzzy ? similarWords(term) : Collections.emptyMap();
+                for (String word : similarWords.keySet()) {
+                    addAll(candidates, wordPostings.get(word), within);
+                }
+
+                Map<Long, Integer> termScores = new HashMap<>();
+                for (Long id : candidates) {
+                    Document document = documents.get(id);
+                    int score = Math.max(document.score(term), document.fuzzyScore(similarWords));
+                    if (score > 0) {
+                        termScores.put(id, (scores != null ? scores.get(id) : 0) + score);
+                    }
+                }
+                scores = termScores;
+                if (scores.isEmpty()) {
+                    return Collections.emptyList();
+                }
+            }
+
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                            .thenComparing(entry -> documents.get(entry.getKey()).sortName)
+                            .thenComparing(Map.Entry::getKey))
+                    .limit(limit)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+
+        /**
+         * Products that may contain the term, verified by {@link Document#score}
+         */
+        private Set<Long> candidates(String term, Set<Long> within) {
+            Set<Long> candidates = new HashSet<>();
+            for (Set<Long> ids : wordPostings.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+                addAll(candidates, ids, within);
+            }
+
+            if (term.length() >= 3) {
+                Set<Long> smallest = null;
+                List<Set<Long>> postings = new ArrayList<>();
+                for (String trigram : trigrams(term)) {
+                    Set<Long> ids = trigramPostings.get(trigram);
+                    if (ids == null) {
+                        return candidates;
+                    }
+                    postings.add(ids);
+                    if (smallest == null || ids.size() < smallest.size()) {
+                        smallest = ids;
+                    }
+                }
+                for (Long id : smallest) {
+                    if ((within == null || within.contains(id)) && containsAll(postings, id)) {
+                        candidates.add(id);
+                    }
+                }
+            }
+            return candidates;
+        }
+
+        /**
+         * Indexed words within the allowed number of typos of the term, with their distance.
+         * Only words starting with the same letter are compared, a typo in the first letter
+         * is rare and checking them would mean scanning the whole vocabulary.
+         */
+        private Map<String, Integer> similarWords(String term) {
+            int maxTypos = maxTypos(term);
+            if (maxTypos == 0) {
+                return Collections.emptyMap();
+            }
+
+            Map<String, Integer> similar = new HashMap<>();
+            String first = term.substring(0, 1);
+            for (String word : wordPostings.subMap(first, true, first + Character.MAX_VALUE, false).keySet()) {
+                if (word.length() + maxTypos < term.length()) {
+                    continue;
+                }
+                int distance = prefixDistance(term, word, maxTypos);
+                if (distance > 0 && distance <= maxTypos) {
+                    similar.put(word, distance);
+                }
+            }
+            return similar;
+        }
+
+        private static void addAll(Set<Long> target, Set<Long> ids, Set<Long> within) {
+            for (Long id : ids) {
+                if (within == null || within.contains(id)) {
+                    target.add(id);
+                }
+            }
+        }
+
+        private static boolean containsAll(List<Set<Long>> postings, Long id) {
+            for (Set<Long> ids : postings) {
+                if (!ids.contains(id)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static void removePosting(Map<String, Set<Long>> postings, String key, Long id) {
+            Set<Long> ids = postings.get(key);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    private static class Document {
+        private final String sortName;
+        private final String name;
+        private final String barcode;
+        private final Set<String> nameWords;
+        private final Set<String> noteWords;
+        private final Set<String> words = new HashSet<>();
+        private final Set<String> trigrams;
+
+        Document(String displayName, String name, String notes, String barcode) {
+            this.sortName = displayName != null ? displayName.toLowerCase(Locale.ROOT) : "";
+            this.name = name;
+            this.barcode = barcode;
+            this.nameWords = new HashSet<>(words(name));
+            this.noteWords = new HashSet<>(words(notes));
+            this.trigrams = trigrams(name);
+            words.addAll(nameWords);
+            words.addAll(noteWords);
+            words.addAll(words(barcode));
+        }
+
+        int score(String term) {
+            if (name.equals(term)) {
+                return SCORE_NAME_EXACT;
+            }
+            if (!barcode.isEmpty() && barcode.equals(term)) {
+                return SCORE_BARCODE_EXACT;
+            }
+            if (name.startsWith(term)) {
+                return SCORE_NAME_PREFIX;
+            }
+            if (hasWordWithPrefix(nameWords, term)) {
+                return SCORE_NAME_WORD_PREFIX;
+            }
+            if (name.contains(term)) {
+                return SCORE_NAME_INFIX;
+            }
+            if (barcode.startsWith(term) && !barcode.isEmpty()) {
+                return SCORE_BARCODE_PREFIX;
+            }
+            if (hasWordWithPrefix(noteWords, term)) {
+                return SCORE_NOTES_WORD_PREFIX;
+            }
+            return 0;
+        }
+
+        int fuzzyScore(Map<String, Integer> similarWords) {
+            int best = 0;
+            if (similarWords.isEmpty()) {
+                return best;
+            }
+            for (String word : words) {
+                Integer typos = similarWords.get(word);
+                if (typos != null) {
+                    int score = nameWords.contains(word) ? SCORE_NAME_FUZZY : SCORE_OTHER_FUZZY;
+                    best = Math.max(best, score / typos);
+                }
+            }
+            return best;
+        }
+
+        private static boolean hasWordWithPrefix(Set<String> words, String prefix) {
+            for (String word : words) {
+                if (word.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -1,21 +1,52 @@
 package de.hirthe.gefrierschrankapp.service;
 
+import de.hirthe.gefrierschrankapp.dto.ConsumeResult;
+import de.hirthe.gefrierschrankapp.dto.CursorPage;
+import de.hirthe.gefrierschrankapp.dto.DashboardSummaryDTO;
+import de.hirthe.gefrierschrankapp.dto.ProductBatchResult;
+import de.hirthe.gefrierschrankapp.dto.ProductDTO;
 import de.hirthe.gefrierschrankapp.entity.Category;
 import de.hirthe.gefrierschrankapp.entity.Location;
 import de.hirthe.gefrierschrankapp.entity.Product;
+import de.hirthe.gefrierschrankapp.event.ProductChangeEvent;
 import de.hirthe.gefrierschrankapp.repository.CategoryRepository;
 import de.hirthe.gefrierschrankapp.repository.LocationRepository;
+import de.hirthe.gefrierschrankapp.repository.ProductFilter;
+import de.hirthe.gefrierschrankapp.repository.ProductKeyset;
 import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -23,10 +54,22 @@ import java.util.Optional;
 @Transactional
 public class ProductService {
     
+    // Ids per IN list when loading products found in the expiry index or changing products in a batch
+    private static final int ID_BATCH_SIZE = 500;
+    
+    // Products tried when consuming first in, first out, before giving up on concurrent consumers
+    private static final int FIFO_CANDIDATES = 10;
+    
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
     private final LocationRepository locationRepository;
     private final ImageService imageService;
+    private final ProductStatisticsService productStatisticsService;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductNameSuggester productNameSuggester;
+    private final ProductExpiryIndex productExpiryIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
     
     /**
      * Get all products with pagination
@@ -77,9 +120,84 @@ public class ProductService {
      * Get products with filters
      */
     @Transactional(readOnly = true)
-    public Page<Product> getProductsWithFilters(Long categoryId, Long locationId, String name, Pageable pageable) {
-        log.debug("Fetching products with filters - category: {}, location: {}, name: {}", categoryId, locationId, name);
-        return productRepository.findByFilters(categoryId, locationId, name, pageable);
+    public Page<Product> getProductsWithFilters(ProductFilter filter, Pageable pageable) {
+        log.debug("Fetching products with filter: {}", filter);
+        return productRepository.findByFilter(filter, pageable);
+    }
+    
+    /**
+     * Get products with filters as DTOs, read in one joined query without managed entities
+     */
+    @Transactional(readOnly = true)
+    public Page<ProductDTO> getProductListWithFilters(ProductFilter filter, Pageable pageable) {
+        log.debug("Fetching product list with filter: {}", filter);
+        return productRepository.findDTOsByFilter(filter, pageable);
+    }
+    
+    /**
+     * Search products by name, notes and barcode, best matches first. A fuzzy search also
+     * finds words with typos, e.g. "Hänchen" for "Hähnchenbrust".
+     */
+    @Transactional(readOnly = true)
+    public List<ProductDTO> searchProducts(String query, boolean fuzzy, int limit) {
+        log.debug("Searching products for: {} (fuzzy: {})", query, fuzzy);
+        List<Long> ids = productSearchIndex.search(query, limit, fuzzy);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        
+        // The query returns the products in no particular order, restore the ranking
+        Map<Long, ProductDTO> products = productRepository.findDTOsByIds(ids).stream()
+            .collect(Collectors.toMap(ProductDTO::getId, Function.identity()));
+        return ids.stream()
+            .map(products::get)
+            .filter(Objects::nonNull)
+            .toList();
+    }
+    
+    /**
+     * Suggest product names starting with the prefix, most used first. Served from memory,
+     * so no transaction is needed.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<String> suggestProductNames(String prefix, int limit) {
+        return productNameSuggester.suggest(prefix, limit);
+    }
+    
+    /**
+     * Get a slice of products after an opaque cursor, without counting all matches.
+     * An empty cursor starts at the beginning of the list.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ProductDTO> getProductSlice(ProductFilter filter, String sortBy, String sortDir,
+                                               String cursor, int limit) {
+        ProductKeyset.SortField sortField = ProductKeyset.SortField.fromProperty(sortBy);
+        boolean ascending = Sort.Direction.fromString(sortDir).isAscending();
+        ProductKeyset keyset = cursor == null || cursor.isEmpty()
+            ? ProductKeyset.first(sortField, ascending)
+            : decodeCursor(cursor, sortField, ascending);
+        
+        log.debug("Fetching product slice - sort: {} {}, after id: {}, limit: {}", sortBy, sortDir, keyset.getAfterId(), limit);
+        
+        // One extra row tells whether there is a next slice
+        List<ProductDTO> products = productRepository.findSlice(filter, keyset, limit + 1);
+        boolean hasNext = products.size() > limit;
+        if (hasNext) {
+            products = products.subList(0, limit);
+        }
+        
+        String nextCursor = null;
+        if (hasNext) {
+            ProductDTO last = products.get(products.size() - 1);
+            nextCursor = encodeCursor(sortField, ascending, sortValue(last, sortField), last.getId());
+        }
+        
+        return CursorPage.<ProductDTO>builder()
+            .content(products)
+            .nextCursor(nextCursor)
+            .hasNext(hasNext)
+            .limit(limit)
+            .build();
     }
     
     /**
@@ -93,13 +211,6 @@ public class ProductService {
             Category category = categoryRepository.findById(product.getCategory().getId())
                 .orElseThrow(() -> new IllegalArgumentException("Category not found with id: " + product.getCategory().getId()));
             product.setCategory(category);
-            
-            // Auto-calculate expiration date if not provided
-            if (product.getExpirationDate() == null && category.getDefaultStorageDays() != null) {
-                product.setExpirationDate(product.getFrozenDate().plusDays(category.getDefaultStorageDays()));
-                log.debug("Auto-calculated expiration date: {} (based on category default: {} days)", 
-                         product.getExpirationDate(), category.getDefaultStorageDays());
-            }
         }
         
         // Validate and set location
@@ -109,28 +220,209 @@ public class ProductService {
             product.setLocation(location);
         }
         
-        // Set default values
-        if (product.getFrozenDate() == null) {
-            product.setFrozenDate(LocalDate.now());
-        }
-        
-        if (product.getUnit() == null || product.getUnit().isEmpty()) {
-            product.setUnit("pieces");
-        }
+        applyDefaults(product);
         
         Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.CREATED, savedProduct.getId()));
         log.info("Successfully created product with id: {}", savedProduct.getId());
         return savedProduct;
     }
     
+    /**
+     * Create products in one batch. Referenced categories and locations are loaded once;
+     * products that are invalid or reference a missing category or location are reported
+     * and skipped, the others are inserted together.
+     */
+    public ProductBatchResult createProducts(List<Product> products) {
+        log.info("Creating {} products in a batch", products.size());
+        
+        Map<Long, Category> categories = categoryRepository.findAllById(referencedIds(products, Product::getCategory, Category::getId))
+            .stream().collect(Collectors.toMap(Category::getId, Function.identity()));
+        Map<Long, Location> locations = locationRepository.findAllById(referencedIds(products, Product::getLocation, Location::getId))
+            .stream().collect(Collectors.toMap(Location::getId, Function.identity()));
+        
+        String[] errors = new String[products.size()];
+        List<Product> valid = new ArrayList<>(products.size());
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            
+            Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+            Long locationId = product.getLocation() != null ? product.getLocation().getId() : null;
+            if (categoryId != null && !categories.containsKey(categoryId)) {
+                errors[i] = "Category not found with id: " + categoryId;
+                continue;
+            }
+            if (locationId != null && !locations.containsKey(locationId)) {
+                errors[i] = "Location not found with id: " + locationId;
+                continue;
+            }
+            product.setCategory(categoryId != null ? categories.get(categoryId) : null);
+            product.setLocation(locationId != null ? locations.get(locationId) : null);
+            applyDefaults(product);
+            
+            Set<ConstraintViolation<Product>> violations = validator.validate(product);
+            if (!violations.isEmpty()) {
+                errors[i] = violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(", "));
+                continue;
+            }
+            valid.add(product);
+        }
+        
+        // Ids come from the sequence, so the inserts are sent in JDBC batches
+        productRepository.saveAll(valid);
+        Map<Long, ProductDTO> created = loadProductDTOs(valid.stream().map(Product::getId).toList()).stream()
+            .collect(Collectors.toMap(ProductDTO::getId, Function.identity()));
+        
+        ProductBatchResult result = new ProductBatchResult();
+        for (int i = 0; i < products.size(); i++) {
+            if (errors[i] != null) {
+                result.addFailure(i, null, errors[i]);
+            } else {
+                Long id = products.get(i).getId();
+                result.addSuccess(i, id, created.get(id));
+            }
+        }
+        if (!valid.isEmpty()) {
+            eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.CREATED, valid.stream().map(Product::getId).toList()));
+        }
+        
+        log.info("Created {} of {} products", result.getSucceeded(), products.size());
+        return result;
+    }
+    
+    /**
+     * Move products to a location, or remove their location if {@code locationId} is null,
+     * with one update statement
+     * 
+     * @throws IllegalArgumentException if the location does not exist
+     */
+    public ProductBatchResult moveProducts(List<Long> productIds, Long locationId) {
+        log.info("Moving {} products to location {}", productIds.size(), locationId);
+        
+        Location location = locationId == null ? null : locationRepository.findById(locationId)
+            .orElseThrow(() -> new IllegalArgumentException("Location not found with id: " + locationId));
+        return reassignProducts(productIds, ids -> productRepository.updateLocationByIds(ids, location, LocalDateTime.now()));
+    }
+    
+    /**
+     * Assign products to a category, or remove their category if {@code categoryId} is null,
+     * with one update statement. Expiration dates are kept.
+     * 
+     * @throws IllegalArgumentException if the category does not exist
+     */
+    public ProductBatchResult recategorizeProducts(List<Long> productIds, Long categoryId) {
+        log.info("Assigning {} products to category {}", productIds.size(), categoryId);
+        
+        Category category = categoryId == null ? null : categoryRepository.findById(categoryId)
+            .orElseThrow(() -> new IllegalArgumentException("Category not found with id: " + categoryId));
+        return reassignProducts(productIds, ids -> productRepository.updateCategoryByIds(ids, category, LocalDateTime.now()));
+    }
+    
+    /**
+     * Delete products with one delete statement. Their images are released once the
+     * transaction committed.
+     */
+    public ProductBatchResult deleteProducts(List<Long> productIds) {
+        log.info("Deleting {} products in a batch", productIds.size());
+        
+        Map<Long, String> imageUrls = new HashMap<>();
+        for (List<Long> batch : batches(distinct(productIds))) {
+            for (ProductRepository.ImageUrl product : productRepository.findImageUrlsByIds(batch)) {
+                imageUrls.put(product.getId(), product.getImageUrl());
+            }
+        }
+        for (List<Long> batch : batches(new ArrayList<>(imageUrls.keySet()))) {
+            productRepository.deleteByIds(batch);
+        }
+        
+        if (!imageUrls.isEmpty()) {
+            eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.DELETED, new ArrayList<>(imageUrls.keySet())));
+        }
+        afterCommit(() -> imageUrls.forEach((id, imageUrl) -> releaseImage(imageUrl, id)));
+        
+        ProductBatchResult result = itemResults(productIds, imageUrls.keySet());
+        log.info("Deleted {} of {} products", result.getSucceeded(), productIds.size());
+        return result;
+    }
+    
+    /**
+     * Take an amount out of a product with one conditional update, so concurrent consumers
+     * can never take more than is left. With {@code deleteWhenEmpty} the product is deleted
+     * once nothing is left.
+     * 
+     * @throws IllegalArgumentException if the product does not exist
+     * @throws IllegalStateException if less than the amount is left
+     */
+    public ConsumeResult consumeProduct(Long id, BigDecimal amount, boolean deleteWhenEmpty) {
+        log.info("Consuming {} of product with id: {}", amount, id);
+        
+        if (productRepository.decrementQuantity(id, amount, LocalDateTime.now()) == 0) {
+            if (!productRepository.existsById(id)) {
+                throw new IllegalArgumentException("Product not found with id: " + id);
+            }
+            throw new IllegalStateException("Less than " + amount + " left of product " + id);
+        }
+        return consumed(id, amount, deleteWhenEmpty);
+    }
+    
+    /**
+     * Take an amount out of the oldest frozen product with the name that has enough left,
+     * first in, first out
+     * 
+     * @throws IllegalArgumentException if there is no product with the name
+     * @throws IllegalStateException if no product with the name has enough left
+     */
+    public ConsumeResult consumeOldestProduct(String name, BigDecimal amount, boolean deleteWhenEmpty) {
+        log.info("Consuming {} of the oldest product named: {}", amount, name);
+        
+        for (Long id : productRepository.findIdsOldestFirst(name, amount, PageRequest.of(0, FIFO_CANDIDATES))) {
+            // A concurrent consumer may have taken the rest in the meantime, then the next one is used
+            if (productRepository.decrementQuantity(id, amount, LocalDateTime.now()) > 0) {
+                return consumed(id, amount, deleteWhenEmpty);
+            }
+        }
+        
+        if (!productRepository.existsByName(name)) {
+            throw new IllegalArgumentException("Product not found with name: " + name);
+        }
+        throw new IllegalStateException("No product '" + name + "' has " + amount + " left");
+    }
+    
+    private ConsumeResult consumed(Long id, BigDecimal amount, boolean deleteWhenEmpty) {
+        ProductDTO product = productRepository.findDTOsByIds(List.of(id)).get(0);
+        
+        // Conditional as well, the product may have been refilled in the meantime
+        if (deleteWhenEmpty && product.getQuantity().signum() <= 0 && productRepository.deleteIfEmpty(id) > 0) {
+            eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.DELETED, id));
+            afterCommit(() -> releaseImage(product.getImageUrl(), id));
+            log.info("Deleted empty product with id: {}", id);
+            return new ConsumeResult(id, amount, BigDecimal.ZERO, true);
+        }
+        
+        // Only the quantity changed, the indexes don't have to reload the product
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.CONSUMED, id));
+        return new ConsumeResult(id, amount, product.getQuantity(), false);
+    }
+    
     /**
      * Update existing product
      */
     public Product updateProduct(Long id, Product productUpdate) {
+        return updateProduct(id, productUpdate, null);
+    }
+    
+    /**
+     * Update existing product if it still has the version the client edited
+     * 
+     * @param expectedVersion the version the update is based on, null to skip the check
+     * @throws OptimisticLockingFailureException if the product was changed in the meantime
+     */
+    public Product updateProduct(Long id, Product productUpdate, Long expectedVersion) {
         log.info("Updating product with id: {}", id);
         
         Product existingProduct = productRepository.findById(id)
             .orElseThrow(() -> new IllegalArgumentException("Product not found with id: " + id));
+        checkVersion(existingProduct, expectedVersion);
         
         // Update basic fields
         existingProduct.setName(productUpdate.getName());
@@ -161,10 +453,134 @@ public class ProductService {
         }
         
         Product updatedProduct = productRepository.save(existingProduct);
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.UPDATED, id));
         log.info("Successfully updated product with id: {}", updatedProduct.getId());
         return updatedProduct;
     }
     
+    /**
+     * Apply a JSON merge patch (RFC 7396) to a product: only the fields in the patch are
+     * changed, null clears a field. Category and location are referenced by
+     * {@code categoryId} and {@code locationId}. Thanks to dynamic updates only the changed
+     * columns are written.
+     * 
+     * @param expectedVersion the version the patch is based on, null to skip the check
+     * @return the patched product, empty if it does not exist
+     * @throws IllegalArgumentException if the patch has unknown fields or invalid values
+     * @throws OptimisticLockingFailureException if the product was changed in the meantime
+     */
+    public Optional<Product> patchProduct(Long id, Map<String, Object> patch, Long expectedVersion) {
+        log.info("Patching fields {} of product with id: {}", patch.keySet(), id);
+        
+        Optional<Product> found = productRepository.findById(id);
+        if (found.isEmpty()) {
+            return found;
+        }
+        
+        Product product = found.get();
+        checkVersion(product, expectedVersion);
+        String oldImageUrl = product.getImageUrl();
+        patch.forEach((field, value) -> applyPatch(product, field, value));
+        
+        Set<ConstraintViolation<Product>> violations = validator.validate(product);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(", ")));
+        }
+        
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.UPDATED, id));
+        if (!Objects.equals(oldImageUrl, product.getImageUrl())) {
+            afterCommit(() -> releaseImage(oldImageUrl, id));
+        }
+        return found;
+    }
+    
+    private void applyPatch(Product product, String field, Object value) {
+        switch (field) {
+            case "name":
+                product.setName(patchString(field, value));
+                break;
+            case "quantity":
+                product.setQuantity(patchDecimal(field, value));
+                break;
+            case "unit":
+                product.setUnit(patchString(field, value));
+                break;
+            case "frozenDate":
+                product.setFrozenDate(patchDate(field, value));
+                break;
+            case "expirationDate":
+                product.setExpirationDate(patchDate(field, value));
+                break;
+            case "notes":
+                product.setNotes(patchString(field, value));
+                break;
+            case "imageUrl":
+                product.setImageUrl(patchString(field, value));
+                break;
+            case "barcode":
+                product.setBarcode(patchString(field, value));
+                break;
+            case "categoryId":
+                Long categoryId = patchId(field, value);
+                product.setCategory(categoryId == null ? null : categoryRepository.findById(categoryId)
+                    .orElseThrow(() -> new IllegalArgumentException("Category not found with id: " + categoryId)));
+                break;
+            case "locationId":
+                Long locationId = patchId(field, value);
+                product.setLocation(locationId == null ? null : locationRepository.findById(locationId)
+                    .orElseThrow(() -> new IllegalArgumentException("Location not found with id: " + locationId)));
+                break;
+            default:
+                throw new IllegalArgumentException("Field cannot be patched: " + field);
+        }
+    }
+    
+    private static String patchString(String field, Object value) {
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalArgumentException(field + " must be a string");
+        }
+        return (String) value;
+    }
+    
+    private static BigDecimal patchDecimal(String field, Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            if (value instanceof Number || value instanceof String) {
+                return new BigDecimal(value.toString());
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException(field + " must be a number");
+    }
+    
+    private static LocalDate patchDate(String field, Object value) {
+        try {
+            return value == null ? null : LocalDate.parse(patchString(field, value));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(field + " must be a date like 2025-01-31");
+        }
+    }
+    
+    private static Long patchId(String field, Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            return ((Number) value).longValue();
+        }
+        throw new IllegalArgumentException(field + " must be an id");
+    }
+    
+    private static void checkVersion(Product product, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(product.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Product.class, product.getId());
+        }
+    }
+    
     /**
      * Delete product
      */
@@ -174,21 +590,11 @@ public class ProductService {
         Product product = productRepository.findById(id)
             .orElseThrow(() -> new IllegalArgumentException("Product not found with id: " + id));
         
-        // Delete associated image if exists
-        if (product.getImageUrl() != null && !product.getImageUrl().isEmpty()) {
-            try {
-                // Extract filename from imageUrl (assuming format: /api/images/{filename})
-                String filename = extractFilenameFromUrl(product.getImageUrl());
-                if (filename != null) {
-                    imageService.deleteImage(filename);
-                    log.info("Deleted image {} for product {}", filename, id);
-                }
-            } catch (Exception e) {
-                log.warn("Failed to delete image for product {}: {}", id, e.getMessage());
-            }
-        }
-        
         productRepository.delete(product);
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.DELETED, id));
+
+        // Delete associated image if exists, a rolled back delete keeps it
+        afterCommit(() -> releaseImage(product.getImageUrl(), id));
         log.info("Successfully deleted product with id: {}", id);
     }
     
@@ -201,22 +607,13 @@ public class ProductService {
         Product product = productRepository.findById(productId)
             .orElseThrow(() -> new IllegalArgumentException("Product not found with id: " + productId));
         
-        // Delete old image if exists
-        if (product.getImageUrl() != null && !product.getImageUrl().isEmpty()) {
-            try {
-                String oldFilename = extractFilenameFromUrl(product.getImageUrl());
-                if (oldFilename != null) {
-                    imageService.deleteImage(oldFilename);
-                    log.info("Deleted old image {} for product {}", oldFilename, productId);
-                }
-            } catch (Exception e) {
-                log.warn("Failed to delete old image for product {}: {}", productId, e.getMessage());
-            }
-        }
+        String oldImageUrl = product.getImageUrl();
         
         // Update with new image URL
         product.setImageUrl(newImageUrl);
         Product updatedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.UPDATED, productId));
+        afterCommit(() -> releaseImage(oldImageUrl, productId));
         log.info("Successfully updated image for product with id: {}", productId);
         return updatedProduct;
     }
@@ -230,74 +627,217 @@ public class ProductService {
         Product product = productRepository.findById(productId)
             .orElseThrow(() -> new IllegalArgumentException("Product not found with id: " + productId));
         
-        // Delete image if exists
-        if (product.getImageUrl() != null && !product.getImageUrl().isEmpty()) {
-            try {
-                String filename = extractFilenameFromUrl(product.getImageUrl());
-                if (filename != null) {
-                    imageService.deleteImage(filename);
-                    log.info("Deleted image {} for product {}", filename, productId);
-                }
-            } catch (Exception e) {
-                log.warn("Failed to delete image for product {}: {}", productId, e.getMessage());
-            }
-        }
+        String oldImageUrl = product.getImageUrl();
         
         // Remove image URL
         product.setImageUrl(null);
         Product updatedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeEvent.Type.UPDATED, productId));
+        afterCommit(() -> releaseImage(oldImageUrl, productId));
         log.info("Successfully removed image for product with id: {}", productId);
         return updatedProduct;
     }
     
-    private String extractFilenameFromUrl(String imageUrl) {
+    /**
+     * Apply an update statement to the products that exist and report the missing ones.
+     * The statement does not change anything the product indexes keep.
+     */
+    private ProductBatchResult reassignProducts(List<Long> productIds, Function<List<Long>, Integer> update) {
+        Set<Long> existing = new HashSet<>();
+        for (List<Long> batch : batches(distinct(productIds))) {
+            existing.addAll(productRepository.findExistingIds(batch));
+        }
+        for (List<Long> batch : batches(new ArrayList<>(existing))) {
+            update.apply(batch);
+        }
+        
+        if (!existing.isEmpty()) {
+            eventPublisher.publishEvent(ProductChangeEvent.reassigned());
+        }
+        
+        ProductBatchResult result = itemResults(productIds, existing);
+        log.info("Updated {} of {} products", result.getSucceeded(), productIds.size());
+        return result;
+    }
+    
+    private ProductBatchResult itemResults(List<Long> productIds, Set<Long> found) {
+        ProductBatchResult result = new ProductBatchResult();
+        for (int i = 0; i < productIds.size(); i++) {
+            Long id = productIds.get(i);
+            if (found.contains(id)) {
+                result.addSuccess(i, id, null);
+            } else {
+                result.addFailure(i, id, "Product not found with id: " + id);
+            }
+        }
+        return result;
+    }
+    
+    private static <T> Set<Long> referencedIds(List<Product> products, Function<Product, T> reference, Function<T, Long> id) {
+        return products.stream()
+            .map(reference)
+            .filter(Objects::nonNull)
+            .map(id)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+    }
+    
+    private static List<Long> distinct(List<Long> ids) {
+        return ids.stream().filter(Objects::nonNull).distinct().toList();
+    }
+    
+    /**
+     * Run a task once the current transaction committed, or right away without one
+     */
+    private static void afterCommit(Runnable task) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            task.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                task.run();
+            }
+        });
+    }
+    
+    /**
+     * Defaults of a new product: frozen today, in pieces, and expiring after the default
+     * storage time of its category
+     */
+    private void applyDefaults(Product product) {
+        if (product.getFrozenDate() == null) {
+            product.setFrozenDate(LocalDate.now());
+        }
+        
+        if (product.getUnit() == null || product.getUnit().isEmpty()) {
+            product.setUnit("pieces");
+        }
+        
+        Category category = product.getCategory();
+        if (product.getExpirationDate() == null && category != null && category.getDefaultStorageDays() != null) {
+            product.setExpirationDate(product.getFrozenDate().plusDays(category.getDefaultStorageDays()));
+            log.debug("Auto-calculated expiration date: {} (based on category default: {} days)", 
+                     product.getExpirationDate(), category.getDefaultStorageDays());
+        }
+    }
+    
+    /**
+     * Delete the image a product no longer uses. Must run after the product change, so the
+     * reference check of a content-addressed image store doesn't count this product.
+     */
+    private void releaseImage(String imageUrl, Long productId) {
         if (imageUrl == null || imageUrl.isEmpty()) {
-            return null;
+            return;
         }
         
-        // Extract filename from URL like "/api/images/{filename}" or "http://host/api/images/{filename}"
-        String[] parts = imageUrl.split("/");
-        if (parts.length > 0) {
-            String lastPart = parts[parts.length - 1];
-            // Remove query parameters if any
-            int queryIndex = lastPart.indexOf('?');
-            if (queryIndex > 0) {
-                lastPart = lastPart.substring(0, queryIndex);
+        try {
+            String filename = extractFilenameFromUrl(imageUrl);
+            if (filename != null) {
+                imageService.deleteImage(filename);
+                log.info("Released image {} of product {}", filename, productId);
             }
-            return lastPart;
+        } catch (Exception e) {
+            log.warn("Failed to delete image for product {}: {}", productId, e.getMessage());
+        }
+    }
+    
+    private Comparable<?> sortValue(ProductDTO product, ProductKeyset.SortField sortField) {
+        switch (sortField) {
+            case EXPIRATION_DATE:
+                return product.getExpirationDate();
+            case NAME:
+                return product.getName();
+            case FROZEN_DATE:
+                return product.getFrozenDate();
+            case CREATED_AT:
+            default:
+                return product.getCreatedAt();
+        }
+    }
+    
+    /**
+     * Cursor format before Base64 encoding: "sortField|direction|id|" followed by "=value",
+     * or nothing for a null value. The value comes last because names may contain '|'.
+     */
+    private String encodeCursor(ProductKeyset.SortField sortField, boolean ascending, Comparable<?> value, Long id) {
+        String raw = sortField.getProperty() + "|" + (ascending ? "asc" : "desc") + "|" + id + "|"
+            + (value != null ? "=" + value : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private ProductKeyset decodeCursor(String cursor, ProductKeyset.SortField sortField, boolean ascending) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 4);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (!parts[0].equals(sortField.getProperty()) || !parts[1].equals(ascending ? "asc" : "desc")) {
+            throw new IllegalArgumentException("Cursor does not match the requested sort order");
         }
         
-        return null;
+        try {
+            Long id = Long.valueOf(parts[2]);
+            String value = parts[3].isEmpty() ? null : parts[3].substring(1);
+            return new ProductKeyset(sortField, ascending, parseSortValue(value, sortField), id);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+    
+    private Comparable<?> parseSortValue(String value, ProductKeyset.SortField sortField) {
+        if (value == null) {
+            return null;
+        }
+        switch (sortField) {
+            case EXPIRATION_DATE:
+            case FROZEN_DATE:
+                return LocalDate.parse(value);
+            case NAME:
+                return value;
+            case CREATED_AT:
+            default:
+                return LocalDateTime.parse(value);
+        }
+    }
+    
+    private String extractFilenameFromUrl(String imageUrl) {
+        return ImageService.filenameFromUrl(imageUrl);
     }
     
     /**
-     * Get products expiring soon
+     * Get products expiring soon, looked up in the expiry index
      */
     @Transactional(readOnly = true)
     public List<Product> getProductsExpiringSoon(int daysThreshold) {
         log.debug("Fetching products expiring within {} days", daysThreshold);
         LocalDate futureDate = LocalDate.now().plusDays(daysThreshold);
-        return productRepository.findProductsExpiringBefore(futureDate);
+        return loadProducts(productExpiryIndex.findExpiringBefore(futureDate));
     }
     
     /**
-     * Get expired products
+     * Get expired products, looked up in the expiry index
      */
     @Transactional(readOnly = true)
     public List<Product> getExpiredProducts() {
         log.debug("Fetching expired products");
-        return productRepository.findExpiredProducts(LocalDate.now());
+        return loadProducts(productExpiryIndex.findExpired(LocalDate.now()));
     }
     
     /**
-     * Get products expiring within specific days
+     * Get products expiring within specific days, looked up in the expiry index
      */
     @Transactional(readOnly = true)
     public List<Product> getProductsExpiringWithinDays(int days) {
         log.debug("Fetching products expiring within exactly {} days", days);
         LocalDate today = LocalDate.now();
         LocalDate futureDate = today.plusDays(days);
-        return productRepository.findProductsExpiringWithinDays(today, futureDate);
+        return loadProducts(productExpiryIndex.findExpiringBetween(today, futureDate));
     }
     
     /**
@@ -310,21 +850,70 @@ public class ProductService {
     }
     
     /**
-     * Get product statistics
+     * Get products expiring soon as DTOs, looked up in the expiry index
+     */
+    @Transactional(readOnly = true)
+    public List<ProductDTO> getExpiringSoonProductList(int daysThreshold) {
+        log.debug("Fetching product list expiring within {} days", daysThreshold);
+        return loadProductDTOs(productExpiryIndex.findExpiringBefore(LocalDate.now().plusDays(daysThreshold)));
+    }
+    
+    /**
+     * Get expired products as DTOs, looked up in the expiry index
      */
     @Transactional(readOnly = true)
+    public List<ProductDTO> getExpiredProductList() {
+        log.debug("Fetching expired product list");
+        return loadProductDTOs(productExpiryIndex.findExpired(LocalDate.now()));
+    }
+    
+    /**
+     * Compare the expiry index with the database
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ProductExpiryIndex.ConsistencyReport checkExpiryIndex() {
+        return productExpiryIndex.checkConsistency();
+    }
+    
+    /**
+     * Load products by id in the order of the ids, products deleted in the meantime are skipped
+     */
+    private List<Product> loadProducts(List<Long> ids) {
+        Map<Long, Product> products = new HashMap<>();
+        for (List<Long> batch : batches(ids)) {
+            productRepository.findWithCategoryAndLocationByIds(batch)
+                .forEach(product -> products.put(product.getId(), product));
+        }
+        return ids.stream()
+            .map(products::get)
+            .filter(Objects::nonNull)
+            .toList();
+    }
+    
+    private List<ProductDTO> loadProductDTOs(List<Long> ids) {
+        Map<Long, ProductDTO> products = new HashMap<>();
+        for (List<Long> batch : batches(ids)) {
+            productRepository.findDTOsByIds(batch).forEach(product -> products.put(product.getId(), product));
+        }
+        return ids.stream()
+            .map(products::get)
+            .filter(Objects::nonNull)
+            .toList();
+    }
+    
+    private static List<List<Long>> batches(List<Long> ids) {
+        List<List<Long>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += ID_BATCH_SIZE) {
+            batches.add(ids.subList(from, Math.min(from + ID_BATCH_SIZE, ids.size())));
+        }
+        return batches;
+    }
+    
+    /**
+     * Get product statistics from the maintained snapshot, without loading any product
+     */
     public ProductStatistics getProductStatistics() {
-        log.debug("Calculating product statistics");
-        
-        long totalProducts = productRepository.count();
-        List<Product> expiredProducts = getExpiredProducts();
-        List<Product> expiringSoon = getProductsExpiringSoon(7); // 7 days threshold
-        
-        return ProductStatistics.builder()
-            .totalProducts(totalProducts)
-            .expiredProducts(expiredProducts.size())
-            .expiringSoon(expiringSoon.size())
-            .build();
+        return productStatisticsService.getStatistics();
     }
     
     /**
@@ -339,12 +928,24 @@ public class ProductService {
     public static class ProductStatistics {
         private final long totalProducts;
         private final long expiredProducts;
-        private final long expiringSoon;
+        private final long expiringSoon; // within 7 days, not yet expired
+        private final long expiringWithin3Days;
+        private final long expiringWithin14Days;
+        private final long freshProducts;
+        private final long withoutExpirationDate;
+        private final List<DashboardSummaryDTO.GroupCount> productsByCategory;
+        private final List<DashboardSummaryDTO.GroupCount> productsByLocation;
         
-        private ProductStatistics(long totalProducts, long expiredProducts, long expiringSoon) {
-            this.totalProducts = totalProducts;
-            this.expiredProducts = expiredProducts;
-            this.expiringSoon = expiringSoon;
+        private ProductStatistics(ProductStatisticsBuilder builder) {
+            this.totalProducts = builder.totalProducts;
+            this.expiredProducts = builder.expiredProducts;
+            this.expiringSoon = builder.expiringSoon;
+            this.expiringWithin3Days = builder.expiringWithin3Days;
+            this.expiringWithin14Days = builder.expiringWithin14Days;
+            this.freshProducts = builder.freshProducts;
+            this.withoutExpirationDate = builder.withoutExpirationDate;
+            this.productsByCategory = List.copyOf(builder.productsByCategory);
+            this.productsByLocation = List.copyOf(builder.productsByLocation);
         }
         
         public static ProductStatisticsBuilder builder() {
@@ -354,11 +955,23 @@ public class ProductService {
         public long getTotalProducts() { return totalProducts; }
         public long getExpiredProducts() { return expiredProducts; }
         public long getExpiringSoon() { return expiringSoon; }
+        public long getExpiringWithin3Days() { return expiringWithin3Days; }
+        public long getExpiringWithin14Days() { return expiringWithin14Days; }
+        public long getFreshProducts() { return freshProducts; }
+        public long getWithoutExpirationDate() { return withoutExpirationDate; }
+        public List<DashboardSummaryDTO.GroupCount> getProductsByCategory() { return productsByCategory; }
+        public List<DashboardSummaryDTO.GroupCount> getProductsByLocation() { return productsByLocation; }
         
         public static class ProductStatisticsBuilder {
             private long totalProducts;
             private long expiredProducts;
             private long expiringSoon;
+            private long expiringWithin3Days;
+            private long expiringWithin14Days;
+            private long freshProducts;
+            private long withoutExpirationDate;
+            private List<DashboardSummaryDTO.GroupCount> productsByCategory = List.of();
+            private List<DashboardSummaryDTO.GroupCount> productsByLocation = List.of();
             
             public ProductStatisticsBuilder totalProducts(long totalProducts) {
                 this.totalProducts = totalProducts;
@@ -375,9 +988,39 @@ public class ProductService {
                 return this;
             }
             
+            public ProductStatisticsBuilder expiringWithin3Days(long expiringWithin3Days) {
+                this.expiringWithin3Days = expiringWithin3Days;
+                return this;
+            }
+            
+            public ProductStatisticsBuilder expiringWithin14Days(long expiringWithin14Days) {
+                this.expiringWithin14Days = expiringWithin14Days;
+                return this;
+            }
+            
+            public ProductStatisticsBuilder freshProducts(long freshProducts) {
+                this.freshProducts = freshProducts;
+                return this;
+            }
+            
+            public ProductStatisticsBuilder withoutExpirationDate(long withoutExpirationDate) {
+                this.withoutExpirationDate = withoutExpirationDate;
+                return this;
+            }
+            
+            public ProductStatisticsBuilder productsByCategory(List<DashboardSummaryDTO.GroupCount> productsByCategory) {
+                this.productsByCategory = productsByCategory;
+                return this;
+            }
+            
+            public ProductStatisticsBuilder productsByLocation(List<DashboardSummaryDTO.GroupCount> productsByLocation) {
+                this.productsByLocation = productsByLocation;
+                return this;
+            }
+            
             public ProductStatistics build() {
-                return new ProductStatistics(totalProducts, expiredProducts, expiringSoon);
+                return new ProductStatistics(this);
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,132 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.dto.DashboardSummaryDTO;
+import de.hirthe.gefrierschrankapp.event.ProductChangeEvent;
+import de.hirthe.gefrierschrankapp.event.ProductGroupChangeEvent;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the product statistics as a snapshot of aggregate counts. The snapshot is
+ * recalculated after products were written and when the date changes, because expiry
+ * buckets are relative to today; every other call returns it without a query.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductStatisticsService {
+
+    private final ProductRepository productRepository;
+    private final ProductExpiryIndex productExpiryIndex;
+    private final PlatformTransactionManager transactionManager;
+
+    // Guarded by this
+    private ProductService.ProductStatistics snapshot;
+    private LocalDate snapshotDate;
+    private long snapshotGeneration;
+    private long generation;
+
+    public ProductService.ProductStatistics getStatistics() {
+        LocalDate today = LocalDate.now();
+        long startGeneration;
+
+        synchronized (this) {
+            if (snapshot != null && snapshotGeneration == generation && today.equals(snapshotDate)) {
+                return snapshot;
+            }
+            startGeneration = generation;
+        }
+
+        // Queried outside the lock so writers invalidating the snapshot are never blocked
+        ProductService.ProductStatistics statistics = calculate(today);
+
+        synchronized (this) {
+            // A write that committed while counting makes this result stale already
+            if (startGeneration == generation) {
+                snapshot = statistics;
+                snapshotDate = today;
+                snapshotGeneration = startGeneration;
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Runs after the writing transaction has finished, so the next calculation sees the change.
+     * Rolled back transactions invalidate too, a snapshot may have been taken inside them.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onProductChange(ProductChangeEvent event) {
+        invalidate();
+    }
+
+    /**
+     * Products are counted per category and location name
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onGroupChange(ProductGroupChangeEvent event) {
+        invalidate();
+    }
+
+    public synchronized void invalidate() {
+        generation++;
+    }
+
+    /**
+     * Products move between expiry buckets at midnight without being written
+     */
+    @Scheduled(cron = "0 0 0 * * *")
+    public void refreshAtMidnight() {
+        invalidate();
+        getStatistics();
+        log.debug("Product statistics refreshed for the new day");
+    }
+
+    private ProductService.ProductStatistics calculate(LocalDate today) {
+        log.debug("Calculating product statistics");
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return transaction.execute(status -> {
+            // Expiry buckets come from the index, only the group counts are queried
+            ProductRepository.ExpiryCounts counts = productExpiryIndex.countByExpiry(
+                    today, today.plusDays(3), today.plusDays(7), today.plusDays(14));
+
+            long expired = valueOf(counts.getExpired());
+            long expiringSoon = valueOf(counts.getExpiringWithin7Days());
+
+            return ProductService.ProductStatistics.builder()
+                    .totalProducts(counts.getTotal())
+                    .expiredProducts(expired)
+                    .expiringSoon(expiringSoon)
+                    .expiringWithin3Days(valueOf(counts.getExpiringWithin3Days()))
+                    .expiringWithin14Days(valueOf(counts.getExpiringWithin14Days()))
+                    .freshProducts(counts.getTotal() - expired - expiringSoon)
+                    .withoutExpirationDate(valueOf(counts.getWithoutExpirationDate()))
+                    .productsByCategory(toGroupCounts(productRepository.countByCategory()))
+                    .productsByLocation(toGroupCounts(productRepository.countByLocation()))
+                    .build();
+        });
+    }
+
+    private List<DashboardSummaryDTO.GroupCount> toGroupCounts(List<ProductRepository.GroupCount> groups) {
+        return groups.stream()
+                .map(group -> new DashboardSummaryDTO.GroupCount(group.getId(), group.getName(), group.getProductCount()))
+                .collect(Collectors.toList());
+    }
+
+    private static long valueOf(Long sum) {
+        return sum != null ? sum : 0;
+    }
+}
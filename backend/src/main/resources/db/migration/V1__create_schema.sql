@@ -0,0 +1,74 @@
+-- Initial schema, previously generated by Hibernate on every start
+
+CREATE TABLE categories (
+    id                   BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name                 VARCHAR(100) NOT NULL,
+    color                VARCHAR(7),
+    default_storage_days INTEGER,
+    description          VARCHAR(500),
+    icon                 VARCHAR(100),
+    created_at           TIMESTAMP(6) NOT NULL,
+    updated_at           TIMESTAMP(6),
+    CONSTRAINT uk_categories_name UNIQUE (name)
+);
+
+CREATE TABLE locations (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name            VARCHAR(100) NOT NULL,
+    description     VARCHAR(500),
+    freezer_section VARCHAR(50),
+    sort_order      INTEGER,
+    created_at      TIMESTAMP(6) NOT NULL,
+    updated_at      TIMESTAMP(6)
+);
+
+CREATE TABLE products (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name            VARCHAR(200) NOT NULL,
+    category_id     BIGINT,
+    location_id     BIGINT,
+    quantity        NUMERIC(10, 2) NOT NULL,
+    unit            VARCHAR(20),
+    frozen_date     DATE NOT NULL,
+    expiration_date DATE,
+    notes           VARCHAR(1000),
+    image_url       VARCHAR(500),
+    barcode         VARCHAR(50),
+    user_id         BIGINT,
+    created_at      TIMESTAMP(6) NOT NULL,
+    updated_at      TIMESTAMP(6)
+);
+
+CREATE TABLE restore_checkpoints (
+    id                  VARCHAR(36) NOT NULL PRIMARY KEY,
+    status              VARCHAR(20) NOT NULL,
+    backup_timestamp    VARCHAR(30),
+    products_processed  INTEGER NOT NULL,
+    category_id_mapping CLOB,
+    location_id_mapping CLOB,
+    stats               CLOB,
+    created_at          TIMESTAMP(6) NOT NULL,
+    updated_at          TIMESTAMP(6)
+);
+
+-- Product indexes follow the filters and sort orders of ProductRepository. The
+-- foreign key columns lead the category and location indexes, which also serve
+-- the expiry order within a category or location.
+
+-- Category filter, products of a category by expiry
+CREATE INDEX idx_products_category_expiration ON products (category_id, expiration_date);
+-- Location filter, products of a location by expiry
+CREATE INDEX idx_products_location_expiration ON products (location_id, expiration_date);
+-- Expired and expiring products, next expiring products
+CREATE INDEX idx_products_expiration_date ON products (expiration_date);
+-- Products of a user, newest first
+CREATE INDEX idx_products_user_created ON products (user_id, created_at);
+-- Sort orders of the product list and its keyset slices
+CREATE INDEX idx_products_created_at ON products (created_at);
+CREATE INDEX idx_products_frozen_date ON products (frozen_date);
+CREATE INDEX idx_products_name ON products (name);
+
+ALTER TABLE products ADD CONSTRAINT fk_products_category
+    FOREIGN KEY (category_id) REFERENCES categories (id);
+ALTER TABLE products ADD CONSTRAINT fk_products_location
+    FOREIGN KEY (location_id) REFERENCES locations (id);
@@ -0,0 +1,2 @@
+-- Barcode filter of the product list
+CREATE INDEX idx_products_barcode ON products (barcode);
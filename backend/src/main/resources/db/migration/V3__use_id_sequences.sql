@@ -0,0 +1,14 @@
+-- Ids come from pooled sequences instead of identity columns, so Hibernate can batch
+-- inserts. Each sequence continues after the highest existing id.
+
+CREATE SEQUENCE categories_seq START WITH 1 INCREMENT BY ${id-allocation-size};
+ALTER SEQUENCE categories_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 1 FROM categories);
+ALTER TABLE categories ALTER COLUMN id DROP IDENTITY;
+
+CREATE SEQUENCE locations_seq START WITH 1 INCREMENT BY ${id-allocation-size};
+ALTER SEQUENCE locations_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 1 FROM locations);
+ALTER TABLE locations ALTER COLUMN id DROP IDENTITY;
+
+CREATE SEQUENCE products_seq START WITH 1 INCREMENT BY ${id-allocation-size};
+ALTER SEQUENCE products_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 1 FROM products);
+ALTER TABLE products ALTER COLUMN id DROP IDENTITY;
@@ -0,0 +1,2 @@
+-- Optimistic locking of product edits, exposed to clients as the ETag
+ALTER TABLE products ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
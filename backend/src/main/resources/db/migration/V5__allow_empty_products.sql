@@ -0,0 +1,2 @@
+-- Consuming can leave a product with nothing left, but never with less than nothing
+ALTER TABLE products ADD CONSTRAINT chk_products_quantity CHECK (quantity >= 0);
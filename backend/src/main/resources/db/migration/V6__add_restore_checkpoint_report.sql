@@ -0,0 +1,3 @@
+-- Conflicts and errors of a streaming import, reported again when it is resumed
+ALTER TABLE restore_checkpoints ADD COLUMN conflicts CLOB;
+ALTER TABLE restore_checkpoints ADD COLUMN errors CLOB;
@@ -0,0 +1,6 @@
+-- Runs after every migrate: applies a changed app.id.allocation-size to the id sequences.
+-- Hibernate reads the increment from the database when it starts.
+
+ALTER SEQUENCE categories_seq INCREMENT BY ${id-allocation-size};
+ALTER SEQUENCE locations_seq INCREMENT BY ${id-allocation-size};
+ALTER SEQUENCE products_seq INCREMENT BY ${id-allocation-size};
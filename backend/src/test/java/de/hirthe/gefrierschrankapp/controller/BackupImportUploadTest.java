@@ -0,0 +1,145 @@
+package de.hirthe.gefrierschrankapp.controller;
+
+import de.hirthe.gefrierschrankapp.entity.Category;
+import de.hirthe.gefrierschrankapp.entity.Location;
+import de.hirthe.gefrierschrankapp.entity.Product;
+import de.hirthe.gefrierschrankapp.repository.CategoryRepository;
+import de.hirthe.gefrierschrankapp.repository.LocationRepository;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import de.hirthe.gefrierschrankapp.service.BackupArchiveService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Backup imports go through the real servlet container, whose multipart limits apply
+ * before the restore code sees the upload
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class BackupImportUploadTest {
+
+    private static final int PADDING_SIZE = 16 * 1024 * 1024;
+    private static final String BOUNDARY = "backup-upload-boundary";
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Autowired
+    private BackupArchiveService backupArchiveService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+
+        Category category = categoryRepository.save(Category.builder().name("Upload Category").build());
+        Location location = locationRepository.save(Location.builder().name("Upload Location").sortOrder(1).build());
+        productRepository.save(Product.builder()
+                .name("Upload Product")
+                .category(category)
+                .location(location)
+                .quantity(BigDecimal.ONE)
+                .frozenDate(LocalDate.now())
+                .build());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        locationRepository.deleteAll();
+    }
+
+    @Test
+    void testImportsArchiveLargerThanTheImageUploadLimit() throws Exception {
+        // Given - an exported archive with 16MB of incompressible data next to the backup
+        byte[] archive = withPadding(export());
+        assertTrue(archive.length > 15 * 1024 * 1024);
+        productRepository.deleteAll();
+
+        // When
+        HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+                        .uri(URI.create("http://localhost:" + port + "/api/backup/import?conflictResolution=SKIP"))
+                        .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(multipart("backup.zip", archive)))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        // Then
+        assertEquals(200, response.statusCode(), response.body());
+        assertEquals(1, productRepository.count());
+    }
+
+    private byte[] export() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        backupArchiveService.writeZip(out, false, false);
+        return out.toByteArray();
+    }
+
+    private static byte[] withPadding(byte[] archive) throws Exception {
+        byte[] padding = new byte[PADDING_SIZE];
+        new Random(42).nextBytes(padding);
+        CRC32 crc = new CRC32();
+        crc.update(padding);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(archive));
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                zip.putNextEntry(new ZipEntry(entry.getName()));
+                in.transferTo(zip);
+                zip.closeEntry();
+            }
+
+            ZipEntry paddingEntry = new ZipEntry("padding.bin");
+            paddingEntry.setMethod(ZipEntry.STORED);
+            paddingEntry.setSize(padding.length);
+            paddingEntry.setCrc(crc.getValue());
+            zip.putNextEntry(paddingEntry);
+            zip.write(padding);
+            zip.closeEntry();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] multipart(String filename, byte[] content) throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: application/zip\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(content);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+}
@@ -0,0 +1,139 @@
+package de.hirthe.gefrierschrankapp.controller;
+
+import de.hirthe.gefrierschrankapp.service.ImageCache;
+import de.hirthe.gefrierschrankapp.service.ImageService;
+import de.hirthe.gefrierschrankapp.service.ImageVariantGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ImageController.class)
+@ActiveProfiles("test")
+class ImageControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private ImageService imageService;
+
+    @TempDir
+    Path tempDir;
+
+    private Path thumbnail;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        thumbnail = tempDir.resolve("image.jpg");
+        Files.writeString(thumbnail, "0123456789");
+
+        when(imageService.getImageResource("image.jpg", ImageService.ImageSize.THUMBNAIL))
+                .thenReturn(new ImageCache.CachedImage(Files.readAllBytes(thumbnail), Files.getLastModifiedTime(thumbnail).toMillis()));
+        when(imageService.getImageContentType("image.jpg")).thenReturn("image/jpeg");
+        when(imageService.resolveAvailableSize(anyString(), any())).thenAnswer(invocation -> invocation.getArgument(1));
+    }
+
+    @Test
+    @WithMockUser
+    void getImage_ShouldReturnImageWithValidators() throws Exception {
+        mockMvc.perform(get("/api/images/image.jpg").param("size", "thumbnail"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/jpeg"))
+                .andExpect(content().string("0123456789"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"image.jpg-thumbnail\""))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED));
+    }
+
+    @Test
+    @WithMockUser
+    void getImage_WithMatchingETag_ShouldReturnNotModified() throws Exception {
+        mockMvc.perform(get("/api/images/image.jpg").param("size", "thumbnail")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"image.jpg-thumbnail\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @WithMockUser
+    void getImage_WithIfModifiedSince_ShouldReturnNotModified() throws Exception {
+        MvcResult first = mockMvc.perform(get("/api/images/image.jpg").param("size", "thumbnail"))
+                .andReturn();
+
+        mockMvc.perform(get("/api/images/image.jpg").param("size", "thumbnail")
+                        .header(HttpHeaders.IF_MODIFIED_SINCE, first.getResponse().getHeader(HttpHeaders.LAST_MODIFIED)))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @WithMockUser
+    void getImage_WithRange_ShouldReturnPartialContent() throws Exception {
+        mockMvc.perform(get("/api/images/image.jpg").param("size", "thumbnail")
+                        .header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(content().string("2345"));
+    }
+
+    @Test
+    @WithMockUser
+    void getImage_WhileVariantIsPending_ShouldServeOriginalWithoutCaching() throws Exception {
+        when(imageService.resolveAvailableSize("image.jpg", ImageService.ImageSize.MEDIUM))
+                .thenReturn(ImageService.ImageSize.ORIGINAL);
+        when(imageService.getImageResource("image.jpg", ImageService.ImageSize.ORIGINAL))
+                .thenReturn(new ImageCache.CachedImage("original".getBytes(), 0));
+
+        mockMvc.perform(get("/api/images/image.jpg").param("size", "medium"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("original"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"image.jpg-original\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"));
+    }
+
+    @Test
+    @WithMockUser
+    void uploadImage_ShouldReportVariantStatus() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "photo.jpg", "image/jpeg", "0123456789".getBytes());
+        when(imageService.uploadImage(any())).thenReturn(ImageService.ImageUploadResult.builder()
+                .filename("upload.jpg")
+                .size(10)
+                .contentType("image/jpeg")
+                .width(800)
+                .height(600)
+                .variantStatus(ImageVariantGenerator.VariantStatus.PENDING)
+                .build());
+
+        mockMvc.perform(multipart("/api/images/upload").file(file).with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.filename").value("upload.jpg"))
+                .andExpect(jsonPath("$.variantStatus").value("PENDING"));
+    }
+
+    @Test
+    @WithMockUser
+    void getImage_WhenMissing_ShouldReturnNotFound() throws Exception {
+        when(imageService.getImageResource(eq("missing.jpg"), any())).thenThrow(new IOException("Image not found"));
+
+        mockMvc.perform(get("/api/images/missing.jpg"))
+                .andExpect(status().isNotFound());
+    }
+}
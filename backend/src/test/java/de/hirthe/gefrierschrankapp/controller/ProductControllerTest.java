@@ -1,10 +1,15 @@
 package de.hirthe.gefrierschrankapp.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import de.hirthe.gefrierschrankapp.dto.ConsumeResult;
 import de.hirthe.gefrierschrankapp.dto.CreateProductRequest;
+import de.hirthe.gefrierschrankapp.dto.CursorPage;
+import de.hirthe.gefrierschrankapp.dto.ProductBatchResult;
+import de.hirthe.gefrierschrankapp.dto.ProductDTO;
 import de.hirthe.gefrierschrankapp.entity.Category;
 import de.hirthe.gefrierschrankapp.entity.Location;
 import de.hirthe.gefrierschrankapp.entity.Product;
+import de.hirthe.gefrierschrankapp.repository.ProductFilter;
 import de.hirthe.gefrierschrankapp.service.ProductService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,7 +18,9 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
@@ -21,6 +28,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.*;
@@ -43,6 +51,7 @@ class ProductControllerTest {
     private ProductService productService;
     
     private Product testProduct;
+    private ProductDTO testProductDTO;
     private CreateProductRequest createRequest;
     
     @BeforeEach
@@ -72,6 +81,17 @@ class ProductControllerTest {
                 .notes("Test notes")
                 .build();
         
+        testProductDTO = ProductDTO.builder()
+                .id(1L)
+                .name("Test Product")
+                .category(ProductDTO.CategoryDTO.builder().id(1L).name("Test Category").build())
+                .location(ProductDTO.LocationDTO.builder().id(1L).name("Test Location").build())
+                .quantity(new BigDecimal("2.5"))
+                .unit("kg")
+                .frozenDate(LocalDate.now())
+                .expirationDate(LocalDate.now().plusDays(90))
+                .build();
+        
         createRequest = new CreateProductRequest();
         createRequest.setName("New Product");
         createRequest.setCategoryId(1L);
@@ -85,8 +105,8 @@ class ProductControllerTest {
     @WithMockUser
     void shouldGetAllProducts() throws Exception {
         // Given
-        Page<Product> productPage = new PageImpl<>(List.of(testProduct));
-        when(productService.getProductsWithFilters(any(), any(), any(), any()))
+        Page<ProductDTO> productPage = new PageImpl<>(List.of(testProductDTO));
+        when(productService.getProductListWithFilters(any(), any()))
                 .thenReturn(productPage);
         
         // When & Then
@@ -100,6 +120,61 @@ class ProductControllerTest {
                 .andExpect(jsonPath("$.content[0].unit").value("kg"));
     }
     
+    @Test
+    @WithMockUser
+    void shouldBindProductListFilters() throws Exception {
+        // Given
+        when(productService.getProductListWithFilters(argThat(filter ->
+                filter.getCategoryIds().equals(List.of(1L, 2L))
+                        && filter.getExpiryStatus() == ProductFilter.ExpiryStatus.EXPIRING
+                        && filter.getFrozenFrom().equals(LocalDate.of(2025, 1, 1))
+                        && filter.getBarcode() == null), any()))
+                .thenReturn(new PageImpl<>(List.of(testProductDTO)));
+        
+        // When & Then
+        mockMvc.perform(get("/api/products")
+                        .param("categoryId", "1", "2")
+                        .param("status", "expiring")
+                        .param("frozenFrom", "2025-01-01")
+                        .param("barcode", ""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].name").value("Test Product"));
+        
+        mockMvc.perform(get("/api/products")
+                        .param("status", "rotten"))
+                .andExpect(status().isBadRequest());
+    }
+    
+    @Test
+    @WithMockUser
+    void shouldGetProductSliceWithCursor() throws Exception {
+        // Given
+        CursorPage<ProductDTO> slice = CursorPage.<ProductDTO>builder()
+                .content(List.of(testProductDTO))
+                .nextCursor("next")
+                .hasNext(true)
+                .limit(1)
+                .build();
+        when(productService.getProductSlice(any(), eq("name"), eq("asc"), eq(""), eq(1)))
+                .thenReturn(slice);
+        when(productService.getProductSlice(any(), any(), any(), eq("broken"), anyInt()))
+                .thenThrow(new IllegalArgumentException("Invalid cursor"));
+        
+        // When & Then
+        mockMvc.perform(get("/api/products")
+                        .param("cursor", "")
+                        .param("limit", "1")
+                        .param("sortBy", "name")
+                        .param("sortDir", "asc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].name").value("Test Product"))
+                .andExpect(jsonPath("$.nextCursor").value("next"))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+        
+        mockMvc.perform(get("/api/products").param("cursor", "broken"))
+                .andExpect(status().isBadRequest());
+    }
+    
     @Test
     @WithMockUser
     void shouldGetProductById() throws Exception {
@@ -169,12 +244,83 @@ class ProductControllerTest {
                 .andExpect(status().isBadRequest());
     }
     
+    @Test
+    @WithMockUser
+    void shouldConsumeProduct() throws Exception {
+        // Given
+        when(productService.consumeProduct(1L, new BigDecimal("0.5"), true))
+                .thenReturn(new ConsumeResult(1L, new BigDecimal("0.5"), new BigDecimal("2.0"), false));
+        when(productService.consumeProduct(1L, BigDecimal.ONE, false))
+                .thenThrow(new IllegalStateException("Less than 1 left of product 1"));
+        when(productService.consumeProduct(99L, BigDecimal.ONE, false))
+                .thenThrow(new IllegalArgumentException("Product not found with id: 99"));
+        
+        // When & Then
+        mockMvc.perform(post("/api/products/1/consume")
+                        .with(csrf())
+                        .param("amount", "0.5")
+                        .param("deleteWhenEmpty", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.remaining").value(2.0));
+        
+        mockMvc.perform(post("/api/products/1/consume").with(csrf()))
+                .andExpect(status().isConflict());
+        
+        mockMvc.perform(post("/api/products/99/consume").with(csrf()))
+                .andExpect(status().isNotFound());
+        
+        mockMvc.perform(post("/api/products/1/consume").with(csrf()).param("amount", "0"))
+                .andExpect(status().isBadRequest());
+    }
+    
+    @Test
+    @WithMockUser
+    void shouldMoveProductsInBatch() throws Exception {
+        // Given
+        ProductBatchResult result = new ProductBatchResult();
+        result.addSuccess(0, 1L, null);
+        result.addFailure(1, 99L, "Product not found with id: 99");
+        when(productService.moveProducts(List.of(1L, 99L), 2L)).thenReturn(result);
+        when(productService.moveProducts(List.of(1L), 404L))
+                .thenThrow(new IllegalArgumentException("Location not found with id: 404"));
+        
+        // When & Then
+        mockMvc.perform(patch("/api/products/batch/location")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productIds\": [1, 99], \"locationId\": 2}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded").value(1))
+                .andExpect(jsonPath("$.results[1].error").value("Product not found with id: 99"));
+        
+        mockMvc.perform(patch("/api/products/batch/location")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productIds\": [1], \"locationId\": 404}"))
+                .andExpect(status().isBadRequest());
+        
+        mockMvc.perform(delete("/api/products/batch")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productIds\": []}"))
+                .andExpect(status().isBadRequest());
+    }
+    
+    @Test
+    @WithMockUser
+    void shouldRejectNullEntriesInCreateBatch() throws Exception {
+        mockMvc.perform(post("/api/products/batch")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + objectMapper.writeValueAsString(createRequest) + ", null]"))
+                .andExpect(status().isBadRequest());
+    }
+    
     @Test
     @WithMockUser
     void shouldUpdateProduct() throws Exception {
         // Given
-        when(productService.productExists(1L)).thenReturn(true);
-        when(productService.updateProduct(eq(1L), any(Product.class))).thenReturn(testProduct);
+        when(productService.updateProduct(eq(1L), any(Product.class), isNull())).thenReturn(testProduct);
         
         // When & Then
         mockMvc.perform(put("/api/products/1")
@@ -189,7 +335,8 @@ class ProductControllerTest {
     @WithMockUser
     void shouldReturnNotFoundWhenUpdatingNonExistentProduct() throws Exception {
         // Given
-        when(productService.productExists(999L)).thenReturn(false);
+        when(productService.updateProduct(eq(999L), any(Product.class), isNull()))
+                .thenThrow(new IllegalArgumentException("Product not found with id: 999"));
         
         // When & Then
         mockMvc.perform(put("/api/products/999")
@@ -199,6 +346,49 @@ class ProductControllerTest {
                 .andExpect(status().isNotFound());
     }
     
+    @Test
+    @WithMockUser
+    void shouldPatchProductWithETag() throws Exception {
+        // Given
+        testProduct.setVersion(4L);
+        when(productService.patchProduct(eq(1L), eq(Map.of("notes", "Vom Markt")), eq(3L)))
+                .thenReturn(Optional.of(testProduct));
+        when(productService.patchProduct(eq(1L), eq(Map.of("notes", "Vom Markt")), eq(2L)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Product.class, 1L));
+        when(productService.patchProduct(eq(1L), eq(Map.of("quantity", "viel")), isNull()))
+                .thenThrow(new IllegalArgumentException("quantity must be a number"));
+        when(productService.patchProduct(eq(999L), anyMap(), isNull())).thenReturn(Optional.empty());
+        
+        // When & Then
+        mockMvc.perform(patch("/api/products/1")
+                        .with(csrf())
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType("application/merge-patch+json")
+                        .content("{\"notes\": \"Vom Markt\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(jsonPath("$.version").value(4));
+        
+        mockMvc.perform(patch("/api/products/1")
+                        .with(csrf())
+                        .header(HttpHeaders.IF_MATCH, "\"2\"")
+                        .contentType("application/merge-patch+json")
+                        .content("{\"notes\": \"Vom Markt\"}"))
+                .andExpect(status().isPreconditionFailed());
+        
+        mockMvc.perform(patch("/api/products/1")
+                        .with(csrf())
+                        .contentType("application/merge-patch+json")
+                        .content("{\"quantity\": \"viel\"}"))
+                .andExpect(status().isBadRequest());
+        
+        mockMvc.perform(patch("/api/products/999")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"notes\": null}"))
+                .andExpect(status().isNotFound());
+    }
+    
     @Test
     @WithMockUser
     void shouldDeleteProduct() throws Exception {
@@ -225,7 +415,7 @@ class ProductControllerTest {
     @WithMockUser
     void shouldGetProductsExpiringSoon() throws Exception {
         // Given
-        when(productService.getProductsExpiringSoon(7)).thenReturn(List.of(testProduct));
+        when(productService.getExpiringSoonProductList(7)).thenReturn(List.of(testProductDTO));
         
         // When & Then
         mockMvc.perform(get("/api/products/expiring-soon")
@@ -239,7 +429,7 @@ class ProductControllerTest {
     @WithMockUser
     void shouldGetExpiredProducts() throws Exception {
         // Given
-        when(productService.getExpiredProducts()).thenReturn(List.of(testProduct));
+        when(productService.getExpiredProductList()).thenReturn(List.of(testProductDTO));
         
         // When & Then
         mockMvc.perform(get("/api/products/expired"))
@@ -248,6 +438,34 @@ class ProductControllerTest {
                 .andExpect(jsonPath("$[0].name").value("Test Product"));
     }
     
+    @Test
+    @WithMockUser
+    void shouldSearchProducts() throws Exception {
+        // Given
+        when(productService.searchProducts("test", true, 100)).thenReturn(List.of(testProductDTO));
+        
+        // When & Then
+        mockMvc.perform(get("/api/products/search")
+                        .param("q", "test")
+                        .param("fuzzy", "true")
+                        .param("limit", "500"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Test Product"));
+    }
+    
+    @Test
+    @WithMockUser
+    void shouldSuggestProductNames() throws Exception {
+        // Given
+        when(productService.suggestProductNames("Hä", 10)).thenReturn(List.of("Hähnchenbrust"));
+        
+        // When & Then
+        mockMvc.perform(get("/api/products/suggest")
+                        .param("prefix", "Hä"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value("Hähnchenbrust"));
+    }
+    
     @Test
     @WithMockUser
     void shouldGetProductStatistics() throws Exception {
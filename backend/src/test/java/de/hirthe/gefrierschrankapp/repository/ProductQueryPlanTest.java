@@ -0,0 +1,235 @@
+package de.hirthe.gefrierschrankapp.repository;
+
+import de.hirthe.gefrierschrankapp.entity.Category;
+import de.hirthe.gefrierschrankapp.entity.Location;
+import de.hirthe.gefrierschrankapp.entity.Product;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs EXPLAIN on the SQL of the repository queries and fails if one of them reads the
+ * whole products table instead of using an index
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "de.hirthe.gefrierschrankapp.repository.ProductQueryPlanTest$SqlCapture")
+@ActiveProfiles("test")
+class ProductQueryPlanTest {
+
+    private static final String PRODUCTS_TABLE_SCAN = "PUBLIC.PRODUCTS.tableScan";
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private Category category;
+    private Category otherCategory;
+    private Location location;
+    private Location otherLocation;
+
+    @BeforeEach
+    void setUp() {
+        category = entityManager.persist(Category.builder().name("Fleisch").build());
+        otherCategory = entityManager.persist(Category.builder().name("Gemüse").build());
+        location = entityManager.persist(Location.builder().name("Oben").sortOrder(1).build());
+        otherLocation = entityManager.persist(Location.builder().name("Unten").sortOrder(2).build());
+
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < 500; i++) {
+            entityManager.persist(Product.builder()
+                    .name("Product " + i)
+                    .category(i % 2 == 0 ? category : otherCategory)
+                    .location(i % 3 == 0 ? location : otherLocation)
+                    .frozenDate(today.minusDays(i % 100))
+                    .expirationDate(i % 10 == 0 ? null : today.plusDays(i % 200 - 50))
+                    .userId((long) (i % 5))
+                    .barcode(i % 4 == 0 ? String.valueOf(400000000000L + i) : null)
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        SqlCapture.STATEMENTS.clear();
+    }
+
+    /**
+     * Not listed because they read every product by design: findAll, findAllWithCategoryAndLocation,
+     * the name search and name filter (substring match, served by ProductSearchIndex), the image
+     * reference queries, the count aggregates and keyset slices ordered by the nullable
+     * expiration date.
+     */
+    @Test
+    void testRepositoryQueriesUseIndexes() throws SQLException {
+        LocalDate today = LocalDate.now();
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        queries.put("findByCategoryId", () -> productRepository.findByCategoryId(category.getId(), PageRequest.of(0, 20)));
+        queries.put("findByLocationId", () -> productRepository.findByLocationId(location.getId(), PageRequest.of(0, 20)));
+        queries.put("findByUserId", () -> productRepository.findByUserId(1L,
+                PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createdAt"))));
+        queries.put("findProductsExpiringBefore", () -> productRepository.findProductsExpiringBefore(today.plusDays(7)));
+        queries.put("findExpiredProducts", () -> productRepository.findExpiredProducts(today));
+        queries.put("findProductsExpiringWithinDays", () -> productRepository.findProductsExpiringWithinDays(today, today.plusDays(7)));
+        queries.put("findBatchAfterId", () -> productRepository.findBatchAfterId(0L, PageRequest.of(0, 100)));
+        queries.put("findSearchableTextAfterId", () -> productRepository.findSearchableTextAfterId(0L, PageRequest.of(0, 100)));
+        queries.put("findSearchableTextByIds", () -> productRepository.findSearchableTextByIds(List.of(1L, 2L)));
+        queries.put("findDTOsByIds", () -> productRepository.findDTOsByIds(List.of(1L, 2L)));
+        queries.put("findIdsOldestFirst", () -> productRepository.findIdsOldestFirst("Erbsen", BigDecimal.ONE, PageRequest.of(0, 10)));
+        queries.put("existsByName", () -> productRepository.existsByName("Erbsen"));
+        queries.put("countByCategoryId", () -> productRepository.countByCategoryId(category.getId()));
+        queries.put("countByLocationId", () -> productRepository.countByLocationId(location.getId()));
+        queries.put("findByFilter", () -> productRepository.findByFilter(
+                ProductFilter.builder().locationIds(List.of(location.getId())).build(), PageRequest.of(0, 20)));
+        queries.put("findDTOsByFilter", () -> productRepository.findDTOsByFilter(
+                ProductFilter.builder().categoryIds(List.of(category.getId())).build(),
+                PageRequest.of(0, 20, Sort.by("expirationDate"))));
+        queries.put("findSlice first page", () -> productRepository.findSlice(ProductFilter.none(),
+                ProductKeyset.first(ProductKeyset.SortField.CREATED_AT, false), 20));
+        queries.put("findSlice by created", () -> productRepository.findSlice(ProductFilter.none(),
+                new ProductKeyset(ProductKeyset.SortField.CREATED_AT, false, LocalDateTime.now(), 10L), 20));
+        queries.put("findSlice by frozen", () -> productRepository.findSlice(ProductFilter.none(),
+                new ProductKeyset(ProductKeyset.SortField.FROZEN_DATE, true, today, 10L), 20));
+        queries.put("findSlice by name", () -> productRepository.findSlice(ProductFilter.none(),
+                new ProductKeyset(ProductKeyset.SortField.NAME, true, "Product 1", 10L), 20));
+        queries.put("findSlice of category", () -> productRepository.findSlice(
+                ProductFilter.builder().categoryIds(List.of(category.getId())).build(),
+                ProductKeyset.first(ProductKeyset.SortField.CREATED_AT, false), 20));
+
+        List<String> tableScans = new ArrayList<>();
+        for (Map.Entry<String, Runnable> query : queries.entrySet()) {
+            SqlCapture.STATEMENTS.clear();
+            query.getValue().run();
+            assertThat(SqlCapture.STATEMENTS).as(query.getKey()).isNotEmpty();
+            for (String sql : new ArrayList<>(SqlCapture.STATEMENTS)) {
+                String plan = explain(sql);
+                if (plan.contains(PRODUCTS_TABLE_SCAN)) {
+                    tableScans.add(query.getKey() + ": " + plan);
+                }
+            }
+        }
+        assertThat(tableScans).isEmpty();
+    }
+
+    /**
+     * Every filter of the product list uses an index on its own and together with any other
+     * filter. The name filter (substring match) and the fresh status (includes products without
+     * expiration date) can't use one and are only checked together with a filter that can.
+     */
+    @Test
+    void testEveryFilterCombinationUsesAnIndex() throws SQLException {
+        LocalDate today = LocalDate.now();
+        Map<String, Consumer<ProductFilter.ProductFilterBuilder>> indexed = new LinkedHashMap<>();
+        indexed.put("category: one", filter -> filter.categoryIds(List.of(category.getId())));
+        indexed.put("category: several", filter -> filter.categoryIds(List.of(category.getId(), otherCategory.getId())));
+        indexed.put("location: several", filter -> filter.locationIds(List.of(location.getId(), otherLocation.getId())));
+        indexed.put("barcode", filter -> filter.barcode("400000000042"));
+        indexed.put("expires: from", filter -> filter.expiresFrom(today.plusDays(30)));
+        indexed.put("expires: between", filter -> filter.expiresFrom(today).expiresTo(today.plusDays(30)));
+        indexed.put("frozen: between", filter -> filter.frozenFrom(today.minusDays(30)).frozenTo(today));
+        indexed.put("status: expired", filter -> filter.expiryStatus(ProductFilter.ExpiryStatus.EXPIRED));
+        indexed.put("status: expiring", filter -> filter.expiryStatus(ProductFilter.ExpiryStatus.EXPIRING));
+        Map<String, Consumer<ProductFilter.ProductFilterBuilder>> unindexed = new LinkedHashMap<>();
+        unindexed.put("name", filter -> filter.name("duct 4"));
+        unindexed.put("status: fresh", filter -> filter.expiryStatus(ProductFilter.ExpiryStatus.FRESH));
+
+        Map<String, ProductFilter> combinations = new LinkedHashMap<>();
+        List<String> names = new ArrayList<>(indexed.keySet());
+        names.addAll(unindexed.keySet());
+        Map<String, Consumer<ProductFilter.ProductFilterBuilder>> all = new LinkedHashMap<>(indexed);
+        all.putAll(unindexed);
+        for (int i = 0; i < names.size(); i++) {
+            if (indexed.containsKey(names.get(i))) {
+                combinations.put(names.get(i), filter(all.get(names.get(i))));
+            }
+            for (int j = i + 1; j < names.size(); j++) {
+                boolean sameField = field(names.get(i)).equals(field(names.get(j)));
+                if (!sameField && (indexed.containsKey(names.get(i)) || indexed.containsKey(names.get(j)))) {
+                    combinations.put(names.get(i) + " + " + names.get(j),
+                            filter(all.get(names.get(i)).andThen(all.get(names.get(j)))));
+                }
+            }
+        }
+
+        List<String> tableScans = new ArrayList<>();
+        for (Map.Entry<String, ProductFilter> combination : combinations.entrySet()) {
+            SqlCapture.STATEMENTS.clear();
+            // The second page of single rows always runs the count query as well
+            productRepository.findDTOsByFilter(combination.getValue(), PageRequest.of(1, 1));
+            assertThat(SqlCapture.STATEMENTS).as(combination.getKey()).hasSize(2);
+            for (String sql : new ArrayList<>(SqlCapture.STATEMENTS)) {
+                String plan = explain(sql);
+                if (plan.contains(PRODUCTS_TABLE_SCAN)) {
+                    tableScans.add(combination.getKey() + ": " + plan);
+                }
+            }
+        }
+        assertThat(tableScans).isEmpty();
+    }
+
+    private String field(String combinationName) {
+        return combinationName.split(":")[0];
+    }
+
+    private ProductFilter filter(Consumer<ProductFilter.ProductFilterBuilder> filters) {
+        ProductFilter.ProductFilterBuilder filter = ProductFilter.builder();
+        filters.accept(filter);
+        return filter.build();
+    }
+
+    private String explain(String sql) throws SQLException {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            int parameters = statement.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= parameters; i++) {
+                statement.setObject(i, null);
+            }
+            try (ResultSet plan = statement.executeQuery()) {
+                StringBuilder text = new StringBuilder();
+                while (plan.next()) {
+                    text.append(plan.getString(1));
+                }
+                return text.toString();
+            }
+        }
+    }
+
+    /**
+     * Records the SQL Hibernate sends to the database
+     */
+    public static class SqlCapture implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package de.hirthe.gefrierschrankapp.repository;
 
+import de.hirthe.gefrierschrankapp.dto.ProductDTO;
 import de.hirthe.gefrierschrankapp.entity.Category;
 import de.hirthe.gefrierschrankapp.entity.Location;
 import de.hirthe.gefrierschrankapp.entity.Product;
@@ -15,6 +16,7 @@ import org.springframework.test.context.ActiveProfiles;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -176,27 +178,74 @@ class ProductRepositoryTest {
     void shouldFindProductsWithFilters() {
         // When - Search with category filter
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Product> products = productRepository.findByFilters(
-                testCategory.getId(), null, null, pageable);
+        Page<Product> products = productRepository.findByFilter(
+                ProductFilter.builder().categoryIds(List.of(testCategory.getId())).build(), pageable);
         
         // Then
         assertThat(products.getContent()).hasSize(1);
         
         // When - Search with location filter
-        products = productRepository.findByFilters(
-                null, testLocation.getId(), null, pageable);
+        products = productRepository.findByFilter(
+                ProductFilter.builder().locationIds(List.of(testLocation.getId())).build(), pageable);
         
         // Then
         assertThat(products.getContent()).hasSize(1);
         
         // When - Search with name filter
-        products = productRepository.findByFilters(
-                null, null, "test", pageable);
+        products = productRepository.findByFilter(
+                ProductFilter.builder().name("test").build(), pageable);
         
         // Then
         assertThat(products.getContent()).hasSize(1);
     }
     
+    @Test
+    void shouldCombineFilters() {
+        // Given
+        Category other = entityManager.persistAndFlush(Category.builder().name("Other Category").build());
+        persistProduct("Expired", LocalDate.now().minusDays(1));
+        persistProduct("Expiring", LocalDate.now().plusDays(7));
+        persistProduct("No date", null);
+        Product scanned = entityManager.persistAndFlush(Product.builder()
+                .name("Scanned")
+                .category(other)
+                .quantity(BigDecimal.ONE)
+                .unit("pieces")
+                .frozenDate(LocalDate.now().minusDays(30))
+                .barcode("4001234567890")
+                .build());
+        Pageable pageable = PageRequest.of(0, 10);
+        
+        // When / Then - several categories
+        assertThat(names(ProductFilter.builder()
+                .categoryIds(List.of(testCategory.getId(), other.getId())).build(), pageable)).hasSize(5);
+        
+        // When / Then - expiry status
+        assertThat(names(ProductFilter.builder()
+                .expiryStatus(ProductFilter.ExpiryStatus.EXPIRED).build(), pageable)).containsExactly("Expired");
+        assertThat(names(ProductFilter.builder()
+                .expiryStatus(ProductFilter.ExpiryStatus.EXPIRING).build(), pageable)).containsExactly("Expiring");
+        assertThat(names(ProductFilter.builder()
+                .expiryStatus(ProductFilter.ExpiryStatus.FRESH).build(), pageable))
+                .containsExactlyInAnyOrder("Test Product", "No date", "Scanned");
+        
+        // When / Then - date ranges include both ends
+        assertThat(names(ProductFilter.builder()
+                .expiresFrom(LocalDate.now().minusDays(1)).expiresTo(LocalDate.now().plusDays(7)).build(), pageable))
+                .containsExactlyInAnyOrder("Expired", "Expiring");
+        assertThat(names(ProductFilter.builder()
+                .frozenTo(LocalDate.now().minusDays(10)).build(), pageable))
+                .containsExactlyInAnyOrder("Test Product", "Scanned");
+        
+        // When / Then - barcode together with a category
+        assertThat(names(ProductFilter.builder()
+                .barcode(scanned.getBarcode()).categoryIds(List.of(other.getId())).build(), pageable))
+                .containsExactly("Scanned");
+        assertThat(names(ProductFilter.builder()
+                .barcode(scanned.getBarcode()).categoryIds(List.of(testCategory.getId())).build(), pageable))
+                .isEmpty();
+    }
+    
     @Test
     void shouldFindAllWithCategoryAndLocation() {
         // When
@@ -223,4 +272,74 @@ class ProductRepositoryTest {
         assertThat(categoryCount).isEqualTo(1);
         assertThat(locationCount).isEqualTo(1);
     }
-}
\ No newline at end of file
+    
+    @Test
+    void shouldCountImageReferences() {
+        // Given
+        Product product = productRepository.findById(testProduct.getId()).orElseThrow();
+        product.setImageUrl("/api/images/abc.png?size=thumbnail");
+        productRepository.saveAndFlush(product);
+        
+        // When / Then
+        assertThat(productRepository.countImageReferences("abc.png")).isEqualTo(1);
+        assertThat(productRepository.countImageReferences("bc.png")).isZero();
+        assertThat(productRepository.countImageReferences("other.png")).isZero();
+    }
+    
+    @Test
+    void shouldSeekSlicesByExpirationDate() {
+        // Given - ties on the sort key and a product without expiration date
+        persistProduct("Soon", LocalDate.now().plusDays(1));
+        persistProduct("Tie A", LocalDate.now().plusDays(5));
+        persistProduct("Tie B", LocalDate.now().plusDays(5));
+        persistProduct("No date", null);
+        
+        // When - walking the list in slices of two
+        List<String> names = new ArrayList<>();
+        ProductKeyset keyset = ProductKeyset.first(ProductKeyset.SortField.EXPIRATION_DATE, true);
+        List<ProductDTO> slice;
+        do {
+            slice = productRepository.findSlice(ProductFilter.none(), keyset, 2);
+            slice.forEach(product -> names.add(product.getName()));
+            if (!slice.isEmpty()) {
+                ProductDTO last = slice.get(slice.size() - 1);
+                keyset = new ProductKeyset(keyset.getSortField(), true, last.getExpirationDate(), last.getId());
+            }
+        } while (slice.size() == 2);
+        
+        // Then - every product exactly once, products without date last
+        assertThat(names).containsExactly("Soon", "Tie A", "Tie B", "Test Product", "No date");
+    }
+    
+    @Test
+    void shouldSelectProductDTOsWithCategoryAndLocation() {
+        // When
+        ProductFilter filter = ProductFilter.builder().categoryIds(List.of(testCategory.getId())).name("test").build();
+        Page<ProductDTO> page = productRepository.findDTOsByFilter(filter, PageRequest.of(0, 10));
+        
+        // Then
+        assertThat(page.getTotalElements()).isEqualTo(1);
+        ProductDTO dto = page.getContent().get(0);
+        assertThat(dto.getName()).isEqualTo("Test Product");
+        assertThat(dto.getCategory().getName()).isEqualTo("Test Category");
+        assertThat(dto.getLocation().getFreezerSection()).isEqualTo("upper");
+        assertThat(dto.getDaysUntilExpiration()).isEqualTo(80);
+        assertThat(dto.isExpired()).isFalse();
+    }
+    
+    private List<String> names(ProductFilter filter, Pageable pageable) {
+        return productRepository.findDTOsByFilter(filter, pageable).map(ProductDTO::getName).getContent();
+    }
+    
+    private void persistProduct(String name, LocalDate expirationDate) {
+        entityManager.persistAndFlush(Product.builder()
+                .name(name)
+                .category(entityManager.find(Category.class, testCategory.getId()))
+                .location(entityManager.find(Location.class, testLocation.getId()))
+                .quantity(BigDecimal.ONE)
+                .unit("pieces")
+                .frozenDate(LocalDate.now())
+                .expirationDate(expirationDate)
+                .build());
+    }
+}
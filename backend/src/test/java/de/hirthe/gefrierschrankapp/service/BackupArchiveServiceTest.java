@@ -0,0 +1,241 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.dto.BackupDTO;
+import de.hirthe.gefrierschrankapp.dto.RestoreRequest;
+import de.hirthe.gefrierschrankapp.dto.RestoreResult;
+import de.hirthe.gefrierschrankapp.entity.Category;
+import de.hirthe.gefrierschrankapp.entity.Location;
+import de.hirthe.gefrierschrankapp.entity.Product;
+import de.hirthe.gefrierschrankapp.repository.CategoryRepository;
+import de.hirthe.gefrierschrankapp.repository.LocationRepository;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class BackupArchiveServiceTest {
+
+    @Autowired
+    private BackupArchiveService backupArchiveService;
+
+    @Autowired
+    private BackupService backupService;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @TempDir
+    Path uploadDir;
+
+    private Object originalUploadDir;
+
+    private RestoreRequest.RestoreOptions clearOptions;
+
+    @BeforeEach
+    void setUp() {
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        locationRepository.deleteAll();
+
+        Category category = categoryRepository.save(Category.builder()
+                .name("Archive Category")
+                .color("#00FF00")
+                .build());
+        Location location = locationRepository.save(Location.builder()
+                .name("Archive Location")
+                .sortOrder(1)
+                .build());
+        for (int i = 0; i < 3; i++) {
+            productRepository.save(Product.builder()
+                    .name("Archive Product " + i)
+                    .category(category)
+                    .location(location)
+                    .quantity(BigDecimal.ONE)
+                    .unit("Stück")
+                    .frozenDate(LocalDate.now())
+                    .build());
+        }
+
+        clearOptions = RestoreRequest.RestoreOptions.builder()
+                .clearExistingData(true)
+                .conflictResolution(RestoreRequest.ConflictResolution.SKIP)
+                .build();
+
+        originalUploadDir = ReflectionTestUtils.getField(imageService, "uploadDir");
+        ReflectionTestUtils.setField(imageService, "uploadDir", uploadDir.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(imageService, "uploadDir", originalUploadDir);
+    }
+
+    @Test
+    void testRestoreFromZip() throws Exception {
+        // Given
+        byte[] archive = createArchive(null);
+
+        // When
+        RestoreResult result = backupArchiveService.restoreFromZip(new ByteArrayInputStream(archive), clearOptions, null);
+
+        // Then
+        assertTrue(result.isSuccess(), result.getErrors().toString());
+        assertTrue(result.getWarnings().isEmpty(), result.getWarnings().toString());
+        assertEquals(3, result.getStats().getProductsImported());
+        assertEquals(3, productRepository.count());
+    }
+
+    @Test
+    void testRestoreFromZipReportsMetadataMismatch() throws Exception {
+        // Given - metadata.txt claims more products than backup.json contains
+        byte[] archive = createArchive("Categories: 1\nLocations: 1\nProducts: 5\n");
+
+        // When
+        RestoreResult result = backupArchiveService.restoreFromZip(new ByteArrayInputStream(archive), clearOptions, null);
+
+        // Then
+        assertTrue(result.isSuccess());
+        assertEquals(1, result.getWarnings().size());
+        assertTrue(result.getWarnings().get(0).contains("5 products"));
+    }
+
+    @Test
+    void testInspectZip() throws Exception {
+        // Given
+        byte[] archive = createArchive(null);
+        byte[] mismatch = createArchive("Categories: 2\nLocations: 1\nProducts: 3\n");
+
+        // When
+        BackupDTO.BackupMetadata counts = backupArchiveService.inspectZip(new ByteArrayInputStream(archive));
+
+        // Then
+        assertEquals(1, counts.getTotalCategories());
+        assertEquals(1, counts.getTotalLocations());
+        assertEquals(3, counts.getTotalProducts());
+        assertThrows(IllegalArgumentException.class,
+                () -> backupArchiveService.inspectZip(new ByteArrayInputStream(mismatch)));
+    }
+
+    @Test
+    void testRejectsHighlyCompressedEntries() throws Exception {
+        // Given - a few KB of zip that inflate to 16 MB
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bytes)) {
+            zos.putNextEntry(new ZipEntry("padding.bin"));
+            byte[] zeros = new byte[1024 * 1024];
+            for (int i = 0; i < 16; i++) {
+                zos.write(zeros);
+            }
+            zos.closeEntry();
+        }
+
+        // When / Then
+        IOException e = assertThrows(IOException.class,
+                () -> backupArchiveService.inspectZip(new ByteArrayInputStream(bytes.toByteArray())));
+        assertTrue(e.getMessage().contains("compression ratio"));
+    }
+
+    @Test
+    void testZipWithImagesRoundTrip() throws Exception {
+        // Given - two products with identical image content under different names
+        byte[] imageBytes = "not really a jpeg".getBytes(StandardCharsets.UTF_8);
+        Files.write(uploadDir.resolve("a.jpg"), imageBytes);
+        Files.write(uploadDir.resolve("b.jpg"), imageBytes);
+        Files.createDirectories(uploadDir.resolve("thumbnails"));
+        Files.write(uploadDir.resolve("thumbnails").resolve("a.jpg"), "thumb".getBytes(StandardCharsets.UTF_8));
+        List<Product> products = productRepository.findAll();
+        products.get(0).setImageUrl("a.jpg");
+        products.get(1).setImageUrl("/api/images/b.jpg");
+        productRepository.saveAll(products);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        backupArchiveService.writeZip(bytes, true, true);
+
+        // Then - the shared content is stored once, uncompressed, in front of backup.json
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                entries.add(entry.getName());
+                if (entry.getName().startsWith(BackupArchiveService.IMAGE_BLOB_PREFIX)) {
+                    assertEquals(ZipEntry.STORED, entry.getMethod());
+                }
+            }
+        }
+        assertEquals(BackupArchiveService.IMAGE_MANIFEST_ENTRY, entries.get(0));
+        assertEquals(2, entries.stream().filter(e -> e.startsWith(BackupArchiveService.IMAGE_BLOB_PREFIX)).count());
+        assertTrue(entries.indexOf(BackupArchiveService.BACKUP_ENTRY) > entries.indexOf(BackupArchiveService.IMAGE_MANIFEST_ENTRY));
+
+        // Given - a.jpg now holds a different image, b.jpg and the thumbnail are gone
+        Files.write(uploadDir.resolve("a.jpg"), "another image".getBytes(StandardCharsets.UTF_8));
+        Files.delete(uploadDir.resolve("b.jpg"));
+        Files.delete(uploadDir.resolve("thumbnails").resolve("a.jpg"));
+
+        // When
+        RestoreResult result = backupArchiveService.restoreFromZip(new ByteArrayInputStream(bytes.toByteArray()), clearOptions, null);
+
+        // Then
+        assertTrue(result.isSuccess(), result.getErrors().toString());
+        assertEquals(3, result.getStats().getImagesRestored());
+        assertArrayEquals(imageBytes, Files.readAllBytes(uploadDir.resolve("b.jpg")));
+        assertEquals("another image", Files.readString(uploadDir.resolve("a.jpg")));
+
+        Product renamed = productRepository.findAll().stream()
+                .filter(p -> p.getImageUrl() != null && !p.getImageUrl().equals("/api/images/b.jpg"))
+                .findFirst().orElseThrow();
+        assertNotEquals("a.jpg", renamed.getImageUrl());
+        assertArrayEquals(imageBytes, Files.readAllBytes(uploadDir.resolve(renamed.getImageUrl())));
+        assertEquals("thumb", Files.readString(uploadDir.resolve("thumbnails").resolve(renamed.getImageUrl())));
+    }
+
+    private byte[] createArchive(String metadataOverride) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bytes)) {
+            zos.putNextEntry(new ZipEntry(BackupArchiveService.BACKUP_ENTRY));
+            BackupDTO.BackupMetadata metadata = backupService.writeBackup(zos);
+            zos.closeEntry();
+
+            String text = metadataOverride != null ? metadataOverride : String.format(
+                    "Categories: %d\nLocations: %d\nProducts: %d\n",
+                    metadata.getTotalCategories(), metadata.getTotalLocations(), metadata.getTotalProducts());
+            zos.putNextEntry(new ZipEntry(BackupArchiveService.METADATA_ENTRY));
+            zos.write(text.getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -1,23 +1,38 @@
 package de.hirthe.gefrierschrankapp.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import de.hirthe.gefrierschrankapp.dto.BackupDTO;
+import de.hirthe.gefrierschrankapp.dto.ProductBackupDTO;
 import de.hirthe.gefrierschrankapp.dto.RestoreRequest;
 import de.hirthe.gefrierschrankapp.dto.RestoreResult;
 import de.hirthe.gefrierschrankapp.entity.Category;
 import de.hirthe.gefrierschrankapp.entity.Location;
 import de.hirthe.gefrierschrankapp.entity.Product;
+import de.hirthe.gefrierschrankapp.entity.RestoreCheckpoint;
 import de.hirthe.gefrierschrankapp.repository.CategoryRepository;
 import de.hirthe.gefrierschrankapp.repository.LocationRepository;
 import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import de.hirthe.gefrierschrankapp.repository.RestoreCheckpointRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -38,6 +53,18 @@ public class BackupServiceTest {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private RestoreCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     private Category testCategory;
     private Location testLocation;
     private Product testProduct;
@@ -112,6 +139,37 @@ public class BackupServiceTest {
         assertEquals("kg", backup.getProducts().get(0).getUnit());
     }
 
+    @Test
+    void testWriteBackupMatchesCreateBackup() throws Exception {
+        // Given - more products than fit into one export batch
+        for (int i = 0; i < 4; i++) {
+            productRepository.save(Product.builder()
+                    .name("Batch Product " + i)
+                    .category(testCategory)
+                    .quantity(BigDecimal.ONE)
+                    .frozenDate(LocalDate.now())
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        BackupService target = AopTestUtils.getTargetObject(backupService);
+        ReflectionTestUtils.setField(target, "exportBatchSize", 2);
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BackupDTO.BackupMetadata metadata = backupService.writeBackup(out);
+        ObjectNode streamed = (ObjectNode) objectMapper.readTree(out.toByteArray());
+        ObjectNode expected = (ObjectNode) objectMapper.readTree(
+                objectMapper.writeValueAsBytes(backupService.createBackup()));
+
+        // Then - same document apart from the creation timestamp
+        assertEquals(5, metadata.getTotalProducts());
+        assertEquals(5, streamed.get("products").size());
+        assertNotNull(streamed.remove("backupTimestamp"));
+        expected.remove("backupTimestamp");
+        assertEquals(expected, streamed);
+    }
+
     @Test
     void testRestoreFromBackup() {
         // Given
@@ -176,6 +234,251 @@ public class BackupServiceTest {
         assertEquals("kg", restoredProduct.getUnit());
     }
 
+    @Test
+    void testRestorePreservesIds() {
+        // Given - a backup whose product id is ahead of the sequence, and a second product
+        // whose id is taken by the time the backup is restored
+        BackupDTO backup = backupService.createBackup();
+        long restoredId = testProduct.getId() + 1000;
+        backup.getProducts().get(0).setId(restoredId);
+
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        locationRepository.deleteAll();
+        Product blocker = productRepository.save(Product.builder()
+                .name("Blocker")
+                .quantity(BigDecimal.ONE)
+                .frozenDate(LocalDate.now())
+                .build());
+        backup.getProducts().add(ProductBackupDTO.builder()
+                .id(blocker.getId())
+                .name("Taken Id")
+                .categoryId(testCategory.getId())
+                .quantity(BigDecimal.ONE)
+                .frozenDate(LocalDate.now())
+                .build());
+
+        RestoreRequest request = RestoreRequest.builder()
+                .backup(backup)
+                .options(RestoreRequest.RestoreOptions.builder().preserveIds(true).build())
+                .build();
+
+        // When
+        RestoreResult result = backupService.restoreFromBackup(request);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Then
+        assertTrue(result.isSuccess());
+        assertEquals(2, result.getStats().getProductsImported());
+        assertTrue(result.getWarnings().stream().anyMatch(w -> w.contains("Taken Id")));
+
+        Product restored = productRepository.findById(restoredId).orElseThrow();
+        assertEquals("Test Product", restored.getName());
+        assertEquals(testCategory.getId(), restored.getCategory().getId());
+        assertEquals(testLocation.getId(), restored.getLocation().getId());
+        assertEquals("Blocker", productRepository.findById(blocker.getId()).orElseThrow().getName());
+        assertEquals(3, productRepository.count());
+
+        // New products continue after the restored ids
+        Product created = productRepository.save(Product.builder()
+                .name("After Restore")
+                .quantity(BigDecimal.ONE)
+                .frozenDate(LocalDate.now())
+                .build());
+        assertTrue(created.getId() > restoredId);
+    }
+
+    @Test
+    void testRestoreBatchesInserts() throws Exception {
+        // Given
+        for (int i = 0; i < 119; i++) {
+            productRepository.save(Product.builder()
+                    .name("Batch Product " + i)
+                    .category(testCategory)
+                    .quantity(BigDecimal.ONE)
+                    .frozenDate(LocalDate.now())
+                    .build());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        backupService.writeBackup(out);
+
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        locationRepository.deleteAll();
+        entityManager.flush();
+        BackupService target = AopTestUtils.getTargetObject(backupService);
+        ReflectionTestUtils.setField(target, "restoreChunkSize", 500);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // When
+        RestoreResult result = backupService.restoreFromStream(
+                new ByteArrayInputStream(out.toByteArray()), RestoreRequest.RestoreOptions.builder().build(), null);
+
+        // Then - ids come from the sequence in blocks, so the inserts are sent in batches
+        assertTrue(result.isSuccess());
+        assertEquals(120, productRepository.count());
+        assertEquals(123, statistics.getEntityInsertCount()); // products, category, location and checkpoint
+        assertTrue(statistics.getPrepareStatementCount() < 30,
+                "Expected batched inserts, got " + statistics.getPrepareStatementCount() + " statements");
+    }
+
+    @Test
+    void testRestoreFromStreamInChunks() throws Exception {
+        // Given
+        for (int i = 0; i < 4; i++) {
+            productRepository.save(Product.builder()
+                    .name("Chunk Product " + i)
+                    .location(testLocation)
+                    .quantity(BigDecimal.ONE)
+                    .frozenDate(LocalDate.now())
+                    .build());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        backupService.writeBackup(out);
+
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        locationRepository.deleteAll();
+
+        BackupService target = AopTestUtils.getTargetObject(backupService);
+        ReflectionTestUtils.setField(target, "restoreChunkSize", 2);
+
+        // When
+        RestoreResult result = backupService.restoreFromStream(
+                new ByteArrayInputStream(out.toByteArray()), RestoreRequest.RestoreOptions.builder().build(), null);
+
+        // Then
+        assertTrue(result.isSuccess());
+        assertNull(result.getCheckpointId());
+        assertEquals(1, result.getStats().getCategoriesImported());
+        assertEquals(1, result.getStats().getLocationsImported());
+        assertEquals(5, result.getStats().getProductsImported());
+        assertEquals(5, productRepository.count());
+        assertEquals(0, checkpointRepository.count());
+        assertTrue(productRepository.findAll().stream()
+                .filter(p -> p.getName().startsWith("Chunk"))
+                .allMatch(p -> "Test Location".equals(p.getLocation().getName())));
+    }
+
+    @Test
+    void testInvalidProductDoesNotDiscardItsChunk() throws Exception {
+        // Given - a backup whose second product has a negative quantity
+        for (int i = 0; i < 3; i++) {
+            productRepository.save(Product.builder()
+                    .name("Chunk Product " + i)
+                    .location(testLocation)
+                    .quantity(BigDecimal.ONE)
+                    .frozenDate(LocalDate.now())
+                    .build());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        backupService.writeBackup(out);
+        ObjectNode backup = (ObjectNode) objectMapper.readTree(out.toByteArray());
+        ((ObjectNode) backup.get("products").get(1)).put("quantity", -1);
+        String invalidName = backup.get("products").get(1).get("name").asText();
+
+        productRepository.deleteAll();
+
+        BackupService target = AopTestUtils.getTargetObject(backupService);
+        ReflectionTestUtils.setField(target, "restoreChunkSize", 2);
+
+        // When
+        RestoreResult result = backupService.restoreFromStream(
+                new ByteArrayInputStream(objectMapper.writeValueAsBytes(backup)), 
+                RestoreRequest.RestoreOptions.builder().build(), null);
+
+        // Then - only the invalid product is skipped, the rest of its chunk is imported
+        assertTrue(result.isSuccess());
+        assertNull(result.getCheckpointId());
+        assertEquals(3, result.getStats().getProductsImported());
+        assertEquals(1, result.getStats().getProductsSkipped());
+        assertEquals(3, productRepository.count());
+        assertEquals(1, result.getErrors().size());
+        assertTrue(result.getErrors().get(0).contains(invalidName), result.getErrors().get(0));
+        assertFalse(productRepository.findAll().stream().anyMatch(p -> p.getName().equals(invalidName)));
+    }
+
+    @Test
+    void testResumeRestoreFromCheckpoint() throws Exception {
+        // Given - a backup with 5 products of which the first 3 were committed by a failed run
+        for (int i = 0; i < 4; i++) {
+            productRepository.save(Product.builder()
+                    .name("Resume Product " + i)
+                    .category(testCategory)
+                    .quantity(BigDecimal.ONE)
+                    .frozenDate(LocalDate.now())
+                    .build());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        backupService.writeBackup(out);
+        String backupTimestamp = objectMapper.readTree(out.toByteArray()).get("backupTimestamp").asText();
+        productRepository.deleteAll();
+
+        RestoreResult.RestoreStats stats = RestoreResult.RestoreStats.builder()
+                .categoriesImported(1)
+                .locationsImported(1)
+                .productsImported(3)
+                .build();
+        checkpointRepository.save(RestoreCheckpoint.builder()
+                .id("resume-test")
+                .status(RestoreCheckpoint.Status.FAILED)
+                .backupTimestamp(backupTimestamp)
+                .productsProcessed(3)
+                .categoryIdMapping(objectMapper.writeValueAsString(Map.of(testCategory.getId(), testCategory.getId())))
+                .locationIdMapping(objectMapper.writeValueAsString(Map.of(testLocation.getId(), testLocation.getId())))
+                .stats(objectMapper.writeValueAsString(stats))
+                .conflicts(objectMapper.writeValueAsString(List.of(RestoreResult.ConflictInfo.builder()
+                        .type("category").name("Test Category").resolution("skipped").build())))
+                .errors(objectMapper.writeValueAsString(List.of("Failed to restore product 'Broken': Product name is required")))
+                .build());
+
+        // When
+        RestoreResult result = backupService.restoreFromStream(
+                new ByteArrayInputStream(out.toByteArray()), RestoreRequest.RestoreOptions.builder().build(), "resume-test");
+
+        // Then - only the remaining products are imported, stats continue from the checkpoint
+        assertTrue(result.isSuccess());
+        assertEquals(5, result.getStats().getProductsImported());
+        assertEquals(2, productRepository.count());
+        assertTrue(productRepository.findAll().stream()
+                .allMatch(p -> p.getName().equals("Resume Product 2") || p.getName().equals("Resume Product 3")));
+        assertFalse(checkpointRepository.existsById("resume-test"));
+        
+        // The conflicts and errors of the failed run are still reported
+        assertEquals(1, result.getConflicts().size());
+        assertEquals("Test Category", result.getConflicts().get(0).getName());
+        assertEquals(List.of("Failed to restore product 'Broken': Product name is required"), result.getErrors());
+    }
+
+    @Test
+    void testRestoreInProgressCannotBeResumed() throws Exception {
+        // Given - a checkpoint of an import that is still running
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        backupService.writeBackup(out);
+        String backupTimestamp = objectMapper.readTree(out.toByteArray()).get("backupTimestamp").asText();
+        long products = productRepository.count();
+        checkpointRepository.save(RestoreCheckpoint.builder()
+                .id("running")
+                .status(RestoreCheckpoint.Status.IN_PROGRESS)
+                .backupTimestamp(backupTimestamp)
+                .categoryIdMapping(objectMapper.writeValueAsString(Map.of(testCategory.getId(), testCategory.getId())))
+                .locationIdMapping(objectMapper.writeValueAsString(Map.of(testLocation.getId(), testLocation.getId())))
+                .stats(objectMapper.writeValueAsString(RestoreResult.RestoreStats.builder().build()))
+                .build());
+
+        // When
+        RestoreResult result = backupService.restoreFromStream(
+                new ByteArrayInputStream(out.toByteArray()), RestoreRequest.RestoreOptions.builder().build(), "running");
+
+        // Then - nothing is replayed and the running import keeps its checkpoint
+        assertFalse(result.isSuccess());
+        assertTrue(result.getMessage().contains("still in progress"), result.getMessage());
+        assertEquals(products, productRepository.count());
+        assertEquals(RestoreCheckpoint.Status.IN_PROGRESS, checkpointRepository.findById("running").orElseThrow().getStatus());
+    }
+
     @Test
     void testRestoreWithConflicts() {
         // Given - Create a backup with existing data
@@ -212,6 +515,34 @@ public class BackupServiceTest {
         assertTrue(result.getConflicts().size() >= 2); // At least category and location conflicts
     }
 
+    @Test
+    void testRestoreWithRenameConflicts() {
+        // Given - a backup restored twice on top of its own data
+        BackupDTO backup = backupService.createBackup();
+        RestoreRequest request = RestoreRequest.builder()
+                .backup(backup)
+                .options(RestoreRequest.RestoreOptions.builder()
+                        .conflictResolution(RestoreRequest.ConflictResolution.RENAME)
+                        .build())
+                .build();
+
+        // When
+        RestoreResult first = backupService.restoreFromBackup(request);
+        RestoreResult second = backupService.restoreFromBackup(request);
+
+        // Then - each run picks the next free name
+        assertTrue(first.isSuccess());
+        assertTrue(second.isSuccess());
+        assertEquals("renamed to Test Category (1)", first.getConflicts().get(0).getResolution());
+        assertEquals("renamed to Test Location (1)", first.getConflicts().get(1).getResolution());
+        assertEquals("renamed to Test Category (2)", second.getConflicts().get(0).getResolution());
+        assertEquals("renamed to Test Location (2)", second.getConflicts().get(1).getResolution());
+        assertEquals(3, categoryRepository.count());
+        assertEquals(3, locationRepository.count());
+        assertTrue(categoryRepository.findByName("Test Category (2)").isPresent());
+        assertEquals(3, productRepository.count());
+    }
+
     @Test
     void testClearAllData() {
         // Given - Ensure we have data
@@ -0,0 +1,120 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.dto.DashboardSummaryDTO;
+import de.hirthe.gefrierschrankapp.entity.Category;
+import de.hirthe.gefrierschrankapp.entity.Location;
+import de.hirthe.gefrierschrankapp.entity.Product;
+import de.hirthe.gefrierschrankapp.repository.CategoryRepository;
+import de.hirthe.gefrierschrankapp.repository.LocationRepository;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class DashboardServiceTest {
+
+    @Autowired
+    private DashboardService dashboardService;
+
+    @Autowired
+    private ProductStatisticsService productStatisticsService;
+
+    @Autowired
+    private ProductExpiryIndex productExpiryIndex;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private Category meat;
+    private Category vegetables;
+    private Location drawer;
+
+    @BeforeEach
+    void setUp() {
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        locationRepository.deleteAll();
+
+        meat = categoryRepository.save(Category.builder().name("Fleisch").color("#FF0000").build());
+        vegetables = categoryRepository.save(Category.builder().name("Gemüse").color("#00FF00").build());
+        drawer = locationRepository.save(Location.builder().name("Schublade 1").sortOrder(1).build());
+        // Repository writes bypass the change events the statistics snapshot and the expiry
+        // index listen to; the rebuild reads the committed, empty inventory
+        productExpiryIndex.rebuild();
+        productStatisticsService.invalidate();
+    }
+
+    @Test
+    void testSummaryOfEmptyInventory() {
+        DashboardSummaryDTO summary = dashboardService.getSummary(5);
+
+        assertEquals(0, summary.getTotalProducts());
+        assertEquals(0, summary.getExpired());
+        assertEquals(0, summary.getFresh());
+        assertTrue(summary.getCategories().isEmpty());
+        assertTrue(summary.getNextExpiring().isEmpty());
+    }
+
+    @Test
+    void testSummaryBuckets() {
+        LocalDate today = LocalDate.now();
+        save("Abgelaufen", meat, today.minusDays(1));
+        save("Heute", meat, today);
+        save("In 5 Tagen", vegetables, today.plusDays(5));
+        save("In 10 Tagen", vegetables, today.plusDays(10));
+        save("In 30 Tagen", vegetables, today.plusDays(30));
+        save("Ohne Datum", vegetables, null);
+
+        DashboardSummaryDTO summary = dashboardService.getSummary(2);
+
+        assertEquals(6, summary.getTotalProducts());
+        assertEquals(1, summary.getExpired());
+        assertEquals(1, summary.getExpiringWithin3Days());
+        assertEquals(2, summary.getExpiringWithin7Days());
+        assertEquals(3, summary.getExpiringWithin14Days());
+        assertEquals(3, summary.getFresh());
+        assertEquals(1, summary.getWithoutExpirationDate());
+
+        assertEquals(2, summary.getCategories().size());
+        assertEquals("Fleisch", summary.getCategories().get(0).getName());
+        assertEquals(2, summary.getCategories().get(0).getCount());
+        assertEquals(4, summary.getCategories().get(1).getCount());
+        assertEquals(6, summary.getLocations().get(0).getCount());
+
+        assertEquals(2, summary.getNextExpiring().size());
+        assertEquals("Heute", summary.getNextExpiring().get(0).getName());
+        assertEquals("In 5 Tagen", summary.getNextExpiring().get(1).getName());
+        assertEquals(5, summary.getNextExpiring().get(1).getDaysUntilExpiration());
+    }
+
+    private void save(String name, Category category, LocalDate expirationDate) {
+        Product product = productRepository.save(Product.builder()
+                .name(name)
+                .category(category)
+                .location(drawer)
+                .quantity(BigDecimal.ONE)
+                .unit("Stück")
+                .frozenDate(LocalDate.now().minusDays(1))
+                .expirationDate(expirationDate)
+                .build());
+        productExpiryIndex.put(product.getId(), expirationDate);
+        productStatisticsService.invalidate();
+    }
+}
@@ -0,0 +1,78 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageCacheTest {
+
+    private MeterRegistry meterRegistry;
+    private ImageCache imageCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        imageCache = new ImageCache(DataSize.ofBytes(100), meterRegistry);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void testHitsAreServedWithoutLoading() throws IOException {
+        get("a.jpg", 40);
+        get("a.jpg", 40);
+
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("image.cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("image.cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedWhenOverBudget() throws IOException {
+        get("a.jpg", 40);
+        get("b.jpg", 40);
+        get("a.jpg", 40); // a is now more recent than b
+        get("c.jpg", 40);
+
+        assertEquals(80, imageCache.currentBytes());
+        assertEquals(1.0, meterRegistry.get("image.cache.evictions").functionCounter().count());
+
+        get("a.jpg", 40);
+        assertEquals(3, loads.get());
+        get("b.jpg", 40);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void testImagesLargerThanTheCacheAreNotCached() throws IOException {
+        get("large.jpg", 101);
+
+        assertEquals(0, imageCache.entryCount());
+        assertEquals(0, imageCache.currentBytes());
+    }
+
+    @Test
+    void testInvalidateRemovesAllVariants() throws IOException {
+        get("a.jpg", 10);
+        imageCache.get("a.jpg", ImageService.ImageSize.MEDIUM, () -> new ImageCache.CachedImage(new byte[20], 0));
+
+        imageCache.invalidate("a.jpg");
+
+        assertEquals(0, imageCache.entryCount());
+        assertEquals(0, imageCache.currentBytes());
+    }
+
+    private void get(String filename, int size) throws IOException {
+        imageCache.get(filename, ImageService.ImageSize.THUMBNAIL, () -> {
+            loads.incrementAndGet();
+            return new ImageCache.CachedImage(new byte[size], 0);
+        });
+    }
+}
@@ -1,15 +1,27 @@
 package de.hirthe.gefrierschrankapp.service;
 
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class ImageServiceTest {
 
@@ -17,13 +29,105 @@ public class ImageServiceTest {
     Path tempDir;
 
     private ImageService imageService;
+    private ImageVariantGenerator variantGenerator;
+    private ProductRepository productRepository;
 
     @BeforeEach
     void setUp() {
-        imageService = new ImageService();
+        variantGenerator = new ImageVariantGenerator(1, 10);
+        productRepository = mock(ProductRepository.class);
+        imageService = new ImageService(new ImageCache(DataSize.ofMegabytes(1), new SimpleMeterRegistry()),
+                variantGenerator, productRepository);
         // Set the upload directory to our temp directory
         ReflectionTestUtils.setField(imageService, "uploadDir", tempDir.toString());
         ReflectionTestUtils.setField(imageService, "maxFileSize", 5242880L); // 5MB
+        ReflectionTestUtils.setField(imageService, "variantWait", Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        variantGenerator.shutdown();
+    }
+
+    @Test
+    void testUploadRendersVariantsInBackground() throws IOException {
+        MockMultipartFile file = new MockMultipartFile(
+            "file",
+            "photo.png",
+            "image/png",
+            createPng(800, 400)
+        );
+
+        ImageService.ImageUploadResult result = imageService.uploadImage(file);
+
+        assertEquals(800, result.getWidth());
+        assertEquals(400, result.getHeight());
+        assertTrue(Files.exists(tempDir.resolve(result.getFilename())));
+
+        // Waits for the pending variant instead of falling back to the original
+        assertEquals(ImageService.ImageSize.MEDIUM,
+                imageService.resolveAvailableSize(result.getFilename(), ImageService.ImageSize.MEDIUM));
+        assertTrue(variantGenerator.awaitVariants(result.getFilename(), Duration.ofSeconds(5)));
+        assertEquals(ImageVariantGenerator.VariantStatus.READY, imageService.getVariantStatus(result.getFilename()));
+
+        BufferedImage thumbnail = ImageIO.read(tempDir.resolve("thumbnails").resolve(result.getFilename()).toFile());
+        assertEquals(200, thumbnail.getWidth());
+        assertEquals(100, thumbnail.getHeight());
+    }
+
+    @Test
+    void testMissingVariantsAreEnqueuedAtStartup() throws IOException {
+        Files.write(tempDir.resolve("orphan.png"), createPng(300, 300));
+
+        imageService.enqueueMissingVariants();
+
+        assertEquals(ImageService.ImageSize.THUMBNAIL,
+                imageService.resolveAvailableSize("orphan.png", ImageService.ImageSize.THUMBNAIL));
+        assertTrue(Files.exists(tempDir.resolve("medium").resolve("orphan.png")));
+    }
+
+    @Test
+    void testContentAddressedUploadsShareFiles() throws IOException {
+        ReflectionTestUtils.setField(imageService, "contentAddressed", true);
+        byte[] png = createPng(300, 200);
+
+        ImageService.ImageUploadResult first = imageService.uploadImage(new MockMultipartFile("file", "a.PNG", "image/png", png));
+        ImageService.ImageUploadResult second = imageService.uploadImage(new MockMultipartFile("file", "b.png", "image/png", png));
+
+        assertEquals(first.getFilename(), second.getFilename());
+        assertTrue(first.getFilename().matches("[0-9a-f]{64}\\.png"));
+        assertEquals(1, tempDir.toFile().list((dir, name) -> name.endsWith(".png")).length);
+        assertTrue(variantGenerator.awaitVariants(first.getFilename(), Duration.ofSeconds(5)));
+
+        // Kept while another product still references it
+        when(productRepository.countImageReferences(first.getFilename())).thenReturn(1L);
+        imageService.deleteImage(first.getFilename());
+        assertTrue(Files.exists(tempDir.resolve(first.getFilename())));
+
+        when(productRepository.countImageReferences(first.getFilename())).thenReturn(0L);
+        imageService.deleteImage(first.getFilename());
+        assertFalse(Files.exists(tempDir.resolve(first.getFilename())));
+        assertFalse(Files.exists(tempDir.resolve("thumbnails").resolve(first.getFilename())));
+    }
+
+    @Test
+    void testUploadRejectsContentThatIsNoImage() {
+        MockMultipartFile file = new MockMultipartFile(
+            "file",
+            "fake.jpg",
+            "image/jpeg",
+            "fake image content".getBytes()
+        );
+
+        assertThrows(IOException.class, () -> imageService.uploadImage(file));
+        assertEquals(0, tempDir.toFile().list((dir, name) -> name.endsWith(".jpg")).length);
+    }
+
+    private byte[] createPng(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
     }
 
     @Test
@@ -81,4 +185,30 @@ public class ImageServiceTest {
         assertEquals("application/octet-stream", imageService.getImageContentType("test.unknown"));
     }
 
+    @Test
+    void testGetImageFileRejectsPathTraversal() throws IOException {
+        Files.writeString(tempDir.resolve("existing.jpg"), "content");
+
+        assertEquals(tempDir.resolve("existing.jpg"), imageService.getImageFile("existing.jpg", ImageService.ImageSize.ORIGINAL));
+        assertThrows(IOException.class, () -> imageService.getImageFile("../existing.jpg", ImageService.ImageSize.THUMBNAIL));
+        assertThrows(IOException.class, () -> imageService.getImageFile("missing.jpg", ImageService.ImageSize.ORIGINAL));
+    }
+
+    @Test
+    void testThumbnailIsCachedUntilDeleted() throws IOException {
+        Path thumbnails = Files.createDirectories(tempDir.resolve("thumbnails"));
+        Files.writeString(thumbnails.resolve("cached.jpg"), "thumbnail");
+
+        assertEquals("thumbnail", imageService.getImageResource("cached.jpg", ImageService.ImageSize.THUMBNAIL)
+                .getContentAsString(StandardCharsets.UTF_8));
+
+        // Served from memory although the file changed
+        Files.writeString(thumbnails.resolve("cached.jpg"), "changed");
+        assertEquals("thumbnail", imageService.getImageResource("cached.jpg", ImageService.ImageSize.THUMBNAIL)
+                .getContentAsString(StandardCharsets.UTF_8));
+
+        imageService.deleteImage("cached.jpg");
+        assertThrows(IOException.class, () -> imageService.getImageResource("cached.jpg", ImageService.ImageSize.THUMBNAIL));
+    }
+
 }
\ No newline at end of file
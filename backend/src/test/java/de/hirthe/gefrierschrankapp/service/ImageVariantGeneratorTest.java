@@ -0,0 +1,88 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageVariantGeneratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ImageVariantGenerator variantGenerator;
+
+    @BeforeEach
+    void setUp() {
+        variantGenerator = new ImageVariantGenerator(1, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        variantGenerator.shutdown();
+    }
+
+    @Test
+    void testSubsamplingKeepsTwiceTheTargetResolution() {
+        // 48 MP photo for the 600x600 medium variant
+        assertEquals(6, ImageVariantGenerator.subsamplingFor(8000, 6000, 600, 600));
+        assertEquals(2, ImageVariantGenerator.subsamplingFor(2400, 1200, 600, 600));
+        assertEquals(1, ImageVariantGenerator.subsamplingFor(1000, 800, 600, 600));
+        assertEquals(1, ImageVariantGenerator.subsamplingFor(100, 100, 600, 600));
+    }
+
+    @Test
+    void testDecodeSubsamplesLargeImages() throws IOException {
+        Path original = writePng("large.png", 2400, 1200);
+
+        BufferedImage decoded = variantGenerator.decode(original, 600, 600);
+
+        assertEquals(1200, decoded.getWidth());
+        assertEquals(600, decoded.getHeight());
+    }
+
+    @Test
+    void testVariantsHaveTargetSize() throws Exception {
+        Path original = writePng("photo.png", 3000, 1500);
+        Path thumbnail = tempDir.resolve("thumbnails").resolve("photo.png");
+        Path medium = tempDir.resolve("medium").resolve("photo.png");
+
+        variantGenerator.submit("photo.png", original, thumbnail, medium).get();
+
+        BufferedImage mediumImage = ImageIO.read(medium.toFile());
+        assertEquals(600, mediumImage.getWidth());
+        assertEquals(300, mediumImage.getHeight());
+        BufferedImage thumbnailImage = ImageIO.read(thumbnail.toFile());
+        assertEquals(200, thumbnailImage.getWidth());
+        assertEquals(100, thumbnailImage.getHeight());
+    }
+
+    @Test
+    void testSubmitAfterShutdownFails() throws IOException {
+        Path original = writePng("late.png", 100, 100);
+        variantGenerator.shutdown();
+
+        CompletableFuture<Void> future = variantGenerator.submit("late.png", original,
+                tempDir.resolve("thumbnails").resolve("late.png"), tempDir.resolve("medium").resolve("late.png"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertNotEquals(ImageVariantGenerator.VariantStatus.PENDING, variantGenerator.getStatus("late.png"));
+    }
+
+    private Path writePng(String filename, int width, int height) throws IOException {
+        Path file = tempDir.resolve(filename);
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+        return file;
+    }
+}
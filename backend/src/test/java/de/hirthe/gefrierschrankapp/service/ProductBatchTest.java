@@ -0,0 +1,239 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.dto.ProductBatchResult;
+import de.hirthe.gefrierschrankapp.entity.Category;
+import de.hirthe.gefrierschrankapp.entity.Location;
+import de.hirthe.gefrierschrankapp.entity.Product;
+import de.hirthe.gefrierschrankapp.event.ProductChangeEvent;
+import de.hirthe.gefrierschrankapp.repository.CategoryRepository;
+import de.hirthe.gefrierschrankapp.repository.LocationRepository;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Batch operations validate references once and change products with set-based statements
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+@RecordApplicationEvents
+public class ProductBatchTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    @MockitoBean
+    private ImageService imageService;
+
+    private Category category;
+    private Location drawer1;
+    private Location drawer2;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        locationRepository.deleteAll();
+
+        category = categoryRepository.save(Category.builder().name("Fleisch").defaultStorageDays(180).build());
+        drawer1 = locationRepository.save(Location.builder().name("Schublade 1").sortOrder(1).build());
+        drawer2 = locationRepository.save(Location.builder().name("Schublade 2").sortOrder(2).build());
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void testMoveUsesOneUpdate() {
+        // Given
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 499; i++) {
+            ids.add(productRepository.save(product("Produkt " + i, drawer1)).getId());
+        }
+        ids.add(-1L);
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        // When
+        ProductBatchResult result = productService.moveProducts(ids, drawer2.getId());
+
+        // Then - the location, the existing ids and one update
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(499, result.getSucceeded());
+        assertEquals(1, result.getFailed());
+        assertEquals(499, result.getResults().get(499).getIndex());
+        assertEquals("Product not found with id: -1", result.getResults().get(499).getError());
+        assertEquals(499, productRepository.countByLocationId(drawer2.getId()));
+
+        assertThrows(IllegalArgumentException.class, () -> productService.moveProducts(ids, -1L));
+    }
+
+    @Test
+    void testRecategorizeKeepsExpirationDates() {
+        // Given
+        Product product = productRepository.save(product("Erbsen", drawer1));
+        LocalDate expirationDate = product.getExpirationDate();
+
+        // When
+        ProductBatchResult result = productService.recategorizeProducts(List.of(product.getId()), category.getId());
+
+        // Then
+        assertEquals(1, result.getSucceeded());
+        Product updated = productRepository.findById(product.getId()).orElseThrow();
+        assertEquals(category.getId(), updated.getCategory().getId());
+        assertEquals(expirationDate, updated.getExpirationDate());
+    }
+
+    @Test
+    void testCreateReportsInvalidItems() {
+        // Given
+        Product valid = Product.builder()
+                .name("Hackfleisch")
+                .category(Category.builder().id(category.getId()).build())
+                .location(Location.builder().id(drawer1.getId()).build())
+                .quantity(BigDecimal.ONE)
+                .frozenDate(LocalDate.of(2025, 1, 1))
+                .build();
+        Product unknownCategory = product("Gulasch", drawer1);
+        unknownCategory.setCategory(Category.builder().id(-1L).build());
+        Product blankName = product(" ", drawer1);
+
+        // When
+        ProductBatchResult result = productService.createProducts(List.of(valid, unknownCategory, blankName));
+
+        // Then
+        assertEquals(1, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        assertEquals("Hackfleisch", result.getResults().get(0).getProduct().getName());
+        assertEquals(LocalDate.of(2025, 6, 30), result.getResults().get(0).getProduct().getExpirationDate());
+        assertEquals("Category not found with id: -1", result.getResults().get(1).getError());
+        assertEquals("Product name is required", result.getResults().get(2).getError());
+        assertEquals(1, productRepository.count());
+    }
+
+    @Test
+    void testBatchPublishesOneChangeEventPerOperation() {
+        // Given
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            products.add(product("Produkt " + i, drawer1));
+        }
+        products.add(product(" ", drawer1));
+
+        // When
+        ProductBatchResult created = productService.createProducts(products);
+        List<Long> ids = products.subList(0, 50).stream().map(Product::getId).toList();
+        productService.deleteProducts(ids);
+
+        // Then - the indexes read the created products back together instead of one by one
+        assertEquals(50, created.getSucceeded());
+        List<ProductChangeEvent> published = events.stream(ProductChangeEvent.class).toList();
+        assertEquals(2, published.size());
+        assertEquals(ProductChangeEvent.Type.CREATED, published.get(0).getType());
+        assertEquals(ids, published.get(0).getProductIds());
+        assertEquals(ProductChangeEvent.Type.DELETED, published.get(1).getType());
+        assertEquals(Set.copyOf(ids), Set.copyOf(published.get(1).getProductIds()));
+    }
+
+    @Test
+    void testDeleteReleasesImagesAfterCommit() {
+        // Given
+        Product withImage = product("Lachs", drawer1);
+        withImage.setImageUrl("/api/images/lachs.jpg");
+        withImage = productRepository.save(withImage);
+        Product withoutImage = productRepository.save(product("Brot", drawer2));
+
+        // When
+        ProductBatchResult result = productService.deleteProducts(List.of(withImage.getId(), withoutImage.getId(), -1L));
+
+        // Then
+        assertEquals(2, result.getSucceeded());
+        assertEquals(0, productRepository.count());
+        verify(imageService, never()).deleteImage("lachs.jpg");
+
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        // Other tests expect an empty database
+        TestTransaction.start();
+        categoryRepository.deleteAll();
+        locationRepository.deleteAll();
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        verify(imageService).deleteImage("lachs.jpg");
+    }
+
+    @Test
+    void testRolledBackChangesKeepTheirImages() {
+        // Given
+        Product deleted = product("Lachs", drawer1);
+        deleted.setImageUrl("/api/images/lachs.jpg");
+        deleted = productRepository.save(deleted);
+        Product replaced = product("Brot", drawer2);
+        replaced.setImageUrl("/api/images/brot.jpg");
+        replaced = productRepository.save(replaced);
+
+        // When - the changes are rolled back
+        productService.deleteProduct(deleted.getId());
+        productService.updateProductImage(replaced.getId(), "/api/images/brot-neu.jpg");
+        TestTransaction.end();
+
+        // Then
+        verify(imageService, never()).deleteImage(any());
+    }
+
+    private Product product(String name, Location location) {
+        return Product.builder()
+                .name(name)
+                .location(location)
+                .quantity(BigDecimal.ONE)
+                .unit("Stück")
+                .frozenDate(LocalDate.now())
+                .expirationDate(LocalDate.now().plusMonths(3))
+                .build();
+    }
+}
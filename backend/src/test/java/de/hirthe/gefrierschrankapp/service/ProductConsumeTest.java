@@ -0,0 +1,204 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.dto.BackupDTO;
+import de.hirthe.gefrierschrankapp.dto.ConsumeResult;
+import de.hirthe.gefrierschrankapp.dto.RestoreRequest;
+import de.hirthe.gefrierschrankapp.dto.RestoreResult;
+import de.hirthe.gefrierschrankapp.entity.Category;
+import de.hirthe.gefrierschrankapp.entity.Location;
+import de.hirthe.gefrierschrankapp.entity.Product;
+import de.hirthe.gefrierschrankapp.repository.CategoryRepository;
+import de.hirthe.gefrierschrankapp.repository.LocationRepository;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Consuming decrements the quantity with one conditional update, so parallel consumers
+ * never take more than is left. Not transactional, every consume commits on its own.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class ProductConsumeTest {
+
+    private static final int CONSUMERS = 16;
+    private static final int ATTEMPTS = 10;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private BackupService backupService;
+
+    @MockitoBean
+    private ImageService imageService;
+
+    private Category category;
+    private Location location;
+
+    @BeforeEach
+    void setUp() {
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        locationRepository.deleteAll();
+
+        category = categoryRepository.save(Category.builder().name("Gemüse").build());
+        location = locationRepository.save(Location.builder().name("Schublade 1").sortOrder(1).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        locationRepository.deleteAll();
+    }
+
+    @Test
+    void testParallelConsumersNeverTakeMoreThanIsLeft() throws Exception {
+        // Given - 50 portions for 160 attempts
+        Product product = productRepository.save(product("Erbsen", 50, LocalDate.now().minusDays(30)));
+
+        // When
+        List<Boolean> outcomes = runInParallel(() -> {
+            try {
+                productService.consumeProduct(product.getId(), BigDecimal.ONE, false);
+                return true;
+            } catch (IllegalStateException e) {
+                return false;
+            }
+        });
+
+        // Then
+        assertEquals(50, outcomes.stream().filter(consumed -> consumed).count());
+        assertEquals(0, productRepository.findById(product.getId()).orElseThrow().getQuantity().signum());
+    }
+
+    @Test
+    void testParallelFifoConsumersEmptyOldestProductsFirst() throws Exception {
+        // Given - three bags, the oldest is emptied and deleted first
+        Product oldest = productRepository.save(product("Erbsen", 30, LocalDate.now().minusDays(60)));
+        Product older = productRepository.save(product("Erbsen", 40, LocalDate.now().minusDays(30)));
+        Product newest = productRepository.save(product("Erbsen", 200, LocalDate.now().minusDays(1)));
+
+        // When
+        List<Boolean> outcomes = runInParallel(() -> {
+            ConsumeResult result = productService.consumeOldestProduct("Erbsen", BigDecimal.ONE, true);
+            return result.getProductId().equals(newest.getId());
+        });
+
+        // Then - 160 portions taken, 70 of them before the newest bag was touched
+        assertEquals(CONSUMERS * ATTEMPTS - 70, outcomes.stream().filter(fromNewest -> fromNewest).count());
+        assertFalse(productRepository.existsById(oldest.getId()));
+        assertFalse(productRepository.existsById(older.getId()));
+        assertEquals(0, new BigDecimal(110).compareTo(productRepository.findById(newest.getId()).orElseThrow().getQuantity()));
+    }
+
+    @Test
+    void testConsumeReportsWhatIsLeft() {
+        Product product = productRepository.save(product("Spinat", 2, LocalDate.now().minusDays(5)));
+
+        ConsumeResult partial = productService.consumeProduct(product.getId(), new BigDecimal("0.5"), true);
+        assertEquals(0, new BigDecimal("1.5").compareTo(partial.getRemaining()));
+        assertFalse(partial.isDeleted());
+
+        assertThrows(IllegalStateException.class,
+                () -> productService.consumeProduct(product.getId(), BigDecimal.TEN, true));
+        assertThrows(IllegalArgumentException.class,
+                () -> productService.consumeProduct(-1L, BigDecimal.ONE, true));
+        assertThrows(IllegalArgumentException.class,
+                () -> productService.consumeOldestProduct("Rosenkohl", BigDecimal.ONE, true));
+
+        ConsumeResult rest = productService.consumeOldestProduct("Spinat", new BigDecimal("1.5"), true);
+        assertTrue(rest.isDeleted());
+        assertFalse(productRepository.existsById(product.getId()));
+    }
+
+    @Test
+    void testEmptiedProductCanBeEditedAndRestored() {
+        // Given - the last portion taken without deleting the product
+        Product product = productRepository.save(product("Brokkoli", 1, LocalDate.now().minusDays(5)));
+        ConsumeResult result = productService.consumeProduct(product.getId(), BigDecimal.ONE, false);
+        assertEquals(0, result.getRemaining().signum());
+        assertFalse(result.isDeleted());
+
+        // When - an unrelated edit, then a backup and restore
+        productService.patchProduct(product.getId(), Map.of("notes", "Nachkaufen"), null);
+        BackupDTO backup = backupService.createBackup();
+        productRepository.deleteAll();
+        RestoreResult restored = backupService.restoreFromBackup(RestoreRequest.builder()
+                .backup(backup)
+                .options(RestoreRequest.RestoreOptions.builder()
+                        .conflictResolution(RestoreRequest.ConflictResolution.SKIP)
+                        .build())
+                .build());
+
+        // Then
+        assertTrue(restored.isSuccess());
+        assertEquals(1, restored.getStats().getProductsImported());
+        Product stored = productRepository.findAll().get(0);
+        assertEquals("Nachkaufen", stored.getNotes());
+        assertEquals(0, stored.getQuantity().signum());
+    }
+
+    private List<Boolean> runInParallel(Callable<Boolean> consume) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CONSUMERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < CONSUMERS * ATTEMPTS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return consume.call();
+                }));
+            }
+            start.countDown();
+
+            List<Boolean> outcomes = new ArrayList<>();
+            for (Future<Boolean> future : futures) {
+                outcomes.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return outcomes;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Product product(String name, int quantity, LocalDate frozenDate) {
+        return Product.builder()
+                .name(name)
+                .category(category)
+                .location(location)
+                .quantity(new BigDecimal(quantity))
+                .unit("Portion")
+                .frozenDate(frozenDate)
+                .build();
+    }
+}
@@ -0,0 +1,136 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.event.ProductChangeEvent;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ProductExpiryIndexTest {
+
+    private final LocalDate today = LocalDate.of(2025, 3, 10);
+
+    private ProductRepository productRepository;
+    private ProductExpiryIndex expiryIndex;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        expiryIndex = new ProductExpiryIndex(productRepository, mock(PlatformTransactionManager.class));
+
+        expiryIndex.put(1L, today.minusDays(5));
+        expiryIndex.put(2L, today.minusDays(1));
+        expiryIndex.put(3L, today);
+        expiryIndex.put(5L, today.plusDays(3));
+        expiryIndex.put(4L, today.plusDays(3));
+        expiryIndex.put(6L, today.plusDays(30));
+        expiryIndex.put(7L, null);
+    }
+
+    @Test
+    void testFindsProductsInDateOrder() {
+        assertEquals(List.of(1L, 2L), expiryIndex.findExpired(today));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), expiryIndex.findExpiringBefore(today.plusDays(7)));
+        assertEquals(List.of(3L, 4L, 5L), expiryIndex.findExpiringBetween(today, today.plusDays(7)));
+        assertTrue(expiryIndex.findExpiringBetween(today.plusDays(7), today).isEmpty());
+        assertEquals(List.of(3L, 4L), expiryIndex.findNextExpiring(today, 2));
+    }
+
+    @Test
+    void testCountsBuckets() {
+        ProductRepository.ExpiryCounts counts = expiryIndex.countByExpiry(
+                today, today.plusDays(3), today.plusDays(7), today.plusDays(14));
+
+        assertEquals(7, counts.getTotal());
+        assertEquals(2, counts.getExpired());
+        assertEquals(3, counts.getExpiringWithin3Days());
+        assertEquals(3, counts.getExpiringWithin7Days());
+        assertEquals(3, counts.getExpiringWithin14Days());
+        assertEquals(1, counts.getWithoutExpirationDate());
+        assertEquals(5, expiryIndex.countExpiringBetween(null, today.plusDays(3)));
+    }
+
+    @Test
+    void testChangeEventsUpdateTheIndex() {
+        // Given - product 4 moves to next week, product 7 gets a date
+        ProductRepository.ExpiryDate nextWeek = expiry(4L, today.plusDays(7));
+        ProductRepository.ExpiryDate dated = expiry(7L, today.minusDays(2));
+        when(productRepository.findExpiryDatesByIds(List.of(4L, 7L))).thenReturn(List.of(nextWeek, dated));
+
+        // When
+        expiryIndex.onProductChange(new ProductChangeEvent(ProductChangeEvent.Type.UPDATED, List.of(4L, 7L)));
+        expiryIndex.onProductChange(new ProductChangeEvent(ProductChangeEvent.Type.DELETED, 1L));
+
+        // Then
+        assertEquals(List.of(7L, 2L), expiryIndex.findExpired(today));
+        assertEquals(List.of(3L, 5L, 4L), expiryIndex.findExpiringBetween(today, today.plusDays(7)));
+        assertEquals(6, expiryIndex.size());
+        assertEquals(0, expiryIndex.countByExpiry(today, today, today, today).getWithoutExpirationDate());
+        verify(productRepository, times(1)).findExpiryDatesByIds(any());
+    }
+
+    @Test
+    void testRebuildReplacesTheIndex() {
+        // Given
+        List<ProductRepository.ExpiryDate> stored = List.of(expiry(8L, today.minusDays(3)), expiry(9L, null));
+        when(productRepository.findExpiryDatesAfterId(eq(0L), any())).thenReturn(stored);
+
+        // When
+        expiryIndex.onProductChange(ProductChangeEvent.bulk());
+
+        // Then
+        assertEquals(2, expiryIndex.size());
+        assertEquals(List.of(8L), expiryIndex.findExpired(today));
+        assertTrue(expiryIndex.findNextExpiring(today, 10).isEmpty());
+    }
+
+    @Test
+    void testConsistencyCheckReportsDifferences() {
+        // Given - 6 was deleted, 4 changed and 8 created without change events; 5 changed during the check
+        List<ProductRepository.ExpiryDate> stored = List.of(
+                expiry(1L, today.minusDays(5)), expiry(2L, today.minusDays(1)), expiry(3L, today),
+                expiry(4L, today.plusDays(4)), expiry(5L, today.plusDays(9)), expiry(7L, null),
+                expiry(8L, today));
+        when(productRepository.findExpiryDatesAfterId(eq(0L), any())).thenReturn(stored);
+        for (ProductRepository.ExpiryDate product : stored) {
+            when(productRepository.findExpiryDateById(product.getId())).thenReturn(Optional.of(product));
+        }
+        when(productRepository.findExpiryDateById(5L)).thenAnswer(invocation -> {
+            expiryIndex.put(5L, today.plusDays(9));
+            return Optional.of(stored.get(4));
+        });
+
+        // When
+        ProductExpiryIndex.ConsistencyReport report = expiryIndex.checkConsistency();
+
+        // Then
+        assertFalse(report.isConsistent());
+        assertEquals(7, report.getIndexedProducts());
+        assertEquals(7, report.getDatabaseProducts());
+        assertEquals(List.of(8L), report.getMissingIds());
+        assertEquals(List.of(6L), report.getUnexpectedIds());
+        assertEquals(List.of(4L), report.getMismatchedIds());
+
+        // When - after a rebuild
+        expiryIndex.rebuild();
+
+        // Then
+        assertTrue(expiryIndex.checkConsistency().isConsistent());
+    }
+
+    private ProductRepository.ExpiryDate expiry(Long id, LocalDate expirationDate) {
+        ProductRepository.ExpiryDate expiry = mock(ProductRepository.ExpiryDate.class);
+        when(expiry.getId()).thenReturn(id);
+        when(expiry.getExpirationDate()).thenReturn(expirationDate);
+        return expiry;
+    }
+}
@@ -0,0 +1,167 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.hirthe.gefrierschrankapp.dto.ProductGroupSummary;
+import de.hirthe.gefrierschrankapp.entity.Category;
+import de.hirthe.gefrierschrankapp.entity.Location;
+import de.hirthe.gefrierschrankapp.entity.Product;
+import de.hirthe.gefrierschrankapp.event.ProductChangeEvent;
+import de.hirthe.gefrierschrankapp.event.ProductGroupChangeEvent;
+import de.hirthe.gefrierschrankapp.repository.CategoryRepository;
+import de.hirthe.gefrierschrankapp.repository.LocationRepository;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The with-products endpoints sum up products per category and location with one grouped
+ * query each, no product is loaded
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+@RecordApplicationEvents
+public class ProductGroupSummaryTest {
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private LocationService locationService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        locationRepository.deleteAll();
+
+        Category meat = categoryRepository.save(Category.builder().name("Fleisch").build());
+        categoryRepository.save(Category.builder().name("Eis").build());
+        Location top = locationRepository.save(Location.builder().name("Oben").sortOrder(1).build());
+        Location bottom = locationRepository.save(Location.builder().name("Unten").sortOrder(2).build());
+
+        LocalDate today = LocalDate.now();
+        productRepository.save(product("Hackfleisch", meat, top, "0.5", "kg", today.minusDays(1)));
+        productRepository.save(product("Gulasch", meat, top, "1.25", "kg", today.plusDays(5)));
+        productRepository.save(product("Bratwurst", meat, bottom, "6", "pieces", null));
+        productRepository.save(product("Brot", null, bottom, "2", "pieces", today.plusDays(60)));
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void testCategoriesAreSummedUpByOneGroupedQuery() throws Exception {
+        List<ProductGroupSummary<Category>> categories = categoryService.getCategoriesWithProducts();
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityStatistics(Product.class.getName()).getLoadCount());
+
+        ProductGroupSummary<Category> iceCream = categories.get(0);
+        assertEquals("Eis", iceCream.getGroup().getName());
+        assertEquals(0, iceCream.getProductCount());
+        assertTrue(iceCream.getQuantityByUnit().isEmpty());
+
+        ProductGroupSummary<Category> meat = categories.get(1);
+        assertEquals(3, meat.getProductCount());
+        assertEquals(0, new BigDecimal("1.75").compareTo(meat.getQuantityByUnit().get("kg")));
+        assertEquals(0, new BigDecimal("6").compareTo(meat.getQuantityByUnit().get("pieces")));
+        assertEquals(1, meat.getExpired());
+        assertEquals(0, meat.getExpiringWithin3Days());
+        assertEquals(1, meat.getExpiringWithin7Days());
+        assertEquals(1, meat.getExpiringWithin14Days());
+        assertEquals(1, meat.getWithoutExpirationDate());
+
+        // Serialized with the category fields next to the totals
+        String json = objectMapper.writeValueAsString(meat);
+        assertTrue(json.contains("\"name\":\"Fleisch\""), json);
+        assertTrue(json.contains("\"productCount\":3"), json);
+        assertFalse(json.contains("\"group\""), json);
+    }
+
+    @Test
+    void testLocationsAreSummedUpByOneGroupedQuery() {
+        List<ProductGroupSummary<Location>> locations = locationService.getLocationsWithProducts();
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityStatistics(Product.class.getName()).getLoadCount());
+
+        assertEquals(List.of("Oben", "Unten"), locations.stream().map(summary -> summary.getGroup().getName()).toList());
+        assertEquals(2, locations.get(0).getProductCount());
+        assertEquals(2, locations.get(1).getProductCount());
+        assertEquals(0, new BigDecimal("8").compareTo(locations.get(1).getQuantityByUnit().get("pieces")));
+        assertEquals(1, locations.get(1).getWithoutExpirationDate());
+    }
+
+    @Test
+    void testRenamingGroupsLeavesTheProductIndexesAlone() {
+        Category meat = categoryRepository.findAllByOrderByNameAsc().get(1);
+        Location top = locationRepository.findAll().stream()
+                .filter(location -> location.getName().equals("Oben")).findFirst().orElseThrow();
+
+        categoryService.updateCategory(meat.getId(), Category.builder().name("Fleisch & Wurst").build());
+        locationService.updateLocation(top.getId(), Location.builder().name("Ganz oben").sortOrder(1).build());
+
+        // Only the statistics and the category suggestions need to know
+        assertEquals(0, events.stream(ProductChangeEvent.class).count());
+        List<ProductGroupChangeEvent> published = events.stream(ProductGroupChangeEvent.class).toList();
+        assertEquals(2, published.size());
+        assertEquals("Fleisch", published.get(0).getPreviousName());
+        assertEquals("Fleisch & Wurst", published.get(0).getName());
+        assertEquals(ProductGroupChangeEvent.Group.LOCATION, published.get(1).getGroup());
+    }
+
+    private Product product(String name, Category category, Location location, String quantity, String unit,
+                            LocalDate expirationDate) {
+        return Product.builder()
+                .name(name)
+                .category(category)
+                .location(location)
+                .quantity(new BigDecimal(quantity))
+                .unit(unit)
+                .frozenDate(LocalDate.now().minusDays(10))
+                .expirationDate(expirationDate)
+                .build();
+    }
+}
@@ -0,0 +1,130 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.dto.CursorPage;
+import de.hirthe.gefrierschrankapp.dto.ProductDTO;
+import de.hirthe.gefrierschrankapp.entity.Category;
+import de.hirthe.gefrierschrankapp.entity.Location;
+import de.hirthe.gefrierschrankapp.entity.Product;
+import de.hirthe.gefrierschrankapp.repository.CategoryRepository;
+import de.hirthe.gefrierschrankapp.repository.LocationRepository;
+import de.hirthe.gefrierschrankapp.repository.ProductFilter;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * List endpoints read DTOs in a single joined query: no extra selects for the eager
+ * category and location, and no managed entities
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class ProductListQueryTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductExpiryIndex productExpiryIndex;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        locationRepository.deleteAll();
+        // Repository writes bypass the change events the expiry index listens to
+        productExpiryIndex.rebuild();
+
+        // Every product has its own category and location, which used to mean one select each
+        for (int i = 0; i < 3; i++) {
+            Category category = categoryRepository.save(Category.builder().name("Kategorie " + i).build());
+            Location location = locationRepository.save(Location.builder().name("Fach " + i).sortOrder(i).build());
+            Product product = productRepository.save(Product.builder()
+                    .name("Produkt " + i)
+                    .category(category)
+                    .location(location)
+                    .quantity(BigDecimal.ONE)
+                    .unit("Stück")
+                    .frozenDate(LocalDate.now().minusDays(10))
+                    .expirationDate(LocalDate.now().minusDays(1).plusDays(i))
+                    .build());
+            productExpiryIndex.put(product.getId(), product.getExpirationDate());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void testPageUsesOneSelectAndOneCount() {
+        Page<ProductDTO> page = productService.getProductListWithFilters(ProductFilter.none(),
+                PageRequest.of(0, 2, Sort.by(Sort.Direction.ASC, "name")));
+
+        assertEquals(2, page.getContent().size());
+        assertEquals(3, page.getTotalElements());
+        assertEquals("Kategorie 0", page.getContent().get(0).getCategory().getName());
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void testExpiryListsUseOneSelect() {
+        List<ProductDTO> expired = productService.getExpiredProductList();
+        assertEquals(1, expired.size());
+        assertTrue(expired.get(0).isExpired());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        List<ProductDTO> expiringSoon = productService.getExpiringSoonProductList(7);
+        assertEquals(3, expiringSoon.size());
+        assertEquals("Fach 2", expiringSoon.get(2).getLocation().getName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void testSliceUsesOneSelect() {
+        CursorPage<ProductDTO> slice = productService.getProductSlice(ProductFilter.none(), "name", "asc", "", 2);
+
+        assertEquals(2, slice.getContent().size());
+        assertTrue(slice.isHasNext());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+}
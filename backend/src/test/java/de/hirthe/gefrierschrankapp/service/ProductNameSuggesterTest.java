@@ -0,0 +1,103 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.event.ProductChangeEvent;
+import de.hirthe.gefrierschrankapp.event.ProductGroupChangeEvent;
+import de.hirthe.gefrierschrankapp.repository.CategoryRepository;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ProductNameSuggesterTest {
+
+    private ProductRepository productRepository;
+    private MeterRegistry meterRegistry;
+    private ProductNameSuggester suggester;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        suggester = createSuggester(DataSize.ofMegabytes(1));
+
+        suggester.putProduct(1L, "Hähnchenbrust");
+        suggester.putProduct(2L, "Hähnchenbrust");
+        suggester.putProduct(3L, "Hackfleisch");
+        suggester.putProduct(4L, "Haehnchenschenkel");
+    }
+
+    @Test
+    void testSuggestsMostUsedNamesFirst() {
+        assertEquals(List.of("Hähnchenbrust", "Hackfleisch", "Haehnchenschenkel"), suggester.suggest("Hä", 10));
+        assertEquals(List.of("Hähnchenbrust", "Haehnchenschenkel"), suggester.suggest("haeh", 10));
+        assertEquals(List.of("Hähnchenbrust"), suggester.suggest("H", 1));
+        assertTrue(suggester.suggest("Lachs", 10).isEmpty());
+    }
+
+    @Test
+    void testProductChangesUpdateCounts() {
+        // Given
+        ProductRepository.SearchableText renamed = mock(ProductRepository.SearchableText.class);
+        when(renamed.getId()).thenReturn(1L);
+        when(renamed.getName()).thenReturn("Lachs");
+        when(productRepository.findSearchableTextByIds(List.of(1L))).thenReturn(List.of(renamed));
+
+        // When
+        suggester.onProductChange(new ProductChangeEvent(ProductChangeEvent.Type.UPDATED, 1L));
+
+        // Then
+        assertEquals(List.of("Hackfleisch", "Haehnchenschenkel", "Hähnchenbrust"), suggester.suggest("ha", 10));
+        assertEquals(List.of("Lachs"), suggester.suggest("la", 10));
+
+        // When
+        suggester.onProductChange(new ProductChangeEvent(ProductChangeEvent.Type.DELETED, 2L));
+
+        // Then
+        assertEquals(List.of("Hackfleisch", "Haehnchenschenkel"), suggester.suggest("ha", 10));
+        assertEquals(3.0, meterRegistry.get("product.suggest.names").gauge().value());
+    }
+
+    @Test
+    void testCategoryNamesRankBelowUsedProductNames() {
+        suggester.onGroupChange(ProductGroupChangeEvent.category(null, "Gemüse"));
+        assertEquals(List.of("Gemüse"), suggester.suggest("gem", 10));
+
+        suggester.putProduct(5L, "Gemüsepfanne");
+        assertEquals(List.of("Gemüsepfanne", "Gemüse"), suggester.suggest("gem", 10));
+
+        suggester.onGroupChange(ProductGroupChangeEvent.category("Gemüse", "Gemüse & Obst"));
+        assertEquals(List.of("Gemüsepfanne", "Gemüse & Obst"), suggester.suggest("gem", 10));
+
+        suggester.onGroupChange(ProductGroupChangeEvent.category("Gemüse & Obst", null));
+        assertEquals(List.of("Gemüsepfanne"), suggester.suggest("gem", 10));
+    }
+
+    @Test
+    void testNamesBeyondTheMemoryBudgetAreRejected() {
+        // Given
+        MeterRegistry budgetRegistry = new SimpleMeterRegistry();
+        meterRegistry = budgetRegistry;
+        ProductNameSuggester small = createSuggester(DataSize.ofBytes(200));
+
+        // When
+        small.putProduct(1L, "Lachs");
+
+        // Then
+        assertTrue(small.suggest("l", 10).isEmpty());
+        assertEquals(1.0, budgetRegistry.get("product.suggest.rejected").functionCounter().count());
+        assertTrue(budgetRegistry.get("product.suggest.size").gauge().value() <= 200);
+    }
+
+    private ProductNameSuggester createSuggester(DataSize maxSize) {
+        return new ProductNameSuggester(productRepository, mock(CategoryRepository.class),
+                mock(PlatformTransactionManager.class), maxSize, meterRegistry);
+    }
+}
@@ -0,0 +1,176 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.entity.Category;
+import de.hirthe.gefrierschrankapp.entity.Location;
+import de.hirthe.gefrierschrankapp.entity.Product;
+import de.hirthe.gefrierschrankapp.repository.CategoryRepository;
+import de.hirthe.gefrierschrankapp.repository.LocationRepository;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Merge patches load the product once and write only the changed columns, guarded by the
+ * version column
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "de.hirthe.gefrierschrankapp.service.ProductPatchTest$SqlCapture")
+@ActiveProfiles("test")
+@Transactional
+public class ProductPatchTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Product product;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        locationRepository.deleteAll();
+
+        Category category = categoryRepository.save(Category.builder().name("Fisch").build());
+        Location location = locationRepository.save(Location.builder().name("Schublade 1").sortOrder(1).build());
+        product = productRepository.save(Product.builder()
+                .name("Lachs")
+                .category(category)
+                .location(location)
+                .quantity(new BigDecimal("2"))
+                .unit("Stück")
+                .frozenDate(LocalDate.now().minusDays(3))
+                .notes("Filet")
+                .build());
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        SqlCapture.STATEMENTS.clear();
+    }
+
+    @Test
+    void testSingleFieldPatchIsOneSelectAndOneNarrowUpdate() {
+        Product patched = productService.patchProduct(product.getId(), Map.of("name", "Wildlachs"), 0L).orElseThrow();
+        entityManager.flush();
+
+        assertEquals("Wildlachs", patched.getName());
+        assertEquals(1L, patched.getVersion());
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getEntityUpdateCount());
+
+        String update = SqlCapture.STATEMENTS.get(1).toLowerCase();
+        assertTrue(update.startsWith("update products set name=?,updated_at=?,version=? where id=? and version=?"), update);
+    }
+
+    @Test
+    void testPatchClearsNullFieldsAndKeepsTheRest() {
+        Map<String, Object> patch = new HashMap<>();
+        patch.put("notes", null);
+        patch.put("quantity", 1.5);
+        patch.put("categoryId", null);
+
+        productService.patchProduct(product.getId(), patch, null);
+        entityManager.flush();
+        entityManager.clear();
+
+        Product stored = productRepository.findById(product.getId()).orElseThrow();
+        assertNull(stored.getNotes());
+        assertNull(stored.getCategory());
+        assertEquals(0, new BigDecimal("1.5").compareTo(stored.getQuantity()));
+        assertEquals("Lachs", stored.getName());
+        assertEquals("Schublade 1", stored.getLocation().getName());
+    }
+
+    @Test
+    void testInvalidPatchesAreRejected() {
+        Long id = product.getId();
+
+        assertThrows(IllegalArgumentException.class, () -> productService.patchProduct(id, Map.of("version", 7), null));
+        assertThrows(IllegalArgumentException.class, () -> productService.patchProduct(id, Map.of("quantity", "viel"), null));
+        assertThrows(IllegalArgumentException.class, () -> productService.patchProduct(id, Map.of("frozenDate", "gestern"), null));
+        assertThrows(IllegalArgumentException.class, () -> productService.patchProduct(id, Map.of("categoryId", -1), null));
+        assertThrows(IllegalArgumentException.class, () -> productService.patchProduct(id, Map.of("name", " "), null));
+        assertTrue(productService.patchProduct(-1L, Map.of("name", "Forelle"), null).isEmpty());
+    }
+
+    @Test
+    void testStaleVersionIsRefused() {
+        // A client still editing version 0 after someone else saved version 1
+        productService.patchProduct(product.getId(), Map.of("notes", "Filet ohne Haut"), 0L);
+        entityManager.flush();
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> productService.patchProduct(product.getId(), Map.of("notes", "Filet mit Haut"), 0L));
+    }
+
+    @Test
+    void testConcurrentWriteBetweenReadAndUpdateIsDetected() {
+        // Loaded into the persistence context, then changed by another writer
+        productRepository.findById(product.getId()).orElseThrow();
+        jdbcTemplate.update("UPDATE products SET quantity = 1, version = version + 1 WHERE id = ?", product.getId());
+
+        productService.patchProduct(product.getId(), Map.of("notes", "Filet mit Haut"), null);
+
+        assertThrows(OptimisticLockingFailureException.class, () -> productRepository.flush());
+    }
+
+    @Test
+    void testBulkUpdatesIncrementTheVersion() {
+        productService.consumeProduct(product.getId(), BigDecimal.ONE, false);
+
+        assertEquals(1L, productRepository.findById(product.getId()).orElseThrow().getVersion());
+    }
+
+    /**
+     * Records the SQL Hibernate sends to the database
+     */
+    public static class SqlCapture implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
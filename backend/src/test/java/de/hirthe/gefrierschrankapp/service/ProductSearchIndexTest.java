@@ -0,0 +1,146 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.event.ProductChangeEvent;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ProductSearchIndexTest {
+
+    private ProductRepository productRepository;
+    private ProductSearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        searchIndex = new ProductSearchIndex(productRepository, mock(PlatformTransactionManager.class));
+
+        searchIndex.put(1L, "Hähnchenbrust", "Vom Metzger", null);
+        searchIndex.put(2L, "Brust vom Rind", null, null);
+        searchIndex.put(3L, "Erbsen", "Für Hähnchen-Eintopf", "4001234567890");
+        searchIndex.put(4L, "Brustfilet", null, null);
+    }
+
+    @Test
+    void testMatchesInsideCompoundWordsAndRanksNamePrefixFirst() {
+        assertEquals(List.of(2L, 4L, 1L), searchIndex.search("brust", 10));
+    }
+
+    @Test
+    void testIgnoresCaseAndAccents() {
+        assertEquals(List.of(1L, 3L), searchIndex.search("HAHNCHEN", 10));
+    }
+
+    @Test
+    void testFoldsWrittenOutUmlauts() {
+        assertEquals(List.of(1L, 3L), searchIndex.search("Haehnchen", 10));
+        assertEquals(List.of(1L), searchIndex.search("Hähnchenbrust", 10));
+    }
+
+    @Test
+    void testFuzzySearchToleratesTypos() {
+        // Given - a missing letter and a swapped pair
+        assertTrue(searchIndex.search("Hänchen", 10).isEmpty());
+
+        // When / Then - the name match ranks above the match in the notes
+        assertEquals(List.of(1L, 3L), searchIndex.search("Hänchen", 10, true));
+        assertEquals(List.of(1L), searchIndex.search("Hähnchenbrsut", 10, true));
+        assertEquals(List.of(2L, 4L, 1L), searchIndex.search("brust", 10, true));
+    }
+
+    @Test
+    void testFuzzySearchKeepsShortTermsExact() {
+        assertTrue(searchIndex.search("erb", 10, true).contains(3L));
+        assertTrue(searchIndex.search("erp", 10, true).isEmpty());
+    }
+
+    @Test
+    void testPrefixDistance() {
+        assertEquals(0, ProductSearchIndex.prefixDistance("brust", "brustfilet", 2));
+        assertEquals(1, ProductSearchIndex.prefixDistance("brsut", "brustfilet", 2));
+        assertEquals(1, ProductSearchIndex.prefixDistance("hanchen", "hahnchenbrust", 2));
+        assertEquals(2, ProductSearchIndex.prefixDistance("lachs", "brust", 1));
+    }
+
+    @Test
+    void testRequiresAllTerms() {
+        assertEquals(List.of(1L), searchIndex.search("brust metzger", 10));
+        assertTrue(searchIndex.search("brust erbsen", 10).isEmpty());
+    }
+
+    @Test
+    void testMatchesBarcodeAndNotes() {
+        assertEquals(List.of(3L), searchIndex.search("4001234567890", 10));
+        assertEquals(List.of(3L), searchIndex.search("4001", 10));
+        assertEquals(List.of(3L), searchIndex.search("eint", 10));
+    }
+
+    @Test
+    void testLimitAndEmptyQuery() {
+        assertEquals(List.of(2L), searchIndex.search("brust", 1));
+        assertTrue(searchIndex.search("  ", 10).isEmpty());
+        assertTrue(searchIndex.search(null, 10).isEmpty());
+    }
+
+    @Test
+    void testChangeEventsUpdateTheIndex() {
+        // Given
+        ProductRepository.SearchableText renamed = text(4L, "Lachsfilet");
+        when(productRepository.findSearchableTextByIds(List.of(4L))).thenReturn(List.of(renamed));
+
+        // When
+        searchIndex.onProductChange(new ProductChangeEvent(ProductChangeEvent.Type.UPDATED, 4L));
+        searchIndex.onProductChange(new ProductChangeEvent(ProductChangeEvent.Type.DELETED, 2L));
+
+        // Then
+        assertEquals(List.of(1L), searchIndex.search("brust", 10));
+        assertEquals(List.of(4L), searchIndex.search("lachs", 10));
+        assertEquals(3, searchIndex.size());
+    }
+
+    @Test
+    void testBatchEventIsReadBackWithOneQuery() {
+        // Given - 5 and 6 were created, 3 was deleted before the event was handled
+        List<ProductRepository.SearchableText> stored = List.of(text(5L, "Lachs"), text(6L, "Lachsforelle"));
+        when(productRepository.findSearchableTextByIds(List.of(5L, 6L, 3L))).thenReturn(stored);
+
+        // When
+        searchIndex.onProductChange(new ProductChangeEvent(ProductChangeEvent.Type.CREATED, List.of(5L, 6L, 3L)));
+
+        // Then
+        verify(productRepository, times(1)).findSearchableTextByIds(any());
+        assertEquals(List.of(5L, 6L), searchIndex.search("lachs", 10));
+        assertTrue(searchIndex.search("erbsen", 10).isEmpty());
+        assertEquals(5, searchIndex.size());
+    }
+
+    @Test
+    void testRebuildReplacesTheIndex() {
+        // Given
+        ProductRepository.SearchableText salmon = text(7L, "Lachs");
+        when(productRepository.findSearchableTextAfterId(eq(0L), any())).thenReturn(List.of(salmon));
+
+        // When
+        searchIndex.onProductChange(ProductChangeEvent.bulk());
+
+        // Then
+        assertEquals(1, searchIndex.size());
+        assertEquals(List.of(7L), searchIndex.search("lachs", 10));
+        assertTrue(searchIndex.search("brust", 10).isEmpty());
+    }
+
+    private ProductRepository.SearchableText text(Long id, String name) {
+        ProductRepository.SearchableText text = mock(ProductRepository.SearchableText.class);
+        when(text.getId()).thenReturn(id);
+        when(text.getName()).thenReturn(name);
+        return text;
+    }
+}
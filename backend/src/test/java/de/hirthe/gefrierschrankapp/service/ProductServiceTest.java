@@ -1,17 +1,24 @@
 package de.hirthe.gefrierschrankapp.service;
 
+import de.hirthe.gefrierschrankapp.dto.CursorPage;
+import de.hirthe.gefrierschrankapp.dto.ProductDTO;
 import de.hirthe.gefrierschrankapp.entity.Category;
 import de.hirthe.gefrierschrankapp.entity.Location;
 import de.hirthe.gefrierschrankapp.entity.Product;
+import de.hirthe.gefrierschrankapp.event.ProductChangeEvent;
 import de.hirthe.gefrierschrankapp.repository.CategoryRepository;
 import de.hirthe.gefrierschrankapp.repository.LocationRepository;
+import de.hirthe.gefrierschrankapp.repository.ProductFilter;
+import de.hirthe.gefrierschrankapp.repository.ProductKeyset;
 import de.hirthe.gefrierschrankapp.repository.ProductRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -26,6 +33,7 @@ import java.util.Optional;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,6 +49,15 @@ class ProductServiceTest {
     @Mock
     private LocationRepository locationRepository;
     
+    @Mock
+    private ProductStatisticsService productStatisticsService;
+    
+    @Mock
+    private ProductExpiryIndex productExpiryIndex;
+    
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    
     @InjectMocks
     private ProductService productService;
     
@@ -216,6 +233,7 @@ class ProductServiceTest {
         // Then
         verify(productRepository).findById(1L);
         verify(productRepository).delete(testProduct);
+        verify(eventPublisher).publishEvent(any(ProductChangeEvent.class));
     }
     
     @Test
@@ -235,41 +253,44 @@ class ProductServiceTest {
     @Test
     void shouldGetProductsExpiringSoon() {
         // Given
-        List<Product> expiringSoonProducts = List.of(testProduct);
-        when(productRepository.findProductsExpiringBefore(any(LocalDate.class)))
-                .thenReturn(expiringSoonProducts);
+        when(productExpiryIndex.findExpiringBefore(LocalDate.now().plusDays(7)))
+                .thenReturn(List.of(testProduct.getId()));
+        when(productRepository.findWithCategoryAndLocationByIds(List.of(testProduct.getId())))
+                .thenReturn(List.of(testProduct));
         
         // When
         List<Product> result = productService.getProductsExpiringSoon(7);
         
         // Then
-        assertThat(result).hasSize(1);
-        verify(productRepository).findProductsExpiringBefore(any(LocalDate.class));
+        assertThat(result).containsExactly(testProduct);
+        verify(productRepository, never()).findProductsExpiringBefore(any(LocalDate.class));
     }
     
     @Test
     void shouldGetExpiredProducts() {
         // Given
-        List<Product> expiredProducts = List.of(testProduct);
-        when(productRepository.findExpiredProducts(any(LocalDate.class)))
-                .thenReturn(expiredProducts);
+        Product deleted = Product.builder().id(99L).name("Deleted meanwhile").build();
+        when(productExpiryIndex.findExpired(LocalDate.now()))
+                .thenReturn(List.of(deleted.getId(), testProduct.getId()));
+        when(productRepository.findWithCategoryAndLocationByIds(List.of(deleted.getId(), testProduct.getId())))
+                .thenReturn(List.of(testProduct));
         
         // When
         List<Product> result = productService.getExpiredProducts();
         
-        // Then
-        assertThat(result).hasSize(1);
-        verify(productRepository).findExpiredProducts(any(LocalDate.class));
+        // Then - in index order, products gone from the database are skipped
+        assertThat(result).containsExactly(testProduct);
+        verify(productRepository, never()).findExpiredProducts(any(LocalDate.class));
     }
     
     @Test
     void shouldGetProductStatistics() {
         // Given
-        when(productRepository.count()).thenReturn(10L);
-        when(productRepository.findExpiredProducts(any(LocalDate.class)))
-                .thenReturn(List.of(testProduct));
-        when(productRepository.findProductsExpiringBefore(any(LocalDate.class)))
-                .thenReturn(List.of(testProduct, testProduct));
+        when(productStatisticsService.getStatistics()).thenReturn(ProductService.ProductStatistics.builder()
+                .totalProducts(10L)
+                .expiredProducts(1L)
+                .expiringSoon(2L)
+                .build());
         
         // When
         ProductService.ProductStatistics stats = productService.getProductStatistics();
@@ -278,6 +299,36 @@ class ProductServiceTest {
         assertThat(stats.getTotalProducts()).isEqualTo(10L);
         assertThat(stats.getExpiredProducts()).isEqualTo(1L);
         assertThat(stats.getExpiringSoon()).isEqualTo(2L);
+        verify(productRepository, never()).findExpiredProducts(any(LocalDate.class));
+    }
+    
+    @Test
+    void shouldContinueProductSliceAfterCursor() {
+        // Given - one row more than requested, so there is a next slice
+        ProductDTO first = ProductDTO.builder().id(1L).name("First").expirationDate(LocalDate.now()).build();
+        ProductDTO second = ProductDTO.builder().id(2L).name("Second").expirationDate(LocalDate.now().plusDays(3)).build();
+        ProductDTO third = ProductDTO.builder().id(3L).name("Third").build();
+        when(productRepository.findSlice(any(ProductFilter.class), any(ProductKeyset.class), anyInt()))
+                .thenReturn(List.of(first, second, third));
+        
+        // When
+        CursorPage<ProductDTO> slice = productService.getProductSlice(ProductFilter.none(), "expirationDate", "asc", "", 2);
+        productService.getProductSlice(ProductFilter.none(), "expirationDate", "asc", slice.getNextCursor(), 2);
+        
+        // Then
+        assertThat(slice.getContent()).containsExactly(first, second);
+        assertThat(slice.isHasNext()).isTrue();
+        
+        ArgumentCaptor<ProductKeyset> keysets = ArgumentCaptor.forClass(ProductKeyset.class);
+        verify(productRepository, times(2)).findSlice(any(ProductFilter.class), keysets.capture(), eq(3));
+        assertThat(keysets.getAllValues().get(0).isFirst()).isTrue();
+        assertThat(keysets.getAllValues().get(1).getAfterId()).isEqualTo(2L);
+        assertThat(keysets.getAllValues().get(1).getAfterValue()).isEqualTo(second.getExpirationDate());
+        
+        assertThatThrownBy(() -> productService.getProductSlice(ProductFilter.none(), "name", "asc", slice.getNextCursor(), 2))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> productService.getProductSlice(ProductFilter.none(), "quantity", "asc", "", 2))
+                .isInstanceOf(IllegalArgumentException.class);
     }
     
     @Test
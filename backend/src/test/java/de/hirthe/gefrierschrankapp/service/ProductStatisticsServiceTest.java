@@ -0,0 +1,91 @@
+package de.hirthe.gefrierschrankapp.service;
+
+import de.hirthe.gefrierschrankapp.event.ProductChangeEvent;
+import de.hirthe.gefrierschrankapp.event.ProductGroupChangeEvent;
+import de.hirthe.gefrierschrankapp.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ProductStatisticsServiceTest {
+
+    private ProductRepository productRepository;
+    private ProductExpiryIndex productExpiryIndex;
+    private ProductStatisticsService statisticsService;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        productExpiryIndex = mock(ProductExpiryIndex.class);
+        statisticsService = new ProductStatisticsService(productRepository, productExpiryIndex,
+                mock(PlatformTransactionManager.class));
+
+        when(productRepository.countByCategory()).thenReturn(List.of());
+        when(productRepository.countByLocation()).thenReturn(List.of());
+    }
+
+    @Test
+    void testSnapshotIsReusedUntilProductsChange() {
+        stubCounts(10, 2, 3);
+
+        ProductService.ProductStatistics first = statisticsService.getStatistics();
+        ProductService.ProductStatistics second = statisticsService.getStatistics();
+
+        assertSame(first, second);
+        assertEquals(10, first.getTotalProducts());
+        assertEquals(2, first.getExpiredProducts());
+        assertEquals(3, first.getExpiringSoon());
+        assertEquals(5, first.getFreshProducts());
+        verify(productExpiryIndex, times(1)).countByExpiry(any(), any(), any(), any());
+
+        // When
+        stubCounts(11, 2, 3);
+        statisticsService.onProductChange(new ProductChangeEvent(ProductChangeEvent.Type.CREATED, 11L));
+
+        // Then
+        assertEquals(11, statisticsService.getStatistics().getTotalProducts());
+        verify(productExpiryIndex, times(2)).countByExpiry(any(), any(), any(), any());
+    }
+
+    @Test
+    void testGroupRenameInvalidatesSnapshot() {
+        stubCounts(10, 2, 3);
+        ProductService.ProductStatistics first = statisticsService.getStatistics();
+
+        // When
+        statisticsService.onGroupChange(ProductGroupChangeEvent.location("Schublade 1", "Oben"));
+
+        // Then
+        assertNotSame(first, statisticsService.getStatistics());
+        verify(productRepository, times(2)).countByLocation();
+    }
+
+    @Test
+    void testEmptyInventoryHasZeroCounts() {
+        ProductRepository.ExpiryCounts counts = mock(ProductRepository.ExpiryCounts.class);
+        when(productExpiryIndex.countByExpiry(any(), any(), any(), any())).thenReturn(counts);
+
+        ProductService.ProductStatistics statistics = statisticsService.getStatistics();
+
+        assertEquals(0, statistics.getTotalProducts());
+        assertEquals(0, statistics.getExpiredProducts());
+        assertEquals(0, statistics.getWithoutExpirationDate());
+    }
+
+    private void stubCounts(long total, long expired, long expiringSoon) {
+        ProductRepository.ExpiryCounts counts = mock(ProductRepository.ExpiryCounts.class);
+        when(counts.getTotal()).thenReturn(total);
+        when(counts.getExpired()).thenReturn(expired);
+        when(counts.getExpiringWithin7Days()).thenReturn(expiringSoon);
+        LocalDate today = LocalDate.now();
+        when(productExpiryIndex.countByExpiry(eq(today), eq(today.plusDays(3)), eq(today.plusDays(7)), eq(today.plusDays(14))))
+                .thenReturn(counts);
+    }
+}
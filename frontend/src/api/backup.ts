@@ -24,6 +24,7 @@ export interface RestoreStats {
   locationsSkipped: number
   productsImported: number
   productsSkipped: number
+  imagesRestored?: number
   totalProcessed: number
 }
 
@@ -38,6 +39,7 @@ export interface RestoreResult {
   success: boolean
   message: string
   stats?: RestoreStats
+  checkpointId?: string
   errors?: string[]
   warnings?: string[]
   conflicts?: ConflictInfo[]
@@ -49,9 +51,10 @@ export const backupApi = {
   /**
    * Export backup data and trigger download
    */
-  async exportBackup(format: 'json' | 'zip' = 'json'): Promise<void> {
+  async exportBackup(format: 'json' | 'zip' = 'json', includeImages: boolean = false): Promise<void> {
     try {
-      const response = await apiClient.get(`/backup/export?format=${format}`, {
+      const response = await apiClient.get('/backup/export', {
+        params: { format, includeImages },
         responseType: 'blob'
       })
       
@@ -91,7 +94,8 @@ export const backupApi = {
     file: File,
     clearExistingData: boolean = false,
     conflictResolution: ConflictResolution = 'SKIP',
-    preserveIds: boolean = false
+    preserveIds: boolean = false,
+    resumeFrom?: string
   ): Promise<RestoreResult> {
     try {
       const formData = new FormData()
@@ -99,6 +103,7 @@ export const backupApi = {
       formData.append('clearExistingData', clearExistingData.toString())
       formData.append('conflictResolution', conflictResolution)
       formData.append('preserveIds', preserveIds.toString())
+      if (resumeFrom) formData.append('resumeFrom', resumeFrom)
 
       const response = await apiClient.post<RestoreResult>('/backup/import', formData, {
         headers: {
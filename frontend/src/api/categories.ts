@@ -11,6 +11,19 @@ export interface Category {
   updatedAt: string
 }
 
+// Totals of the products of a category or location, quantities are summed per unit
+export interface ProductTotals {
+  productCount: number
+  quantityByUnit: Record<string, number>
+  expired: number
+  expiringWithin3Days: number
+  expiringWithin7Days: number
+  expiringWithin14Days: number
+  withoutExpirationDate: number
+}
+
+export type CategoryWithProducts = Category & ProductTotals
+
 export interface CreateCategoryRequest {
   name: string
   description?: string
@@ -46,4 +59,10 @@ export const updateCategory = async (id: number, categoryData: Partial<CreateCat
 // Delete category
 export const deleteCategory = async (id: number): Promise<void> => {
   await apiClient.delete(`/categories/${id}`)
-}
\ No newline at end of file
+}
+
+// Get all categories with the totals of their products
+export const getCategoriesWithProducts = async (): Promise<CategoryWithProducts[]> => {
+  const response = await apiClient.get('/categories/with-products')
+  return response.data
+}
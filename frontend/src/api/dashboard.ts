@@ -0,0 +1,36 @@
+import { apiClient } from './client'
+
+export interface GroupCount {
+  id: number
+  name: string
+  count: number
+}
+
+export interface ExpiringProduct {
+  id: number
+  name: string
+  expirationDate: string
+  daysUntilExpiration: number
+  categoryName: string | null
+  locationName: string | null
+  imageUrl: string | null
+}
+
+export interface DashboardSummary {
+  totalProducts: number
+  expired: number
+  expiringWithin3Days: number
+  expiringWithin7Days: number
+  expiringWithin14Days: number
+  fresh: number
+  withoutExpirationDate: number
+  categories: GroupCount[]
+  locations: GroupCount[]
+  nextExpiring: ExpiringProduct[]
+}
+
+// Get aggregated counts for the dashboard header
+export const getDashboardSummary = async (limit = 5): Promise<DashboardSummary> => {
+  const response = await apiClient.get('/dashboard', { params: { limit } })
+  return response.data
+}
@@ -1,5 +1,7 @@
 import { apiClient } from './client'
 
+export type VariantStatus = 'PENDING' | 'READY' | 'FAILED'
+
 export interface ImageUploadResponse {
   success: boolean
   filename: string
@@ -7,6 +9,7 @@ export interface ImageUploadResponse {
   contentType: string
   width: number
   height: number
+  variantStatus: VariantStatus
   thumbnailUrl: string
   mediumUrl: string
   originalUrl: string
@@ -16,6 +19,7 @@ export interface ImageInfo {
   filename: string
   size: number
   contentType: string
+  variantStatus: VariantStatus
   thumbnailUrl: string
   mediumUrl: string
   originalUrl: string
@@ -1,4 +1,5 @@
 import { apiClient } from './client'
+import type { ProductTotals } from './categories'
 
 export interface Location {
   id: number
@@ -10,6 +11,8 @@ export interface Location {
   updatedAt: string
 }
 
+export type LocationWithProducts = Location & ProductTotals
+
 export interface CreateLocationRequest {
   name: string
   description?: string
@@ -44,4 +47,10 @@ export const updateLocation = async (id: number, locationData: Partial<CreateLoc
 // Delete location
 export const deleteLocation = async (id: number): Promise<void> => {
   await apiClient.delete(`/locations/${id}`)
-}
\ No newline at end of file
+}
+
+// Get all locations with the totals of their products
+export const getLocationsWithProducts = async (): Promise<LocationWithProducts[]> => {
+  const response = await apiClient.get('/locations/with-products')
+  return response.data
+}
@@ -27,6 +27,7 @@ export interface Product {
   }
   createdAt: string
   updatedAt: string
+  version: number
   // Additional computed fields from backend
   daysUntilExpiration?: number
   expired?: boolean
@@ -46,11 +47,31 @@ export interface CreateProductRequest {
   imageUrl?: string
 }
 
-export interface ProductFilters {
-  search?: string
-  categoryId?: number
-  locationId?: number
+// Filters shared by the paged and the cursor-paged product list, dates are ISO dates
+export interface ProductListFilters {
+  categoryId?: number | number[]
+  locationId?: number | number[]
+  barcode?: string
   status?: 'all' | 'expiring' | 'expired' | 'fresh'
+  expiresFrom?: string
+  expiresTo?: string
+  frozenFrom?: string
+  frozenTo?: string
+}
+
+const appendListFilters = (params: URLSearchParams, filters: ProductListFilters) => {
+  for (const id of [filters.categoryId ?? []].flat()) params.append('categoryId', id.toString())
+  for (const id of [filters.locationId ?? []].flat()) params.append('locationId', id.toString())
+  if (filters.barcode) params.append('barcode', filters.barcode)
+  if (filters.status && filters.status !== 'all') params.append('status', filters.status)
+  if (filters.expiresFrom) params.append('expiresFrom', filters.expiresFrom)
+  if (filters.expiresTo) params.append('expiresTo', filters.expiresTo)
+  if (filters.frozenFrom) params.append('frozenFrom', filters.frozenFrom)
+  if (filters.frozenTo) params.append('frozenTo', filters.frozenTo)
+}
+
+export interface ProductFilters extends ProductListFilters {
+  search?: string
   page?: number
   size?: number
   sort?: string
@@ -71,9 +92,7 @@ export const getProducts = async (filters: ProductFilters = {}): Promise<PageRes
   const params = new URLSearchParams()
   
   if (filters.search) params.append('search', filters.search)
-  if (filters.categoryId) params.append('categoryId', filters.categoryId.toString())
-  if (filters.locationId) params.append('locationId', filters.locationId.toString())
-  if (filters.status && filters.status !== 'all') params.append('status', filters.status)
+  appendListFilters(params, filters)
   if (filters.page !== undefined) params.append('page', filters.page.toString())
   if (filters.size !== undefined) params.append('size', filters.size.toString())
   if (filters.sort) params.append('sort', filters.sort)
@@ -82,6 +101,49 @@ export const getProducts = async (filters: ProductFilters = {}): Promise<PageRes
   return response.data
 }
 
+export interface CursorPage<T> {
+  content: T[]
+  nextCursor: string | null
+  hasNext: boolean
+  limit: number
+}
+
+export interface ProductSliceFilters extends ProductListFilters {
+  name?: string
+  sortBy?: 'createdAt' | 'expirationDate' | 'name' | 'frozenDate'
+  sortDir?: 'asc' | 'desc'
+  limit?: number
+}
+
+// Get the next slice of products for infinite scrolling, an empty cursor starts at the beginning
+export const getProductSlice = async (cursor = '', filters: ProductSliceFilters = {}): Promise<CursorPage<Product>> => {
+  const params = new URLSearchParams()
+  params.append('cursor', cursor)
+
+  appendListFilters(params, filters)
+  if (filters.name) params.append('name', filters.name)
+  if (filters.sortBy) params.append('sortBy', filters.sortBy)
+  if (filters.sortDir) params.append('sortDir', filters.sortDir)
+  if (filters.limit !== undefined) params.append('limit', filters.limit.toString())
+
+  const response = await apiClient.get(`/products?${params.toString()}`)
+  return response.data
+}
+
+// Search products by name, notes and barcode, best matches first; fuzzy also matches typos
+export const searchProducts = async (query: string, limit = 20, fuzzy = false): Promise<Product[]> => {
+  const params = new URLSearchParams({ q: query, limit: limit.toString(), fuzzy: fuzzy.toString() })
+  const response = await apiClient.get(`/products/search?${params.toString()}`)
+  return response.data
+}
+
+// Suggest product names starting with a prefix, most used first
+export const suggestProductNames = async (prefix: string, limit = 10): Promise<string[]> => {
+  const params = new URLSearchParams({ prefix, limit: limit.toString() })
+  const response = await apiClient.get(`/products/suggest?${params.toString()}`)
+  return response.data
+}
+
 // Get single product by ID
 export const getProduct = async (id: number): Promise<Product> => {
   const response = await apiClient.get(`/products/${id}`)
@@ -100,11 +162,86 @@ export const updateProduct = async (id: number, productData: Partial<CreateProdu
   return response.data
 }
 
+// Change single fields, null clears a field; with the version a concurrent edit fails with 412
+export const patchProduct = async (
+  id: number,
+  changes: Partial<Record<keyof CreateProductRequest, unknown>>,
+  version?: number
+): Promise<Product> => {
+  const response = await apiClient.patch(`/products/${id}`, changes, {
+    headers: {
+      'Content-Type': 'application/merge-patch+json',
+      ...(version !== undefined ? { 'If-Match': `"${version}"` } : {})
+    }
+  })
+  return response.data
+}
+
 // Delete product
 export const deleteProduct = async (id: number): Promise<void> => {
   await apiClient.delete(`/products/${id}`)
 }
 
+// Result of a batch operation, one entry per requested item in request order
+export interface ProductBatchResult {
+  succeeded: number
+  failed: number
+  results: {
+    index: number
+    id: number | null
+    success: boolean
+    error: string | null
+    product: Product | null
+  }[]
+}
+
+// Create up to 500 products at once
+export const createProducts = async (products: CreateProductRequest[]): Promise<ProductBatchResult> => {
+  const response = await apiClient.post('/products/batch', products)
+  return response.data
+}
+
+// Move products to a location, null takes them out of any location
+export const moveProducts = async (productIds: number[], locationId: number | null): Promise<ProductBatchResult> => {
+  const response = await apiClient.patch('/products/batch/location', { productIds, locationId })
+  return response.data
+}
+
+// Assign products to a category, null removes their category
+export const recategorizeProducts = async (productIds: number[], categoryId: number | null): Promise<ProductBatchResult> => {
+  const response = await apiClient.patch('/products/batch/category', { productIds, categoryId })
+  return response.data
+}
+
+// Delete products at once
+export const deleteProducts = async (productIds: number[]): Promise<ProductBatchResult> => {
+  const response = await apiClient.delete('/products/batch', { data: { productIds } })
+  return response.data
+}
+
+export interface ConsumeResult {
+  productId: number
+  consumed: number
+  remaining: number
+  deleted: boolean
+}
+
+// Take a portion out of a product; fails with 409 if less than the amount is left
+export const consumeProduct = async (id: number, amount = 1, deleteWhenEmpty = false): Promise<ConsumeResult> => {
+  const response = await apiClient.post(`/products/${id}/consume`, null, {
+    params: { amount, deleteWhenEmpty }
+  })
+  return response.data
+}
+
+// Take a portion out of the oldest frozen product with the name
+export const consumeOldestProduct = async (name: string, amount = 1, deleteWhenEmpty = false): Promise<ConsumeResult> => {
+  const response = await apiClient.post('/products/consume', null, {
+    params: { name, amount, deleteWhenEmpty }
+  })
+  return response.data
+}
+
 // Get expiring products (convenience method)
 export const getExpiringProducts = async (days: number = 7): Promise<Product[]> => {
   const response = await apiClient.get(`/products/expiring?days=${days}`)
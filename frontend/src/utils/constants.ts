@@ -63,7 +63,7 @@ export const VALIDATION_RULES = {
     },
     quantity: {
       required: true,
-      min: 0.01,
+      min: 0, // 0 once everything was consumed
       max: 9999.99
     },
     unit: {